@@ -0,0 +1,92 @@
+package ePortfolio;
+
+/**
+ * The AggregateSnapshot class holds a copy of a portfolio's totals per
+ * instrument type as of one point in its command sequence, published by a
+ * {@link TradeEngine}. A snapshot can be filled again and again by
+ * {@link TradeEngine#readSnapshot(AggregateSnapshot)}, so readers that poll
+ * the totals allocate nothing.
+ */
+public class AggregateSnapshot {
+    final int[] counts = new int[InstrumentType.TAG_COUNT];
+    final double[] marketValues = new double[InstrumentType.TAG_COUNT];
+    final double[] bookValues = new double[InstrumentType.TAG_COUNT];
+    long sequence = -1;
+    long rejectedCount;
+
+    /**
+     * Returns the sequence number of the last command applied before the
+     * snapshot was taken.
+     *
+     * @return the sequence number, or -1 if no command had been applied
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of commands rejected before the snapshot was taken.
+     *
+     * @return the number of rejected commands
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns the number of positions held in a type.
+     *
+     * @param type the instrument type
+     * @return the number of positions
+     */
+    public int getCount(InstrumentType type) {
+        return counts[type.getTag()];
+    }
+
+    /**
+     * Returns the market value held in a type.
+     *
+     * @param type the instrument type
+     * @return the market value
+     */
+    public double getMarketValue(InstrumentType type) {
+        return marketValues[type.getTag()];
+    }
+
+    /**
+     * Returns the book value held in a type.
+     *
+     * @param type the instrument type
+     * @return the book value
+     */
+    public double getBookValue(InstrumentType type) {
+        return bookValues[type.getTag()];
+    }
+
+    /**
+     * Returns the unrealized gain of every position, the total market value
+     * less the total book value.
+     *
+     * @return the total gain
+     */
+    public double getTotalGain() {
+        double gain = 0;
+        for (int tag = 0; tag < InstrumentType.TAG_COUNT; tag++) {
+            gain += marketValues[tag] - bookValues[tag];
+        }
+        return gain;
+    }
+
+    /**
+     * Copies another snapshot into this one.
+     *
+     * @param other the snapshot to copy
+     */
+    void copyFrom(AggregateSnapshot other) {
+        System.arraycopy(other.counts, 0, counts, 0, counts.length);
+        System.arraycopy(other.marketValues, 0, marketValues, 0, marketValues.length);
+        System.arraycopy(other.bookValues, 0, bookValues, 0, bookValues.length);
+        sequence = other.sequence;
+        rejectedCount = other.rejectedCount;
+    }
+}
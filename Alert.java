@@ -0,0 +1,76 @@
+package ePortfolio;
+
+/**
+ * The Alert class describes one alert registered with an {@link AlertEngine}.
+ * An alert fires once, on the first price update that meets its condition,
+ * and is then removed.
+ */
+public class Alert {
+    /**
+     * The Kind enum lists the conditions an alert can watch.
+     */
+    public enum Kind {
+        /** The price of a symbol moves across the threshold, either way. */
+        PRICE_CROSSES,
+        /** The gain of a position falls below the threshold, in percent. */
+        GAIN_BELOW,
+        /** The gain of a position rises above the threshold, in percent. */
+        GAIN_ABOVE,
+        /** The total gain of the portfolio falls below the threshold. */
+        TOTAL_GAIN_BELOW,
+        /** The total gain of the portfolio rises above the threshold. */
+        TOTAL_GAIN_ABOVE
+    }
+
+    private final long id;
+    private final Kind kind;
+    private final String symbol;
+    private final double threshold;
+
+    /**
+     * Constructs an Alert.
+     *
+     * @param id        the alert id
+     * @param kind      the condition
+     * @param symbol    the symbol watched, or null for the whole portfolio
+     * @param threshold the threshold
+     */
+    Alert(long id, Kind kind, String symbol, double threshold) {
+        this.id = id;
+        this.kind = kind;
+        this.symbol = symbol;
+        this.threshold = threshold;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case PRICE_CROSSES:
+                return String.format("Price of %s crosses %.2f", symbol, threshold);
+            case GAIN_BELOW:
+                return String.format("Gain of %s below %.2f%%", symbol, threshold);
+            case GAIN_ABOVE:
+                return String.format("Gain of %s above %.2f%%", symbol, threshold);
+            case TOTAL_GAIN_BELOW:
+                return String.format("Total gain below %.2f", threshold);
+            default:
+                return String.format("Total gain above %.2f", threshold);
+        }
+    }
+}
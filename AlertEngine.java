@@ -0,0 +1,273 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The AlertEngine class watches a portfolio's price updates for alerts on
+ * prices, position gains and the total gain, and tells its listeners when one
+ * fires. Each alert fires once and is then removed.
+ * <p>
+ * A price update only looks at the alerts of its own symbol and at the total
+ * gain alerts, never at every alert. The thresholds of each kind are kept in
+ * ascending order per symbol, so the alerts an update fires are always one
+ * run of a list, found by binary search: price alerts between the previous
+ * price and the new one, position gain alerts beyond the position's new gain.
+ * The total gain is read from the portfolio's running aggregates instead of
+ * being summed over the positions. An AlertEngine, like its portfolio, must
+ * only be used by one thread.
+ */
+public class AlertEngine implements PriceListener {
+    private final Portfolio portfolio;
+    private final Map<String, SymbolAlerts> bySymbol = new HashMap<>();
+    private final ThresholdList totalGainBelow = new ThresholdList();
+    private final ThresholdList totalGainAbove = new ThresholdList();
+    private final Map<Long, Alert> alerts = new HashMap<>();
+    private final List<AlertListener> listeners = new ArrayList<>();
+    private long nextId = 1;
+
+    /**
+     * Constructs an AlertEngine that listens to a portfolio's price updates.
+     *
+     * @param portfolio the portfolio
+     */
+    public AlertEngine(Portfolio portfolio) {
+        this.portfolio = portfolio;
+        portfolio.addPriceListener(this);
+    }
+
+    /**
+     * Adds a listener to be told of every alert that fires.
+     *
+     * @param listener the listener
+     */
+    public void addAlertListener(AlertListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Adds an alert for the price of a symbol moving across a threshold in
+     * either direction. The move is measured from the price held when the
+     * alert is added, or from the next price update if the symbol is not
+     * held.
+     *
+     * @param symbol the symbol
+     * @param price  the threshold price
+     * @return the alert id
+     */
+    public long alertPriceCrosses(String symbol, double price) {
+        if (!(price > 0) || Double.isInfinite(price)) {
+            throw new IllegalArgumentException("Price must be positive.");
+        }
+        return addSymbolAlert(Alert.Kind.PRICE_CROSSES, symbol, price);
+    }
+
+    /**
+     * Adds an alert for the gain of a position falling below a percentage of
+     * its book value, such as -5.
+     *
+     * @param symbol  the symbol
+     * @param percent the threshold gain in percent
+     * @return the alert id
+     */
+    public long alertGainBelow(String symbol, double percent) {
+        return addSymbolAlert(Alert.Kind.GAIN_BELOW, symbol, requireFinite(percent));
+    }
+
+    /**
+     * Adds an alert for the gain of a position rising above a percentage of
+     * its book value.
+     *
+     * @param symbol  the symbol
+     * @param percent the threshold gain in percent
+     * @return the alert id
+     */
+    public long alertGainAbove(String symbol, double percent) {
+        return addSymbolAlert(Alert.Kind.GAIN_ABOVE, symbol, requireFinite(percent));
+    }
+
+    /**
+     * Adds an alert for the total gain of the portfolio falling below an
+     * amount.
+     *
+     * @param gain the threshold gain
+     * @return the alert id
+     */
+    public long alertTotalGainBelow(double gain) {
+        Alert alert = register(Alert.Kind.TOTAL_GAIN_BELOW, null, requireFinite(gain));
+        totalGainBelow.add(gain, alert.getId());
+        return alert.getId();
+    }
+
+    /**
+     * Adds an alert for the total gain of the portfolio rising above an
+     * amount.
+     *
+     * @param gain the threshold gain
+     * @return the alert id
+     */
+    public long alertTotalGainAbove(double gain) {
+        Alert alert = register(Alert.Kind.TOTAL_GAIN_ABOVE, null, requireFinite(gain));
+        totalGainAbove.add(gain, alert.getId());
+        return alert.getId();
+    }
+
+    /**
+     * Cancels an alert.
+     *
+     * @param alertId the alert id
+     * @return true if the alert was waiting, false if it had already fired or
+     *         been cancelled
+     */
+    public boolean cancel(long alertId) {
+        Alert alert = alerts.remove(alertId);
+        if (alert == null) {
+            return false;
+        }
+        if (alert.getSymbol() == null) {
+            listFor(alert.getKind(), null).remove(alert.getThreshold(), alertId);
+        } else {
+            SymbolAlerts symbolAlerts = bySymbol.get(alert.getSymbol());
+            listFor(alert.getKind(), symbolAlerts).remove(alert.getThreshold(), alertId);
+            if (symbolAlerts.isEmpty()) {
+                bySymbol.remove(alert.getSymbol());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of alerts waiting to fire.
+     *
+     * @return the number of alerts
+     */
+    public int getAlertCount() {
+        return alerts.size();
+    }
+
+    /**
+     * Fires the alerts of a symbol and of the total gain that a price update
+     * meets.
+     *
+     * @param symbol the symbol
+     * @param price  the new price
+     */
+    @Override
+    public void priceUpdated(String symbol, double price) {
+        SymbolAlerts symbolAlerts = bySymbol.get(symbol);
+        if (symbolAlerts != null) {
+            double previous = symbolAlerts.lastPrice;
+            symbolAlerts.lastPrice = price;
+            ThresholdList crosses = symbolAlerts.priceCrosses;
+            if (price > previous) {
+                fire(crosses, crosses.firstAbove(previous), crosses.firstAbove(price), price);
+            } else if (price < previous) {
+                fire(crosses, crosses.firstAtOrAbove(price), crosses.firstAtOrAbove(previous), price);
+            }
+
+            Investment position = portfolio.findPosition(symbol);
+            if (position != null && position.getBookValue() > 0) {
+                double gain = (position.getQuantity() * price - position.getBookValue()) / position.getBookValue()
+                        * 100;
+                ThresholdList below = symbolAlerts.gainBelow;
+                fire(below, below.firstAbove(gain), below.size(), gain);
+                ThresholdList above = symbolAlerts.gainAbove;
+                fire(above, 0, above.firstAtOrAbove(gain), gain);
+            }
+            if (symbolAlerts.isEmpty()) {
+                bySymbol.remove(symbol);
+            }
+        }
+
+        if (totalGainBelow.size() > 0 || totalGainAbove.size() > 0) {
+            double totalGain = portfolio.getInstrumentAggregates().getTotalGain();
+            fire(totalGainBelow, totalGainBelow.firstAbove(totalGain), totalGainBelow.size(), totalGain);
+            fire(totalGainAbove, 0, totalGainAbove.firstAtOrAbove(totalGain), totalGain);
+        }
+    }
+
+    private long addSymbolAlert(Alert.Kind kind, String symbol, double threshold) {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Symbol cannot be empty.");
+        }
+        symbol = symbol.trim().toUpperCase();
+        SymbolAlerts symbolAlerts = bySymbol.get(symbol);
+        if (symbolAlerts == null) {
+            symbolAlerts = new SymbolAlerts();
+            Investment position = portfolio.findPosition(symbol);
+            symbolAlerts.lastPrice = position == null ? Double.NaN : position.getPrice();
+            bySymbol.put(symbol, symbolAlerts);
+        }
+        Alert alert = register(kind, symbol, threshold);
+        listFor(kind, symbolAlerts).add(threshold, alert.getId());
+        return alert.getId();
+    }
+
+    private Alert register(Alert.Kind kind, String symbol, double threshold) {
+        Alert alert = new Alert(nextId++, kind, symbol, threshold);
+        alerts.put(alert.getId(), alert);
+        return alert;
+    }
+
+    private ThresholdList listFor(Alert.Kind kind, SymbolAlerts symbolAlerts) {
+        switch (kind) {
+            case PRICE_CROSSES:
+                return symbolAlerts.priceCrosses;
+            case GAIN_BELOW:
+                return symbolAlerts.gainBelow;
+            case GAIN_ABOVE:
+                return symbolAlerts.gainAbove;
+            case TOTAL_GAIN_BELOW:
+                return totalGainBelow;
+            default:
+                return totalGainAbove;
+        }
+    }
+
+    /**
+     * Removes a run of alerts from a list and then tells the listeners, so a
+     * listener may add or cancel alerts.
+     */
+    private void fire(ThresholdList list, int from, int to, double value) {
+        if (from >= to) {
+            return;
+        }
+        Alert[] fired = new Alert[to - from];
+        for (int i = from; i < to; i++) {
+            fired[i - from] = alerts.remove(list.idAt(i));
+        }
+        list.removeRange(from, to);
+        for (Alert alert : fired) {
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).alertFired(alert, value);
+            }
+        }
+    }
+
+    private static double requireFinite(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Threshold must be a number.");
+        }
+        return value;
+    }
+
+    /**
+     * The SymbolAlerts class holds the alerts of one symbol and the price
+     * its price alerts measure moves from.
+     */
+    private static class SymbolAlerts {
+        private final ThresholdList priceCrosses = new ThresholdList();
+        private final ThresholdList gainBelow = new ThresholdList();
+        private final ThresholdList gainAbove = new ThresholdList();
+        private double lastPrice;
+
+        boolean isEmpty() {
+            return priceCrosses.size() == 0 && gainBelow.size() == 0 && gainAbove.size() == 0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ePortfolio;
+
+/**
+ * The AlertListener interface is notified when an alert fires.
+ */
+@FunctionalInterface
+public interface AlertListener {
+    /**
+     * Called when an alert fires, on the thread that updated the price.
+     *
+     * @param alert the alert, which no longer rests in the engine
+     * @param value the price, gain percentage or total gain that fired it
+     */
+    void alertFired(Alert alert, double value);
+}
@@ -0,0 +1,407 @@
+package ePortfolio;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BatchTradeProcessor class runs trades from an order file without the
+ * GUI.
+ * Each line of the order file is a CSV record of the form
+ * {@code type,symbol,name,quantity,price,side}, where side is BUY or SELL.
+ * Orders are streamed through three pipelined stages, each on its own thread
+ * and connected by bounded queues: parse, validate and apply. Only a bounded
+ * number of orders is ever held in memory, regardless of file size. If a
+ * stage fails, the whole pipeline is cancelled instead of leaving the other
+ * stages blocked on a full or empty queue.
+ */
+public class BatchTradeProcessor {
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final Order[] END_OF_STREAM = new Order[0];
+
+    private final Portfolio portfolio;
+    private final StageStats parseStats = new StageStats("parse");
+    private final StageStats validateStats = new StageStats("validate");
+    private final StageStats applyStats = new StageStats("apply");
+    private Thread[] stageThreads;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+
+    /**
+     * Constructs a BatchTradeProcessor that applies orders to a portfolio.
+     *
+     * @param portfolio the portfolio to trade against
+     */
+    public BatchTradeProcessor(Portfolio portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Streams every order in a reader through the pipeline and waits for the
+     * apply stage to finish.
+     *
+     * @param input the source of CSV order lines
+     * @throws IOException           if reading the input fails
+     * @throws InterruptedException  if the calling thread is interrupted
+     * @throws IllegalStateException if the validate or apply stage failed
+     */
+    public void process(Reader input) throws IOException, InterruptedException {
+        BlockingQueue<Order[]> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Order[]> validated = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        cancelled = false;
+        failure = null;
+
+        Thread validator = new Thread(() -> runValidateStage(parsed, validated), "batch-validate");
+        Thread applier = new Thread(() -> runApplyStage(validated), "batch-apply");
+        stageThreads = new Thread[] { validator, applier };
+        validator.start();
+        applier.start();
+
+        try {
+            runParseStage(new BufferedReader(input, 1 << 16), parsed);
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            cancel(null);
+            throw e;
+        } finally {
+            endStream(parsed);
+            try {
+                validator.join();
+                applier.join();
+            } catch (InterruptedException e) {
+                cancel(null);
+                throw e;
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Batch stage failed: " + failure, failure);
+        }
+    }
+
+    /**
+     * Returns a report of the records, rejects and throughput of every stage.
+     *
+     * @return the stage report
+     */
+    public String getReport() {
+        return parseStats + "\n" + validateStats + "\n" + applyStats;
+    }
+
+    /**
+     * Reads lines and converts them into orders, handing them on in batches.
+     *
+     * @param reader the source of CSV order lines
+     * @param out    the queue feeding the validate stage
+     * @throws IOException          if reading the input fails
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private void runParseStage(BufferedReader reader, BlockingQueue<Order[]> out)
+            throws IOException, InterruptedException {
+        parseStats.start();
+        Order[] batch = new Order[BATCH_SIZE];
+        int size = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.regionMatches(true, 0, "type,", 0, 5)) {
+                continue;
+            }
+            Order order = parseOrder(line);
+            if (order == null) {
+                parseStats.reject();
+                continue;
+            }
+            parseStats.accept();
+            batch[size++] = order;
+            if (size == BATCH_SIZE) {
+                if (!handOff(out, batch)) {
+                    break;
+                }
+                batch = new Order[BATCH_SIZE];
+                size = 0;
+            }
+        }
+        if (size > 0 && !cancelled) {
+            handOff(out, trim(batch, size));
+        }
+        parseStats.finish();
+    }
+
+    /**
+     * Drops orders that could never be applied before they reach the portfolio.
+     *
+     * @param in  the queue fed by the parse stage
+     * @param out the queue feeding the apply stage
+     */
+    private void runValidateStage(BlockingQueue<Order[]> in, BlockingQueue<Order[]> out) {
+        validateStats.start();
+        try {
+            Order[] batch;
+            while ((batch = in.take()) != END_OF_STREAM) {
+                int size = 0;
+                for (Order order : batch) {
+                    if (isValid(order)) {
+                        batch[size++] = order;
+                        validateStats.accept();
+                    } else {
+                        validateStats.reject();
+                    }
+                }
+                if (size > 0 && !handOff(out, size == batch.length ? batch : trim(batch, size))) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel(cancelled ? null : e);
+        } catch (RuntimeException | Error e) {
+            cancel(e);
+        } finally {
+            endStream(out);
+        }
+        validateStats.finish();
+    }
+
+    /**
+     * Applies orders to the portfolio in file order.
+     *
+     * @param in the queue fed by the validate stage
+     */
+    private void runApplyStage(BlockingQueue<Order[]> in) {
+        applyStats.start();
+        try {
+            Order[] batch;
+            while ((batch = in.take()) != END_OF_STREAM) {
+                for (Order order : batch) {
+                    try {
+                        if (order.buy) {
+                            portfolio.buyInvestment(order.type, order.symbol, order.name, order.quantity,
+                                    order.price);
+                        } else {
+                            portfolio.sellInvestment(order.symbol, order.quantity, order.price);
+                        }
+                        applyStats.accept();
+                    } catch (IllegalArgumentException e) {
+                        applyStats.reject();
+                    } catch (RuntimeException e) {
+                        applyStats.reject();
+                        System.out.println("Order for " + order.symbol + " failed: " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel(cancelled ? null : e);
+        } catch (Error e) {
+            cancel(e);
+        }
+        applyStats.finish();
+    }
+
+    /**
+     * Puts a batch on a queue, giving up if the pipeline is cancelled while
+     * the queue is full.
+     *
+     * @param out   the queue
+     * @param batch the batch
+     * @return true if the batch was queued, false if the pipeline was cancelled
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private boolean handOff(BlockingQueue<Order[]> out, Order[] batch) throws InterruptedException {
+        while (!out.offer(batch, 10, TimeUnit.MILLISECONDS)) {
+            if (cancelled) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells the next stage that no more orders follow. A cancelled pipeline
+     * has already interrupted the next stage, so nothing is queued then.
+     *
+     * @param out the queue feeding the next stage
+     */
+    private void endStream(BlockingQueue<Order[]> out) {
+        try {
+            if (!cancelled) {
+                handOff(out, END_OF_STREAM);
+            }
+        } catch (InterruptedException e) {
+            cancel(null);
+        }
+    }
+
+    /**
+     * Stops every stage: the stage threads are interrupted out of their queue
+     * waits, and the parse stage stops at its next hand-off.
+     *
+     * @param cause the failure that stopped the pipeline, or null if it was
+     *              interrupted
+     */
+    private synchronized void cancel(Throwable cause) {
+        if (cause != null && failure == null) {
+            failure = cause;
+        }
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        for (Thread thread : stageThreads) {
+            if (thread != Thread.currentThread()) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Parses a CSV order line. The name field may contain commas, so the fields
+     * after it are taken from the end of the line.
+     *
+     * @param line the CSV line
+     * @return the parsed order, or null if the line is malformed
+     */
+    private Order parseOrder(String line) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        int last = line.lastIndexOf(',');
+        int beforeLast = last < 0 ? -1 : line.lastIndexOf(',', last - 1);
+        int beforePrice = beforeLast < 0 ? -1 : line.lastIndexOf(',', beforeLast - 1);
+        if (second < 0 || beforePrice <= second) {
+            return null;
+        }
+        try {
+            Order order = new Order();
+            order.type = line.substring(0, first).trim();
+            order.symbol = line.substring(first + 1, second).trim();
+            order.name = line.substring(second + 1, beforePrice).trim();
+            order.quantity = Integer.parseInt(line.substring(beforePrice + 1, beforeLast).trim());
+            order.price = Double.parseDouble(line.substring(beforeLast + 1, last).trim());
+            String side = line.substring(last + 1).trim();
+            if (side.equalsIgnoreCase("buy")) {
+                order.buy = true;
+            } else if (!side.equalsIgnoreCase("sell")) {
+                return null;
+            }
+            return order;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the fields of an order with the same rules the portfolio applies.
+     *
+     * @param order the order to check
+     * @return true if the order is well formed
+     */
+    private boolean isValid(Order order) {
+        if (order.quantity <= 0 || !(order.price > 0) || order.symbol.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < order.symbol.length(); i++) {
+            char c = order.symbol.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        if (!order.buy) {
+            return true;
+        }
+        return !order.name.isEmpty() && InstrumentType.forName(order.type) != null;
+    }
+
+    /**
+     * Copies the first entries of a batch into a right-sized array.
+     *
+     * @param batch the batch to trim
+     * @param size  the number of entries to keep
+     * @return the trimmed batch
+     */
+    private static Order[] trim(Order[] batch, int size) {
+        Order[] trimmed = new Order[size];
+        System.arraycopy(batch, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    /**
+     * Runs a batch file from the command line.
+     * Usage: {@code BatchTradeProcessor <orders.csv> [portfolio.txt]}. When a
+     * portfolio file is given it is loaded first and saved afterwards.
+     *
+     * @param args the order file and optional portfolio file
+     * @throws Exception if the batch cannot be processed
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: BatchTradeProcessor <orders.csv> [portfolio.txt]");
+            return;
+        }
+        Portfolio portfolio = new Portfolio();
+        if (args.length > 1) {
+            portfolio.loadFromFile(args[1]);
+        }
+
+        BatchTradeProcessor processor = new BatchTradeProcessor(portfolio);
+        try (Reader reader = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+            processor.process(reader);
+        }
+        System.out.println(processor.getReport());
+        System.out.print(portfolio.getMetrics().dump());
+
+        if (args.length > 1) {
+            portfolio.saveToFile(args[1]);
+        }
+    }
+
+    /**
+     * A single parsed order line.
+     */
+    private static final class Order {
+        private String type;
+        private String symbol;
+        private String name;
+        private int quantity;
+        private double price;
+        private boolean buy;
+    }
+
+    /**
+     * Records, rejects and elapsed time for one pipeline stage. Each instance is
+     * only written by its own stage thread and read after the thread is joined.
+     */
+    private static final class StageStats {
+        private final String stage;
+        private long accepted;
+        private long rejected;
+        private long startNanos;
+        private long endNanos;
+
+        private StageStats(String stage) {
+            this.stage = stage;
+        }
+
+        private void start() {
+            startNanos = System.nanoTime();
+        }
+
+        private void finish() {
+            endNanos = System.nanoTime();
+        }
+
+        private void accept() {
+            accepted++;
+        }
+
+        private void reject() {
+            rejected++;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(endNanos - startNanos, 1) / 1e9;
+            return String.format("%-8s records: %d, rejects: %d, time: %.3f s, throughput: %.0f records/s",
+                    stage, accepted, rejected, seconds, (accepted + rejected) / seconds);
+        }
+    }
+}
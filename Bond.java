@@ -0,0 +1,95 @@
+package ePortfolio;
+
+/**
+ * The Bond class represents a holding of bonds. The price is the price of one
+ * bond, and trades are charged a percentage markup with a minimum and maximum
+ * by default.
+ */
+public class Bond extends Investment {
+    static final FeeModel DEFAULT_FEE = new PercentageFeeModel(0.25, 9.99, 250.00);
+
+    /**
+     * Constructs a Bond object with the specified symbol, name, quantity, and
+     * price, charged the standard markup on every buy and sell.
+     * 
+     * @param symbol   the symbol of the bond
+     * @param name     the name of the bond
+     * @param quantity the quantity of bonds
+     * @param price    the price per bond
+     */
+    public Bond(String symbol, String name, int quantity, double price) {
+        this(symbol, name, quantity, price, DEFAULT_FEE, DEFAULT_FEE);
+    }
+
+    /**
+     * Constructs a Bond object with the specified symbol, name, quantity, price
+     * and fee models.
+     * 
+     * @param symbol       the symbol of the bond
+     * @param name         the name of the bond
+     * @param quantity     the quantity of bonds
+     * @param price        the price per bond
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
+     */
+    public Bond(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        super(symbol, name, quantity, price, buyFeeModel, sellFeeModel);
+    }
+
+    /**
+     * Copy constructor for creating a duplicate Bond object.
+     * 
+     * @param other the Bond object to copy
+     */
+    public Bond(Bond other) {
+        super(other);
+    }
+
+    /**
+     * Returns the instrument type of the bond.
+     * 
+     * @return {@link InstrumentType#BOND}
+     */
+    @Override
+    public InstrumentType getInstrumentType() {
+        return InstrumentType.BOND;
+    }
+
+    /**
+     * Returns a string representation of the bond, including its symbol, name,
+     * quantity, price, and book value.
+     * 
+     * @return a string representation of the bond
+     */
+    @Override
+    public String toString() {
+        return String.format("Bond [Symbol: %s, Name: %s, Quantity: %d, Price: %.2f, Book Value: %.2f]",
+                symbol, name, quantity, price, bookValue);
+    }
+
+    /**
+     * Compares two Bond objects for equality.
+     * 
+     * @param obj the object to compare
+     * @return true if the objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Bond))
+            return false;
+        return super.equals(obj);
+    }
+
+    /**
+     * Returns a hash code for the Bond object.
+     * 
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -31,7 +31,8 @@ public class BuyInterface extends JFrame {
         // Create components
         JPanel inputPanel = new JPanel(new GridLayout(5, 2, 10, 10));
         JLabel typeLabel = new JLabel("Type:");
-        typeComboBox = new JComboBox<>(new String[] { "Stock", "MutualFund" });
+        typeComboBox = new JComboBox<>(InstrumentType.values().stream()
+                .map(InstrumentType::getLabel).toArray(String[]::new));
         JLabel symbolLabel = new JLabel("Symbol:");
         symbolField = new JTextField();
         JLabel nameLabel = new JLabel("Name:");
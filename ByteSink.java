@@ -0,0 +1,249 @@
+package ePortfolio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The ByteSink class appends text and numbers to a reusable byte buffer that
+ * is drained to an output stream whenever it fills up. Text is encoded as
+ * UTF-8 one character at a time and numbers are formatted digit by digit, so
+ * appending allocates nothing. A ByteSink is not thread-safe.
+ */
+public class ByteSink implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+    private static final int MAX_DECIMALS = 15;
+    private static final double MAX_EXACT = 9007199254740992.0; // 2^53
+    // Double.toString switches to E notation outside [10^-3, 10^7)
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+    private static final double[] POWERS_OF_TEN = new double[MAX_DECIMALS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final byte[] digits = new byte[20];
+    private int count;
+    private long written;
+
+    /**
+     * Constructs a ByteSink with a 64 KB buffer.
+     *
+     * @param out the stream to drain to
+     */
+    public ByteSink(OutputStream out) {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a ByteSink with a given buffer size.
+     *
+     * @param out      the stream to drain to
+     * @param capacity the size of the buffer in bytes
+     */
+    public ByteSink(OutputStream out, int capacity) {
+        if (capacity < 16) {
+            throw new IllegalArgumentException("Capacity must be at least 16 bytes.");
+        }
+        this.out = out;
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Appends one byte.
+     *
+     * @param b the byte
+     * @return this sink
+     * @throws IOException if the stream cannot be written
+     */
+    public ByteSink append(int b) throws IOException {
+        if (count == buffer.length) {
+            drain();
+        }
+        buffer[count++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Appends text encoded as UTF-8.
+     *
+     * @param text the text
+     * @return this sink
+     * @throws IOException if the stream cannot be written
+     */
+    public ByteSink append(String text) throws IOException {
+        return append(text, 0, text.length());
+    }
+
+    /**
+     * Appends part of a text encoded as UTF-8.
+     *
+     * @param text  the text
+     * @param start the index of the first character to append
+     * @param end   the index after the last character to append
+     * @return this sink
+     * @throws IOException if the stream cannot be written
+     */
+    public ByteSink append(String text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            // Copy ASCII straight into the buffer while it has room
+            while (c < 0x80 && count < buffer.length) {
+                buffer[count++] = (byte) c;
+                if (++i == end) {
+                    return this;
+                }
+                c = text.charAt(i);
+            }
+            if (c < 0x80) {
+                append(c);
+            } else if (c < 0x800) {
+                append(0xC0 | c >> 6);
+                append(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                append(0xF0 | codePoint >> 18);
+                append(0x80 | codePoint >> 12 & 0x3F);
+                append(0x80 | codePoint >> 6 & 0x3F);
+                append(0x80 | codePoint & 0x3F);
+            } else {
+                append(0xE0 | c >> 12);
+                append(0x80 | c >> 6 & 0x3F);
+                append(0x80 | c & 0x3F);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends a whole number in decimal.
+     *
+     * @param value the number
+     * @return this sink
+     * @throws IOException if the stream cannot be written
+     */
+    public ByteSink appendLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (length > 0) {
+            append(digits[--length]);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a number as {@link Double#toString(double)} would. Numbers from
+     * 0.001 up to 10^7, which covers most prices and book values, are written
+     * in plain decimal notation with at least one decimal, such as 12.5 or
+     * 100.0, using the fewest decimals (up to 15) that parse back to exactly
+     * the same double. All other numbers, and those that need more digits than
+     * a double holds exactly, are written by Double.toString itself.
+     *
+     * @param value the number
+     * @return this sink
+     * @throws IOException if the stream cannot be written
+     */
+    public ByteSink appendDouble(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        if (magnitude == 0 || (magnitude >= MIN_PLAIN && magnitude < MAX_PLAIN)) {
+            for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+                double scaled = magnitude * POWERS_OF_TEN[decimals];
+                if (scaled >= MAX_EXACT) {
+                    break;
+                }
+                double rounded = Math.rint(scaled);
+                // Both operands are exact, so the division is rounded just as
+                // Double.parseDouble rounds the decimal text
+                if (rounded / POWERS_OF_TEN[decimals] == magnitude) {
+                    if (value < 0 || (value == 0 && 1 / value < 0)) {
+                        append('-');
+                    }
+                    appendDecimal((long) rounded, Math.max(decimals, 1), decimals);
+                    return this;
+                }
+            }
+        }
+        return append(Double.toString(value));
+    }
+
+    /**
+     * Returns the number of bytes appended so far.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesWritten() {
+        return written + count;
+    }
+
+    /**
+     * Drains the buffer and flushes the stream.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Drains the buffer and closes the stream.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Appends a scaled whole number as a decimal.
+     *
+     * @param unscaled the number times ten to the power of scale
+     * @param decimals the number of decimals to write, at least scale
+     * @param scale    the number of decimals held in the unscaled number
+     */
+    private void appendDecimal(long unscaled, int decimals, int scale) throws IOException {
+        int length = 0;
+        for (int i = scale; i < decimals; i++) {
+            digits[length++] = '0';
+        }
+        do {
+            digits[length++] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        } while (unscaled > 0 || length <= decimals);
+        for (int i = length - 1; i >= 0; i--) {
+            append(digits[i]);
+            if (i == decimals) {
+                append('.');
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            written += count;
+            count = 0;
+        }
+    }
+}
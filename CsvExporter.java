@@ -0,0 +1,47 @@
+package ePortfolio;
+
+import java.io.IOException;
+
+/**
+ * The CsvExporter class writes positions as comma-separated values under a
+ * header row. Names are quoted when they contain a comma, a quote or a line
+ * break, with quotes doubled as RFC 4180 requires.
+ */
+public class CsvExporter extends PortfolioExporter {
+    @Override
+    protected void writeHeader(ByteSink sink) throws IOException {
+        sink.append("type,symbol,name,quantity,price,bookValue\n");
+    }
+
+    @Override
+    protected void writeRecord(ByteSink sink, Investment investment) throws IOException {
+        sink.append(investment.getInstrumentType().getName()).append(',');
+        sink.append(investment.getSymbol()).append(',');
+        writeField(sink, investment.getName());
+        sink.append(',').appendLong(investment.getQuantity());
+        sink.append(',').appendDouble(investment.getPrice());
+        sink.append(',').appendDouble(investment.getBookValue());
+        sink.append('\n');
+    }
+
+    private static void writeField(ByteSink sink, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sink.append(value);
+            return;
+        }
+        sink.append('"');
+        int run = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                sink.append(value, run, i + 1).append('"');
+                run = i + 1;
+            }
+        }
+        sink.append(value, run, value.length()).append('"');
+    }
+}
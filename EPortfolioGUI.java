@@ -1,8 +1,10 @@
 package ePortfolio;
 
+import javax.management.JMException;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The EPortfolioGUI class provides a graphical user interface for the
@@ -21,9 +23,27 @@ public class EPortfolioGUI extends JFrame {
      */
     public EPortfolioGUI() {
         portfolio = new Portfolio();
+        initializeMetrics();
         initializeGUI();
     }
 
+    /**
+     * Publishes the portfolio metrics over JMX and, when the
+     * ePortfolio.metrics.dumpSeconds system property is set, prints them to the
+     * console at that interval.
+     */
+    private void initializeMetrics() {
+        try {
+            portfolio.getMetrics().registerMBean("EPortfolioGUI");
+        } catch (JMException e) {
+            System.out.println("Error registering portfolio metrics: " + e.getMessage());
+        }
+        long dumpSeconds = Long.getLong("ePortfolio.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            portfolio.getMetrics().startPeriodicDump(System.out, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Initializes the graphical user interface components.
      */
@@ -0,0 +1,92 @@
+package ePortfolio;
+
+/**
+ * The Etf class represents units of an exchange-traded fund. ETFs trade like
+ * stocks and are charged the same commission by default.
+ */
+public class Etf extends Investment {
+    /**
+     * Constructs an Etf object with the specified symbol, name, quantity, and
+     * price, charged the standard commission on every buy and sell.
+     * 
+     * @param symbol   the symbol of the ETF
+     * @param name     the name of the ETF
+     * @param quantity the quantity of shares
+     * @param price    the price per share
+     */
+    public Etf(String symbol, String name, int quantity, double price) {
+        this(symbol, name, quantity, price, Stock.DEFAULT_COMMISSION, Stock.DEFAULT_COMMISSION);
+    }
+
+    /**
+     * Constructs an Etf object with the specified symbol, name, quantity, price
+     * and fee models.
+     * 
+     * @param symbol       the symbol of the ETF
+     * @param name         the name of the ETF
+     * @param quantity     the quantity of shares
+     * @param price        the price per share
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
+     */
+    public Etf(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        super(symbol, name, quantity, price, buyFeeModel, sellFeeModel);
+    }
+
+    /**
+     * Copy constructor for creating a duplicate Etf object.
+     * 
+     * @param other the Etf object to copy
+     */
+    public Etf(Etf other) {
+        super(other);
+    }
+
+    /**
+     * Returns the instrument type of the ETF.
+     * 
+     * @return {@link InstrumentType#ETF}
+     */
+    @Override
+    public InstrumentType getInstrumentType() {
+        return InstrumentType.ETF;
+    }
+
+    /**
+     * Returns a string representation of the ETF, including its symbol, name,
+     * quantity, price, and book value.
+     * 
+     * @return a string representation of the ETF
+     */
+    @Override
+    public String toString() {
+        return String.format("ETF [Symbol: %s, Name: %s, Quantity: %d, Price: %.2f, Book Value: %.2f]",
+                symbol, name, quantity, price, bookValue);
+    }
+
+    /**
+     * Compares two Etf objects for equality.
+     * 
+     * @param obj the object to compare
+     * @return true if the objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Etf))
+            return false;
+        return super.equals(obj);
+    }
+
+    /**
+     * Returns a hash code for the Etf object.
+     * 
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -0,0 +1,23 @@
+package ePortfolio;
+
+/**
+ * A schedule of trading fees, evaluated for every buy and sell.
+ * Implementations are immutable and must not allocate when calculating a fee,
+ * since they run on the trade path.
+ */
+@FunctionalInterface
+public interface FeeModel {
+    /**
+     * A fee model that never charges a fee.
+     */
+    FeeModel NONE = (quantity, price) -> 0.0;
+
+    /**
+     * Calculates the fee for a trade.
+     *
+     * @param quantity the quantity traded
+     * @param price    the price per unit
+     * @return the fee, never negative
+     */
+    double calculateFee(int quantity, double price);
+}
@@ -0,0 +1,184 @@
+package ePortfolio;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The FeeSchedule class assigns buy and sell fee models by investment type and
+ * trading venue.
+ * Models are looked up when a position is opened or the schedule changes, and
+ * are then held by the investment, so trades never consult the schedule. They
+ * are kept in arrays indexed by venue id and instrument tag, so callers that
+ * hold a venue id look them up without building a key. A venue without its own
+ * fees for a type falls back to the default venue, and a type without any fees
+ * is traded free of charge.
+ */
+public class FeeSchedule {
+    /**
+     * The venue used when no venue is given.
+     */
+    public static final String DEFAULT_VENUE = "DEFAULT";
+
+    private final Map<String, Integer> venueIds = new HashMap<>();
+    // Indexed by venue id and then by instrument tag; null where no fees are
+    // set. The default venue is always id 0
+    private FeeModel[][] buyModels = new FeeModel[0][];
+    private FeeModel[][] sellModels = new FeeModel[0][];
+
+    /**
+     * Constructs an empty schedule, under which everything trades free of
+     * charge.
+     */
+    public FeeSchedule() {
+        venueId(DEFAULT_VENUE);
+    }
+
+    /**
+     * Returns a schedule with the default fees of every registered instrument
+     * type at the default venue, such as a 9.99 commission on every stock trade
+     * and a 45.00 redemption fee on every mutual fund sale.
+     *
+     * @return the standard fee schedule
+     */
+    public static FeeSchedule standard() {
+        FeeSchedule schedule = new FeeSchedule();
+        for (InstrumentType type : InstrumentType.values()) {
+            schedule.setFees(type.getName(), DEFAULT_VENUE, type.getDefaultBuyFeeModel(),
+                    type.getDefaultSellFeeModel());
+        }
+        return schedule;
+    }
+
+    /**
+     * Sets the fee models for an investment type at a venue.
+     *
+     * @param type     the name of the instrument type, such as stock or bond
+     * @param venue    the venue
+     * @param buyFees  the fee model for buys
+     * @param sellFees the fee model for sells
+     */
+    public void setFees(String type, String venue, FeeModel buyFees, FeeModel sellFees) {
+        if (buyFees == null || sellFees == null) {
+            throw new IllegalArgumentException("Fee models cannot be null.");
+        }
+        InstrumentType instrumentType = resolve(type);
+        if (instrumentType == null) {
+            throw new IllegalArgumentException("Invalid investment type: " + type + ".");
+        }
+        int id = venueId(venue);
+        buyModels[id][instrumentType.getTag()] = buyFees;
+        sellModels[id][instrumentType.getTag()] = sellFees;
+    }
+
+    /**
+     * Returns the id of a venue in this schedule, assigning one the first time
+     * the venue is seen. Ids never change, so callers that trade at one venue
+     * can look it up once and use the id for every later lookup.
+     *
+     * @param venue the venue
+     * @return the id of the venue
+     */
+    public int venueId(String venue) {
+        if (venue == null) {
+            throw new IllegalArgumentException("Venue cannot be null.");
+        }
+        Integer id = venueIds.get(venue.toUpperCase());
+        if (id == null) {
+            id = venueIds.size();
+            venueIds.put(venue.toUpperCase(), id);
+            buyModels = Arrays.copyOf(buyModels, id + 1);
+            sellModels = Arrays.copyOf(sellModels, id + 1);
+            buyModels[id] = new FeeModel[InstrumentType.TAG_COUNT];
+            sellModels[id] = new FeeModel[InstrumentType.TAG_COUNT];
+        }
+        return id;
+    }
+
+    /**
+     * Returns the fee model for buying an investment type at a venue.
+     *
+     * @param type  the investment type
+     * @param venue the venue
+     * @return the buy fee model
+     */
+    public FeeModel getBuyFeeModel(String type, String venue) {
+        InstrumentType instrumentType = resolve(type);
+        return instrumentType == null ? FeeModel.NONE : lookup(buyModels, instrumentType, existingVenueId(venue));
+    }
+
+    /**
+     * Returns the fee model for selling an investment type at a venue.
+     *
+     * @param type  the investment type
+     * @param venue the venue
+     * @return the sell fee model
+     */
+    public FeeModel getSellFeeModel(String type, String venue) {
+        InstrumentType instrumentType = resolve(type);
+        return instrumentType == null ? FeeModel.NONE : lookup(sellModels, instrumentType, existingVenueId(venue));
+    }
+
+    /**
+     * Returns the fee model for buying an instrument type at a venue given by
+     * its id.
+     *
+     * @param type    the instrument type
+     * @param venueId the id of the venue, from {@link #venueId(String)}
+     * @return the buy fee model
+     */
+    public FeeModel getBuyFeeModel(InstrumentType type, int venueId) {
+        return lookup(buyModels, type, venueId);
+    }
+
+    /**
+     * Returns the fee model for selling an instrument type at a venue given by
+     * its id.
+     *
+     * @param type    the instrument type
+     * @param venueId the id of the venue, from {@link #venueId(String)}
+     * @return the sell fee model
+     */
+    public FeeModel getSellFeeModel(InstrumentType type, int venueId) {
+        return lookup(sellModels, type, venueId);
+    }
+
+    /**
+     * Finds the model for a type, falling back to the default venue and then
+     * to no fees.
+     *
+     * @param models  the buy or sell models
+     * @param type    the instrument type
+     * @param venueId the id of the venue
+     * @return the fee model
+     */
+    private static FeeModel lookup(FeeModel[][] models, InstrumentType type, int venueId) {
+        FeeModel found = models[venueId][type.getTag()];
+        if (found == null) {
+            found = models[0][type.getTag()];
+        }
+        return found != null ? found : FeeModel.NONE;
+    }
+
+    /**
+     * Returns the id of a venue without assigning one, using the default venue
+     * for a venue that has no fees of its own.
+     *
+     * @param venue the venue
+     * @return the id of the venue
+     */
+    private int existingVenueId(String venue) {
+        if (venue == null) {
+            throw new IllegalArgumentException("Type and venue cannot be null.");
+        }
+        Integer id = venueIds.get(venue.toUpperCase());
+        return id != null ? id : 0;
+    }
+
+    private static InstrumentType resolve(String type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type and venue cannot be null.");
+        }
+        return InstrumentType.forName(type);
+    }
+}
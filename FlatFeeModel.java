@@ -0,0 +1,31 @@
+package ePortfolio;
+
+/**
+ * The FlatFeeModel class charges the same fee for every trade, regardless of
+ * its size.
+ */
+public final class FlatFeeModel implements FeeModel {
+    private final double fee;
+
+    /**
+     * Constructs a FlatFeeModel.
+     *
+     * @param fee the fee charged per trade
+     */
+    public FlatFeeModel(double fee) {
+        if (!(fee >= 0)) {
+            throw new IllegalArgumentException("Fee cannot be negative.");
+        }
+        this.fee = fee;
+    }
+
+    @Override
+    public double calculateFee(int quantity, double price) {
+        return fee;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Flat %.2f", fee);
+    }
+}
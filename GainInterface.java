@@ -2,15 +2,22 @@ package ePortfolio;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
 
 /**
  * The GainInterface class provides a graphical user interface to display
  * the total gain of the portfolio and the individual gains for each investment.
+ * The gains are shown in a table that is updated row by row as the portfolio
+ * changes while the frame is open.
  */
 public class GainInterface extends JFrame {
     private final Portfolio portfolio;
     private final JTextField totalGainField;
-    private final JTextArea messageArea;
+    private final JTextField realizedYearToDateField, realizedMonthToDateField, realizedTotalField;
+    private final GainTableModel gainTableModel;
+    private final SwingChangeSubscriber changeSubscriber;
 
     /**
      * Constructs the GainInterface for viewing portfolio gains.
@@ -25,17 +32,39 @@ public class GainInterface extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 
         // Components
-        JPanel inputPanel = new JPanel(new GridLayout(1, 2, 10, 10));
+        JPanel inputPanel = new JPanel(new GridLayout(4, 2, 10, 10));
         JLabel totalGainLabel = new JLabel("Total Gain:");
         totalGainField = new JTextField();
         totalGainField.setEditable(false);
+        JLabel realizedYearToDateLabel = new JLabel("Realized Gain (Year to Date):");
+        realizedYearToDateField = new JTextField();
+        realizedYearToDateField.setEditable(false);
+        JLabel realizedMonthToDateLabel = new JLabel("Realized Gain (This Month):");
+        realizedMonthToDateField = new JTextField();
+        realizedMonthToDateField.setEditable(false);
+        JLabel realizedTotalLabel = new JLabel("Realized Gain (All Time):");
+        realizedTotalField = new JTextField();
+        realizedTotalField.setEditable(false);
 
         inputPanel.add(totalGainLabel);
         inputPanel.add(totalGainField);
+        inputPanel.add(realizedYearToDateLabel);
+        inputPanel.add(realizedYearToDateField);
+        inputPanel.add(realizedMonthToDateLabel);
+        inputPanel.add(realizedMonthToDateField);
+        inputPanel.add(realizedTotalLabel);
+        inputPanel.add(realizedTotalField);
 
-        messageArea = new JTextArea(10, 50);
-        messageArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(messageArea, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+        // Subscribe before reading the investments so no change is missed;
+        // changes the investments already include are skipped by sequence
+        changeSubscriber = new SwingChangeSubscriber(this::applyChanges);
+        portfolio.getChangePublisher().subscribe(changeSubscriber);
+        long sequence = portfolio.getChangeSequence();
+        gainTableModel = new GainTableModel(portfolio.getInvestments(), sequence);
+        gainTableModel.setRepaintListener(this::displayTotals);
+        JTable gainTable = new JTable(gainTableModel);
+        gainTable.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(gainTable, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
                 JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
         // Layout
@@ -44,27 +73,40 @@ public class GainInterface extends JFrame {
         add(scrollPane, BorderLayout.CENTER);
 
         // Calculate gains
-        displayGains();
+        displayTotals();
+        gainTableModel.start();
+
+        // Stop listening once closed
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeSubscriber.cancel();
+                gainTableModel.stop();
+            }
+        });
 
         setVisible(true);
     }
 
     /**
-     * Calculates and displays the total gain of the portfolio and the individual
-     * gains for each investment.
+     * Applies a batch of changes to the gain table.
+     *
+     * @param changes the changes to apply
      */
-    private void displayGains() {
-        double totalGain = portfolio.getTotalGain();
-        totalGainField.setText(String.format("%.2f", totalGain));
+    private void applyChanges(List<PortfolioChange> changes) {
+        gainTableModel.applyChanges(changes);
+    }
 
-        StringBuilder gains = new StringBuilder();
-        for (Investment investment : portfolio.getInvestments()) {
-            gains.append(investment.getName())
-                    .append(" (").append(investment.getSymbol()).append("): $")
-                    .append(String.format("%.2f", investment.calculateGain()))
-                    .append("\n");
-        }
+    /**
+     * Displays the total gain of the portfolio and the realized gain from past
+     * sales. The total gain is the running sum kept by the table model.
+     */
+    private void displayTotals() {
+        totalGainField.setText(String.format("%.2f", gainTableModel.getTotalGain()));
 
-        messageArea.setText(gains.toString());
+        RealizedGainLedger ledger = portfolio.getRealizedGainLedger();
+        realizedYearToDateField.setText(String.format("%.2f", ledger.getYearToDate()));
+        realizedMonthToDateField.setText(String.format("%.2f", ledger.getMonthToDate()));
+        realizedTotalField.setText(String.format("%.2f", ledger.getTotal()));
     }
 }
@@ -0,0 +1,258 @@
+package ePortfolio;
+
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+/**
+ * The GainTableModel class backs a table of per-investment gains that is kept
+ * current from a stream of portfolio changes.
+ * Each change only updates the numbers of its own row and marks the row dirty.
+ * The dirty rows are formatted and repainted together on a Swing timer, so no
+ * matter how many changes arrive, rows are reformatted at most once per frame
+ * and untouched rows are never reformatted. The total gain is kept as a running
+ * sum of the row gains. Changes the initial investments already include can
+ * be skipped by giving the change sequence read before the investments were.
+ * All methods must be called on the event dispatch thread.
+ */
+public class GainTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"Symbol", "Name", "Quantity", "Price", "Book Value", "Gain"};
+    private static final int DEFAULT_FRAMES_PER_SECOND = 30;
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, Integer> rowIndex = new HashMap<>();
+    private final BitSet dirtyRows = new BitSet();
+    private final Timer repaintTimer;
+    private final long sequence;
+    private double totalGain;
+    private boolean changedSinceRepaint;
+    private Runnable repaintListener = () -> { };
+
+    /**
+     * Constructs a GainTableModel that repaints at up to 30 frames per second.
+     *
+     * @param investments the investments to show initially
+     */
+    public GainTableModel(Collection<Investment> investments) {
+        this(investments, 0, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * Constructs a GainTableModel that repaints at a given frame rate.
+     *
+     * @param investments     the investments to show initially
+     * @param framesPerSecond the maximum number of repaints per second
+     */
+    public GainTableModel(Collection<Investment> investments, int framesPerSecond) {
+        this(investments, 0, framesPerSecond);
+    }
+
+    /**
+     * Constructs a GainTableModel that repaints at up to 30 frames per second
+     * and skips the changes its initial investments already include.
+     *
+     * @param investments the investments to show initially
+     * @param sequence    the change sequence read before the investments
+     */
+    public GainTableModel(Collection<Investment> investments, long sequence) {
+        this(investments, sequence, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * Constructs a GainTableModel that repaints at a given frame rate and
+     * skips the changes its initial investments already include.
+     *
+     * @param investments     the investments to show initially
+     * @param sequence        the change sequence read before the investments
+     * @param framesPerSecond the maximum number of repaints per second
+     */
+    public GainTableModel(Collection<Investment> investments, long sequence, int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be greater than zero.");
+        }
+        this.sequence = sequence;
+        for (Investment investment : investments) {
+            Row row = new Row(investment.getSymbol());
+            row.set(investment.getName(), investment.getQuantity(), investment.getPrice(),
+                    investment.getBookValue());
+            row.format();
+            rowIndex.put(row.symbol, rows.size());
+            rows.add(row);
+            totalGain += row.gain;
+        }
+        repaintTimer = new Timer(1000 / framesPerSecond, e -> repaintDirtyRows());
+        repaintTimer.setCoalesce(true);
+    }
+
+    /**
+     * Starts repainting changed rows.
+     */
+    public void start() {
+        repaintTimer.start();
+    }
+
+    /**
+     * Stops repainting changed rows.
+     */
+    public void stop() {
+        repaintTimer.stop();
+    }
+
+    /**
+     * Sets a callback run after each repaint that changed at least one row,
+     * for views that show figures derived from the table.
+     *
+     * @param repaintListener the callback
+     */
+    public void setRepaintListener(Runnable repaintListener) {
+        this.repaintListener = repaintListener;
+    }
+
+    /**
+     * Applies a batch of changes. Rows that are only updated are repainted on
+     * the next frame; rows that are added or removed are shown at once.
+     * Changes numbered at or below the initial sequence are skipped.
+     *
+     * @param changes the changes to apply
+     */
+    public void applyChanges(List<PortfolioChange> changes) {
+        for (PortfolioChange change : changes) {
+            if (change.getSequence() <= sequence && change.getSequence() != 0) {
+                continue;
+            }
+            Integer index = rowIndex.get(change.getSymbol());
+            if (change.getKind() == PortfolioChange.Kind.POSITION_REMOVED) {
+                if (index != null) {
+                    removeRow(index);
+                }
+            } else if (index == null) {
+                addRow(change);
+            } else {
+                Row row = rows.get(index);
+                totalGain -= row.gain;
+                row.set(change.getName(), change.getQuantity(), change.getPrice(), change.getBookValue());
+                totalGain += row.gain;
+                dirtyRows.set(index);
+            }
+            changedSinceRepaint = true;
+        }
+    }
+
+    /**
+     * Returns the sum of the gains of all rows.
+     *
+     * @return the total gain
+     */
+    public double getTotalGain() {
+        return totalGain;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return rows.get(rowIndex).cells[columnIndex];
+    }
+
+    /**
+     * Formats the dirty rows and notifies the table, one event per run of
+     * adjacent rows.
+     */
+    private void repaintDirtyRows() {
+        for (int first = dirtyRows.nextSetBit(0); first >= 0; ) {
+            int end = dirtyRows.nextClearBit(first);
+            for (int i = first; i < end; i++) {
+                rows.get(i).format();
+            }
+            fireTableRowsUpdated(first, end - 1);
+            first = dirtyRows.nextSetBit(end);
+        }
+        dirtyRows.clear();
+        if (changedSinceRepaint) {
+            changedSinceRepaint = false;
+            repaintListener.run();
+        }
+    }
+
+    /**
+     * Appends a row for a new position.
+     *
+     * @param change the change describing the position
+     */
+    private void addRow(PortfolioChange change) {
+        Row row = new Row(change.getSymbol());
+        row.set(change.getName(), change.getQuantity(), change.getPrice(), change.getBookValue());
+        row.format();
+        int index = rows.size();
+        rows.add(row);
+        rowIndex.put(row.symbol, index);
+        totalGain += row.gain;
+        fireTableRowsInserted(index, index);
+    }
+
+    /**
+     * Removes a row. Pending repaints are flushed first, since the rows after
+     * the removed one move up.
+     *
+     * @param index the index of the row to remove
+     */
+    private void removeRow(int index) {
+        repaintDirtyRows();
+        Row row = rows.remove(index);
+        rowIndex.remove(row.symbol);
+        for (int i = index; i < rows.size(); i++) {
+            rowIndex.put(rows.get(i).symbol, i);
+        }
+        totalGain -= row.gain;
+        fireTableRowsDeleted(index, index);
+    }
+
+    /**
+     * The numbers of one investment and their formatted cells.
+     */
+    private static final class Row {
+        private final String symbol;
+        private final Object[] cells = new Object[COLUMNS.length];
+        private String name;
+        private int quantity;
+        private double price;
+        private double bookValue;
+        private double gain;
+
+        private Row(String symbol) {
+            this.symbol = symbol;
+            cells[0] = symbol;
+        }
+
+        private void set(String name, int quantity, double price, double bookValue) {
+            this.name = name;
+            this.quantity = quantity;
+            this.price = price;
+            this.bookValue = bookValue;
+            this.gain = quantity * price - bookValue;
+        }
+
+        private void format() {
+            cells[1] = name;
+            cells[2] = Integer.toString(quantity);
+            cells[3] = String.format("%.2f", price);
+            cells[4] = String.format("%.2f", bookValue);
+            cells[5] = String.format("%.2f", gain);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ePortfolio;
+
+/**
+ * The InstrumentAggregates class keeps running totals of the positions, market
+ * value and book value held in each instrument type.
+ * Totals live in arrays indexed by the type tag and are adjusted by the
+ * portfolio as positions change, so reading them never scans the positions.
+ * The totals over all types are kept the same way.
+ */
+public class InstrumentAggregates {
+    private final int[] counts = new int[InstrumentType.TAG_COUNT];
+    private final double[] marketValues = new double[InstrumentType.TAG_COUNT];
+    private final double[] bookValues = new double[InstrumentType.TAG_COUNT];
+    private double totalMarketValue;
+    private double totalBookValue;
+
+    /**
+     * Adds a position to the totals of its type.
+     *
+     * @param investment the position added
+     */
+    public void add(Investment investment) {
+        int tag = investment.getInstrumentType().getTag();
+        counts[tag]++;
+        marketValues[tag] += investment.getQuantity() * investment.getPrice();
+        bookValues[tag] += investment.getBookValue();
+        totalMarketValue += investment.getQuantity() * investment.getPrice();
+        totalBookValue += investment.getBookValue();
+    }
+
+    /**
+     * Removes a position from the totals of its type.
+     *
+     * @param investment the position removed
+     */
+    public void remove(Investment investment) {
+        int tag = investment.getInstrumentType().getTag();
+        counts[tag]--;
+        marketValues[tag] -= investment.getQuantity() * investment.getPrice();
+        bookValues[tag] -= investment.getBookValue();
+        totalMarketValue -= investment.getQuantity() * investment.getPrice();
+        totalBookValue -= investment.getBookValue();
+    }
+
+    /**
+     * Moves the totals of a position's type from its previous values to its
+     * current ones.
+     *
+     * @param investment          the position after the change
+     * @param previousMarketValue the market value before the change
+     * @param previousBookValue   the book value before the change
+     */
+    public void update(Investment investment, double previousMarketValue, double previousBookValue) {
+        int tag = investment.getInstrumentType().getTag();
+        marketValues[tag] += investment.getQuantity() * investment.getPrice() - previousMarketValue;
+        bookValues[tag] += investment.getBookValue() - previousBookValue;
+        totalMarketValue += investment.getQuantity() * investment.getPrice() - previousMarketValue;
+        totalBookValue += investment.getBookValue() - previousBookValue;
+    }
+
+    /**
+     * Returns the number of positions held in a type.
+     *
+     * @param type the instrument type
+     * @return the number of positions
+     */
+    public int getCount(InstrumentType type) {
+        return counts[type.getTag()];
+    }
+
+    /**
+     * Returns the market value held in a type.
+     *
+     * @param type the instrument type
+     * @return the market value
+     */
+    public double getMarketValue(InstrumentType type) {
+        return marketValues[type.getTag()];
+    }
+
+    /**
+     * Returns the book value held in a type.
+     *
+     * @param type the instrument type
+     * @return the book value
+     */
+    public double getBookValue(InstrumentType type) {
+        return bookValues[type.getTag()];
+    }
+
+    /**
+     * Returns the unrealized gain held in a type.
+     *
+     * @param type the instrument type
+     * @return the market value less the book value
+     */
+    public double getGain(InstrumentType type) {
+        int tag = type.getTag();
+        return marketValues[tag] - bookValues[tag];
+    }
+
+    /**
+     * Returns the unrealized gain held in all types together.
+     *
+     * @return the total market value less the total book value
+     */
+    public double getTotalGain() {
+        return totalMarketValue - totalBookValue;
+    }
+
+    /**
+     * Copies the totals of every tag into arrays of length
+     * {@link InstrumentType#TAG_COUNT}.
+     *
+     * @param counts       the array to receive the position counts
+     * @param marketValues the array to receive the market values
+     * @param bookValues   the array to receive the book values
+     */
+    void copyTo(int[] counts, double[] marketValues, double[] bookValues) {
+        System.arraycopy(this.counts, 0, counts, 0, counts.length);
+        System.arraycopy(this.marketValues, 0, marketValues, 0, marketValues.length);
+        System.arraycopy(this.bookValues, 0, bookValues, 0, bookValues.length);
+    }
+}
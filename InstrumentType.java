@@ -0,0 +1,185 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * The InstrumentType class is the registry of the kinds of investment a
+ * portfolio can hold. Each type is identified by a small byte tag, which is
+ * stored in saved portfolios and used to index per-type tables, and by a name
+ * used in files and on screen.
+ * Creating and copying investments goes through the registered factories, so
+ * adding a type only takes a new Investment subclass and a call to register.
+ */
+public final class InstrumentType {
+    /**
+     * Creates an investment of a registered type.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        /**
+         * Creates an investment.
+         *
+         * @param symbol       the symbol of the investment
+         * @param name         the name of the investment
+         * @param quantity     the initial quantity
+         * @param price        the initial price
+         * @param buyFeeModel  the fee model applied to buys
+         * @param sellFeeModel the fee model applied to sells
+         * @return the new investment
+         */
+        Investment create(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+                FeeModel sellFeeModel);
+    }
+
+    /**
+     * The number of possible tags. Tables indexed by tag have this length.
+     */
+    public static final int TAG_COUNT = Byte.MAX_VALUE + 1;
+
+    private static final InstrumentType[] BY_TAG = new InstrumentType[TAG_COUNT];
+    private static final Map<String, InstrumentType> BY_NAME = new LinkedHashMap<>();
+
+    public static final InstrumentType STOCK = register(1, "Stock", Stock::new, i -> new Stock((Stock) i),
+            Stock.DEFAULT_COMMISSION, Stock.DEFAULT_COMMISSION);
+    public static final InstrumentType MUTUAL_FUND = register(2, "MutualFund", MutualFund::new,
+            i -> new MutualFund((MutualFund) i), FeeModel.NONE, MutualFund.DEFAULT_REDEMPTION_FEE);
+    public static final InstrumentType ETF = register(3, "ETF", Etf::new, i -> new Etf((Etf) i),
+            Stock.DEFAULT_COMMISSION, Stock.DEFAULT_COMMISSION);
+    public static final InstrumentType BOND = register(4, "Bond", Bond::new, i -> new Bond((Bond) i),
+            Bond.DEFAULT_FEE, Bond.DEFAULT_FEE);
+    public static final InstrumentType OPTION = register(5, "Option", Option::new, i -> new Option((Option) i),
+            Option.DEFAULT_FEE, Option.DEFAULT_FEE);
+
+    private final byte tag;
+    private final String name;
+    private final String label;
+    private final Factory factory;
+    private final UnaryOperator<Investment> copier;
+    private final FeeModel defaultBuyFeeModel;
+    private final FeeModel defaultSellFeeModel;
+
+    private InstrumentType(byte tag, String label, Factory factory, UnaryOperator<Investment> copier,
+            FeeModel defaultBuyFeeModel, FeeModel defaultSellFeeModel) {
+        this.tag = tag;
+        this.name = label.toLowerCase();
+        this.label = label;
+        this.factory = factory;
+        this.copier = copier;
+        this.defaultBuyFeeModel = defaultBuyFeeModel;
+        this.defaultSellFeeModel = defaultSellFeeModel;
+    }
+
+    /**
+     * Registers a new instrument type.
+     *
+     * @param tag                 the tag of the type, from 1 to 127
+     * @param label               the display label; its lower case form is the
+     *                            name used in files
+     * @param factory             creates investments of the type
+     * @param copier              copies investments of the type
+     * @param defaultBuyFeeModel  the buy fees charged at the default venue
+     * @param defaultSellFeeModel the sell fees charged at the default venue
+     * @return the registered type
+     * @throws IllegalArgumentException if the tag or name is invalid or taken
+     */
+    public static synchronized InstrumentType register(int tag, String label, Factory factory,
+            UnaryOperator<Investment> copier, FeeModel defaultBuyFeeModel, FeeModel defaultSellFeeModel) {
+        if (tag < 1 || tag >= TAG_COUNT) {
+            throw new IllegalArgumentException("Instrument tag must be between 1 and " + (TAG_COUNT - 1) + ".");
+        }
+        if (label == null || label.trim().isEmpty() || factory == null || copier == null
+                || defaultBuyFeeModel == null || defaultSellFeeModel == null) {
+            throw new IllegalArgumentException("Instrument type needs a label, a factory, a copier and fees.");
+        }
+        String name = label.toLowerCase();
+        if (BY_TAG[tag] != null || BY_NAME.containsKey(name)) {
+            throw new IllegalArgumentException("Instrument type already registered: " + tag + " " + label);
+        }
+        InstrumentType type = new InstrumentType((byte) tag, label, factory, copier, defaultBuyFeeModel,
+                defaultSellFeeModel);
+        BY_TAG[tag] = type;
+        BY_NAME.put(name, type);
+        return type;
+    }
+
+    /**
+     * Returns the type registered under a tag.
+     *
+     * @param tag the tag
+     * @return the type, or null if no type has the tag
+     */
+    public static InstrumentType forTag(int tag) {
+        return tag >= 0 && tag < TAG_COUNT ? BY_TAG[tag] : null;
+    }
+
+    /**
+     * Returns the type registered under a name, ignoring case.
+     *
+     * @param name the name or label of the type
+     * @return the type, or null if no type has the name
+     */
+    public static synchronized InstrumentType forName(String name) {
+        return name == null ? null : BY_NAME.get(name.trim().toLowerCase());
+    }
+
+    /**
+     * Returns every registered type in order of registration.
+     *
+     * @return the registered types
+     */
+    public static synchronized List<InstrumentType> values() {
+        return new ArrayList<>(BY_NAME.values());
+    }
+
+    /**
+     * Creates an investment of this type.
+     *
+     * @param symbol       the symbol of the investment
+     * @param name         the name of the investment
+     * @param quantity     the initial quantity
+     * @param price        the initial price
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
+     * @return the new investment
+     */
+    public Investment create(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        return factory.create(symbol, name, quantity, price, buyFeeModel, sellFeeModel);
+    }
+
+    /**
+     * Copies an investment of this type.
+     *
+     * @param investment the investment to copy
+     * @return an independent copy
+     */
+    public Investment copy(Investment investment) {
+        return copier.apply(investment);
+    }
+
+    public byte getTag() {
+        return tag;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public FeeModel getDefaultBuyFeeModel() {
+        return defaultBuyFeeModel;
+    }
+
+    public FeeModel getDefaultSellFeeModel() {
+        return defaultSellFeeModel;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -1,16 +1,21 @@
 package ePortfolio;
 
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 public abstract class Investment {
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9]+");
     protected String symbol;
     protected String name;
     protected int quantity;
     protected double price;
     protected double bookValue;
+    protected LotDeque lots;
+    protected FeeModel buyFeeModel;
+    protected FeeModel sellFeeModel;
 
     /**
-     * Constructor to create a new Investment.
+     * Constructor to create a new Investment that is traded without fees.
      *
      * @param symbol   the symbol of the investment
      * @param name     the name of the investment
@@ -18,11 +23,30 @@ public abstract class Investment {
      * @param price    the price of the investment
      */
     public Investment(String symbol, String name, int quantity, double price) {
+        this(symbol, name, quantity, price, FeeModel.NONE, FeeModel.NONE);
+    }
+
+    /**
+     * Constructor to create a new Investment with fee models. The buy fee is
+     * included in the initial book value.
+     *
+     * @param symbol       the symbol of the investment
+     * @param name         the name of the investment
+     * @param quantity     the quantity of the investment
+     * @param price        the price of the investment
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
+     */
+    public Investment(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        setFeeModels(buyFeeModel, sellFeeModel);
         this.symbol = validateSymbol(symbol);
         this.name = validateName(name);
         this.quantity = validateQuantity(quantity);
         this.price = validatePrice(price);
         this.bookValue = calculateInitialBookValue(quantity, price);
+        this.lots = new LotDeque();
+        this.lots.add(this.quantity, this.bookValue / this.quantity);
     }
 
     /**
@@ -39,19 +63,54 @@ public abstract class Investment {
         this.quantity = other.quantity;
         this.price = other.price;
         this.bookValue = other.bookValue;
+        this.lots = new LotDeque(other.lots);
+        this.buyFeeModel = other.buyFeeModel;
+        this.sellFeeModel = other.sellFeeModel;
     }
 
     /**
      * Calculates the initial book value of the investment based on the quantity and
-     * price. This method can be overridden by subclasses to include additional
-     * calculations if needed.
+     * price, including the buy fee. This method can be overridden by subclasses to
+     * include additional calculations if needed.
      *
      * @param quantity the quantity of the investment
      * @param price    the price of the investment
      * @return the initial book value
      */
     protected double calculateInitialBookValue(int quantity, double price) {
-        return quantity * price;
+        return quantity * price + buyFeeModel.calculateFee(quantity, price);
+    }
+
+    /**
+     * Replaces the fee models applied to future buys and sells.
+     *
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
+     */
+    public void setFeeModels(FeeModel buyFeeModel, FeeModel sellFeeModel) {
+        if (buyFeeModel == null || sellFeeModel == null) {
+            throw new IllegalArgumentException("Fee models cannot be null.");
+        }
+        this.buyFeeModel = buyFeeModel;
+        this.sellFeeModel = sellFeeModel;
+    }
+
+    public FeeModel getBuyFeeModel() {
+        return buyFeeModel;
+    }
+
+    public FeeModel getSellFeeModel() {
+        return sellFeeModel;
+    }
+
+    /**
+     * Calculates the fee that selling the whole position at the current price
+     * would incur.
+     *
+     * @return the sell fee, or 0 if nothing is held
+     */
+    public double estimateSellFee() {
+        return quantity == 0 ? 0 : sellFeeModel.calculateFee(quantity, price);
     }
 
     /**
@@ -94,6 +153,65 @@ public abstract class Investment {
         return bookValue;
     }
 
+    /**
+     * Visits the open purchase lots of the investment from oldest to newest.
+     *
+     * @param visitor the visitor to call for each lot
+     */
+    public void forEachLot(LotDeque.LotVisitor visitor) {
+        lots.forEachLot(visitor);
+    }
+
+    /**
+     * Restores the book value read from a saved portfolio. The saved position
+     * becomes a single lot at its average cost.
+     *
+     * @param bookValue the saved book value
+     */
+    void restoreBookValue(double bookValue) {
+        this.bookValue = bookValue;
+        this.lots.clear();
+        this.lots.add(this.quantity, bookValue / this.quantity);
+    }
+
+    /**
+     * Adds a purchase lot and increases the quantity and book value.
+     *
+     * @param additionalQuantity the quantity bought
+     * @param cost               the total cost of the purchase, including fees
+     */
+    protected void addLot(int additionalQuantity, double cost) {
+        lots.add(additionalQuantity, cost / additionalQuantity);
+        this.quantity += additionalQuantity;
+        this.bookValue += cost;
+    }
+
+    /**
+     * Checks that a quantity can be sold from this investment.
+     *
+     * @param quantityToSell the quantity to sell
+     */
+    private void checkSellQuantity(int quantityToSell) {
+        validateQuantity(quantityToSell);
+        if (quantityToSell > this.quantity) {
+            throw new IllegalArgumentException("Insufficient quantity to sell.");
+        }
+    }
+
+    /**
+     * Reduces the quantity and book value after lots have been consumed.
+     *
+     * @param quantitySold the quantity sold
+     * @param proceeds     the proceeds from the sale
+     * @param costBasis    the book value of the consumed lots
+     * @return the result of the sale
+     */
+    private SaleResult completeSale(int quantitySold, double proceeds, double costBasis) {
+        this.quantity -= quantitySold;
+        this.bookValue = this.quantity == 0 ? 0 : this.bookValue - costBasis;
+        return new SaleResult(symbol, quantitySold, proceeds, costBasis);
+    }
+
     /**
      * Validates the symbol of the investment.
      *
@@ -101,7 +219,7 @@ public abstract class Investment {
      * @return the validated symbol in uppercase
      */
     protected String validateSymbol(String symbol) {
-        if (symbol == null || !symbol.matches("^[A-Z0-9]+$")) {
+        if (symbol == null || !SYMBOL.matcher(symbol).matches()) {
             throw new IllegalArgumentException("Invalid symbol. Symbols must be alphanumeric and uppercase.");
         }
         return symbol.toUpperCase();
@@ -168,7 +286,73 @@ public abstract class Investment {
         return Objects.hash(symbol, name);
     }
 
-    public abstract void buy(int additionalQuantity, double price);
+    /**
+     * Returns the registered type of the investment.
+     *
+     * @return the instrument type
+     */
+    public abstract InstrumentType getInstrumentType();
+
+    /**
+     * Buys additional quantity of the investment.
+     * The book value is increased based on the quantity and price of the new
+     * purchase plus the buy fee, and the purchase is kept as a new lot.
+     *
+     * @param additionalQuantity the quantity to buy
+     * @param price              the price per unit
+     */
+    public void buy(int additionalQuantity, double price) {
+        validateQuantity(additionalQuantity);
+        validatePrice(price);
+        addLot(additionalQuantity, additionalQuantity * price + buyFeeModel.calculateFee(additionalQuantity, price));
+    }
+
+    /**
+     * Sells a quantity of the investment, consuming the oldest lots first.
+     *
+     * @param quantityToSell the quantity to sell
+     * @param price          the price per unit
+     * @return the proceeds from the sale
+     */
+    public double sell(int quantityToSell, double price) {
+        return sell(quantityToSell, price, LotSelection.FIFO).getProceeds();
+    }
 
-    public abstract double sell(int quantityToSell, double price);
+    /**
+     * Sells a quantity of the investment, consuming lots in the order given by
+     * the lot selection method. The sell fee is subtracted from the proceeds.
+     *
+     * @param quantityToSell the quantity to sell
+     * @param price          the price per unit
+     * @param selection      the method used to choose the lots
+     * @return the result of the sale, including the realized gain
+     * @throws IllegalArgumentException if the quantity to sell is greater than the
+     *                                  available quantity
+     */
+    public SaleResult sell(int quantityToSell, double price, LotSelection selection) {
+        checkSellQuantity(quantityToSell);
+        double proceeds = quantityToSell * validatePrice(price) - sellFeeModel.calculateFee(quantityToSell, price);
+        double costBasis = selection == LotSelection.LIFO
+                ? lots.consumeLast(quantityToSell)
+                : lots.consumeFirst(quantityToSell);
+        return completeSale(quantityToSell, proceeds, costBasis);
+    }
+
+    /**
+     * Sells a quantity of the investment from one purchase lot. The sell fee is
+     * subtracted from the proceeds.
+     *
+     * @param lotId          the id of the lot to sell from
+     * @param quantityToSell the quantity to sell
+     * @param price          the price per unit
+     * @return the result of the sale, including the realized gain
+     * @throws IllegalArgumentException if the lot does not exist or holds less
+     *                                  than the requested quantity
+     */
+    public SaleResult sellLot(long lotId, int quantityToSell, double price) {
+        checkSellQuantity(quantityToSell);
+        double proceeds = quantityToSell * validatePrice(price) - sellFeeModel.calculateFee(quantityToSell, price);
+        double costBasis = lots.consumeLot(lotId, quantityToSell);
+        return completeSale(quantityToSell, proceeds, costBasis);
+    }
 }
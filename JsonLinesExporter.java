@@ -0,0 +1,23 @@
+package ePortfolio;
+
+import java.io.IOException;
+
+/**
+ * The JsonLinesExporter class writes each position as a JSON object on a line
+ * of its own, with the same fields as the text format.
+ */
+public class JsonLinesExporter extends PortfolioExporter {
+    @Override
+    protected void writeRecord(ByteSink sink, Investment investment) throws IOException {
+        sink.append("{\"type\":");
+        JsonWriter.appendString(sink, investment.getInstrumentType().getName());
+        sink.append(",\"symbol\":");
+        JsonWriter.appendString(sink, investment.getSymbol());
+        sink.append(",\"name\":");
+        JsonWriter.appendString(sink, investment.getName());
+        sink.append(",\"quantity\":").appendLong(investment.getQuantity());
+        sink.append(",\"price\":").appendDouble(investment.getPrice());
+        sink.append(",\"bookValue\":").appendDouble(investment.getBookValue());
+        sink.append("}\n");
+    }
+}
@@ -0,0 +1,253 @@
+package ePortfolio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The JsonWriter class writes JSON straight to an output stream as UTF-8.
+ * Values are encoded into a {@link ByteSink} that drains to the stream
+ * whenever its buffer fills up, so a document of any size is written without
+ * ever being held in memory as a whole. Commas between members and elements
+ * are added automatically. A JsonWriter is not thread-safe.
+ */
+public class JsonWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_DEPTH = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final ByteSink sink;
+    private final boolean[] hasElements = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Constructs a JsonWriter over an output stream.
+     *
+     * @param out the stream to write to
+     */
+    public JsonWriter(OutputStream out) {
+        this(new ByteSink(out, BUFFER_SIZE));
+    }
+
+    /**
+     * Constructs a JsonWriter that appends to a sink shared with other
+     * writers, such as one JSON document per line.
+     *
+     * @param sink the sink to append to
+     */
+    JsonWriter(ByteSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Ends the current object.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * Ends the current array.
+     *
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     *
+     * @param name the member name
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or null.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a whole number value.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        sink.appendLong(value);
+        return this;
+    }
+
+    /**
+     * Writes a number value. NaN and infinite values are written as null,
+     * since JSON cannot represent them.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        if (Double.isFinite(value)) {
+            sink.appendDouble(value);
+        } else {
+            writeAscii("null");
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the stream cannot be written
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    public void flush() throws IOException {
+        sink.flush();
+    }
+
+    /**
+     * Flushes the buffered bytes and closes the stream.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply.");
+        }
+        separate();
+        writeByte(bracket);
+        hasElements[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("No open object or array.");
+        }
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    /**
+     * Writes a comma before every member or element but the first, unless the
+     * value follows a member name.
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth - 1]) {
+                writeByte(',');
+            }
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        appendString(sink, value);
+    }
+
+    /**
+     * Appends a quoted JSON string to a sink, copying runs of characters that
+     * need no escape as they are.
+     *
+     * @param sink  the sink to append to
+     * @param value the string
+     * @throws IOException if the stream cannot be written
+     */
+    static void appendString(ByteSink sink, String value) throws IOException {
+        sink.append('"');
+        int run = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                sink.append(value, run, i);
+                run = i + 1;
+                if (c < 0x20) {
+                    sink.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                } else {
+                    sink.append('\\').append(c);
+                }
+            }
+        }
+        sink.append(value, run, value.length());
+        sink.append('"');
+    }
+
+    private void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        sink.append(b);
+    }
+}
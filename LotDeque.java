@@ -0,0 +1,318 @@
+package ePortfolio;
+
+/**
+ * The LotDeque class holds the purchase lots of a single position.
+ * Lots are stored in a ring buffer of primitive arrays, so each lot costs 12
+ * bytes and no objects are allocated per buy. Lots can be consumed from the
+ * front (FIFO), the back (LIFO) or by lot id. Consuming from either end is
+ * amortized O(lots consumed).
+ * Every lot gets a sequential id when it is added. A lot sold down to zero by
+ * id stays as an empty slot until it reaches either end of the deque.
+ * Consecutive buys at the same unit cost are merged into one lot. The buffer
+ * shrinks again as lots are consumed, which keeps memory bounded for positions
+ * with many small buys.
+ */
+public class LotDeque {
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] quantities;
+    private double[] unitCosts;
+    private int head;
+    private int size;
+    private long firstLotId;
+    private long totalQuantity;
+
+    /**
+     * Constructs an empty LotDeque.
+     */
+    public LotDeque() {
+        quantities = new int[MIN_CAPACITY];
+        unitCosts = new double[MIN_CAPACITY];
+    }
+
+    /**
+     * Copy constructor to create an independent duplicate of a LotDeque.
+     *
+     * @param other the deque to copy
+     */
+    public LotDeque(LotDeque other) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < other.size) {
+            capacity <<= 1;
+        }
+        quantities = new int[capacity];
+        unitCosts = new double[capacity];
+        for (int i = 0; i < other.size; i++) {
+            int from = other.physical(i);
+            quantities[i] = other.quantities[from];
+            unitCosts[i] = other.unitCosts[from];
+        }
+        size = other.size;
+        firstLotId = other.firstLotId;
+        totalQuantity = other.totalQuantity;
+    }
+
+    /**
+     * Adds a lot to the back of the deque. A buy at the same unit cost as the
+     * newest lot is merged into it.
+     *
+     * @param quantity the quantity bought
+     * @param unitCost the cost per unit, including fees
+     * @return the id of the lot holding the quantity
+     */
+    public long add(int quantity, double unitCost) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero.");
+        }
+        if (size > 0) {
+            int tail = physical(size - 1);
+            if (unitCosts[tail] == unitCost && quantities[tail] > 0
+                    && quantities[tail] <= Integer.MAX_VALUE - quantity) {
+                quantities[tail] += quantity;
+                totalQuantity += quantity;
+                return firstLotId + size - 1;
+            }
+        }
+        if (size == quantities.length) {
+            resize(quantities.length * 2);
+        }
+        int slot = physical(size);
+        quantities[slot] = quantity;
+        unitCosts[slot] = unitCost;
+        size++;
+        totalQuantity += quantity;
+        return firstLotId + size - 1;
+    }
+
+    /**
+     * Consumes quantity from the oldest lots first.
+     *
+     * @param quantity the quantity to consume
+     * @return the cost basis of the consumed quantity
+     */
+    public double consumeFirst(int quantity) {
+        checkAvailable(quantity);
+        double cost = 0;
+        int remaining = quantity;
+        while (remaining > 0) {
+            int slot = physical(0);
+            int taken = Math.min(remaining, quantities[slot]);
+            cost += taken * unitCosts[slot];
+            quantities[slot] -= taken;
+            remaining -= taken;
+            if (quantities[slot] == 0) {
+                removeFirst();
+            }
+        }
+        totalQuantity -= quantity;
+        trimEnds();
+        return cost;
+    }
+
+    /**
+     * Consumes quantity from the newest lots first.
+     *
+     * @param quantity the quantity to consume
+     * @return the cost basis of the consumed quantity
+     */
+    public double consumeLast(int quantity) {
+        checkAvailable(quantity);
+        double cost = 0;
+        int remaining = quantity;
+        while (remaining > 0) {
+            int slot = physical(size - 1);
+            int taken = Math.min(remaining, quantities[slot]);
+            cost += taken * unitCosts[slot];
+            quantities[slot] -= taken;
+            remaining -= taken;
+            if (quantities[slot] == 0) {
+                size--;
+            }
+        }
+        totalQuantity -= quantity;
+        trimEnds();
+        return cost;
+    }
+
+    /**
+     * Consumes quantity from one specific lot.
+     *
+     * @param lotId    the id of the lot
+     * @param quantity the quantity to consume
+     * @return the cost basis of the consumed quantity
+     * @throws IllegalArgumentException if the lot does not exist or holds less
+     *                                  than the requested quantity
+     */
+    public double consumeLot(long lotId, int quantity) {
+        int slot = slotOf(lotId);
+        if (quantity <= 0 || quantity > quantities[slot]) {
+            throw new IllegalArgumentException("Insufficient quantity in lot " + lotId + ".");
+        }
+        double cost = quantity * unitCosts[slot];
+        quantities[slot] -= quantity;
+        totalQuantity -= quantity;
+        trimEnds();
+        return cost;
+    }
+
+    /**
+     * Returns the quantity remaining in a lot.
+     *
+     * @param lotId the id of the lot
+     * @return the remaining quantity
+     */
+    public int getLotQuantity(long lotId) {
+        return quantities[slotOf(lotId)];
+    }
+
+    /**
+     * Returns the unit cost of a lot.
+     *
+     * @param lotId the id of the lot
+     * @return the cost per unit, including fees
+     */
+    public double getLotUnitCost(long lotId) {
+        return unitCosts[slotOf(lotId)];
+    }
+
+    /**
+     * Visits every non-empty lot from oldest to newest.
+     *
+     * @param visitor the visitor to call for each lot
+     */
+    public void forEachLot(LotVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            int slot = physical(i);
+            if (quantities[slot] > 0) {
+                visitor.visit(firstLotId + i, quantities[slot], unitCosts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Returns the total quantity across all lots.
+     *
+     * @return the total quantity
+     */
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * Returns the number of lot slots in use, including emptied lots that have
+     * not yet reached either end of the deque.
+     *
+     * @return the number of slots in use
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all lots.
+     */
+    public void clear() {
+        head = 0;
+        firstLotId += size;
+        size = 0;
+        totalQuantity = 0;
+        if (quantities.length > MIN_CAPACITY) {
+            quantities = new int[MIN_CAPACITY];
+            unitCosts = new double[MIN_CAPACITY];
+        }
+    }
+
+    /**
+     * Maps a lot id to its slot in the ring buffer.
+     *
+     * @param lotId the id of the lot
+     * @return the physical slot
+     * @throws IllegalArgumentException if the lot does not exist
+     */
+    private int slotOf(long lotId) {
+        long offset = lotId - firstLotId;
+        if (offset < 0 || offset >= size) {
+            throw new IllegalArgumentException("Lot " + lotId + " not found.");
+        }
+        return physical((int) offset);
+    }
+
+    /**
+     * Checks that enough quantity is held to satisfy a request.
+     *
+     * @param quantity the requested quantity
+     */
+    private void checkAvailable(int quantity) {
+        if (quantity <= 0 || quantity > totalQuantity) {
+            throw new IllegalArgumentException("Insufficient quantity to sell.");
+        }
+    }
+
+    /**
+     * Drops the oldest slot.
+     */
+    private void removeFirst() {
+        head = (head + 1) & (quantities.length - 1);
+        size--;
+        firstLotId++;
+    }
+
+    /**
+     * Drops emptied lots from both ends and shrinks the buffer when it is mostly
+     * unused.
+     */
+    private void trimEnds() {
+        while (size > 0 && quantities[physical(0)] == 0) {
+            removeFirst();
+        }
+        while (size > 0 && quantities[physical(size - 1)] == 0) {
+            size--;
+        }
+        if (quantities.length > MIN_CAPACITY && size < quantities.length / 4) {
+            resize(quantities.length / 2);
+        }
+    }
+
+    /**
+     * Moves the lots into buffers of a new capacity.
+     *
+     * @param capacity the new capacity, a power of two
+     */
+    private void resize(int capacity) {
+        int[] newQuantities = new int[capacity];
+        double[] newUnitCosts = new double[capacity];
+        for (int i = 0; i < size; i++) {
+            int slot = physical(i);
+            newQuantities[i] = quantities[slot];
+            newUnitCosts[i] = unitCosts[slot];
+        }
+        quantities = newQuantities;
+        unitCosts = newUnitCosts;
+        head = 0;
+    }
+
+    /**
+     * Maps a logical index to its physical slot.
+     *
+     * @param index the logical index, 0 being the oldest lot
+     * @return the physical slot
+     */
+    private int physical(int index) {
+        return (head + index) & (quantities.length - 1);
+    }
+
+    /**
+     * Callback used to visit lots without allocating per lot.
+     */
+    @FunctionalInterface
+    public interface LotVisitor {
+        /**
+         * Visits a single lot.
+         *
+         * @param lotId    the id of the lot
+         * @param quantity the remaining quantity in the lot
+         * @param unitCost the cost per unit, including fees
+         */
+        void visit(long lotId, int quantity, double unitCost);
+    }
+}
@@ -0,0 +1,12 @@
+package ePortfolio;
+
+/**
+ * The LotSelection enum lists the methods used to pick which purchase lots are
+ * consumed by a sale. Selling a specific lot is done by lot id instead.
+ */
+public enum LotSelection {
+    /** Sell the oldest lots first. */
+    FIFO,
+    /** Sell the newest lots first. */
+    LIFO
+}
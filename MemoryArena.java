@@ -0,0 +1,152 @@
+package ePortfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The MemoryArena class is a growable run of memory outside the Java heap,
+ * addressed by a long offset. It is made of equal blocks whose size is a
+ * power of two, each either allocated directly or mapped from a file at the
+ * block's offset, so a file-backed arena is the file itself. A block is only
+ * allocated or mapped when an offset in it is first used, and blocks never
+ * move, so a buffer returned by {@link #block(long)} stays valid. Values must
+ * not straddle two blocks. A MemoryArena is not thread-safe.
+ */
+class MemoryArena implements Closeable {
+    private final int blockShift;
+    private final long blockMask;
+    private final FileChannel channel;
+    private ByteBuffer[] blocks = new ByteBuffer[16];
+    private int blockCount;
+
+    private MemoryArena(int blockShift, FileChannel channel) {
+        if (blockShift < 12 || blockShift > 30) {
+            throw new IllegalArgumentException("Block size must be between 4 KB and 1 GB.");
+        }
+        this.blockShift = blockShift;
+        this.blockMask = (1L << blockShift) - 1;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates an arena of directly allocated memory.
+     *
+     * @param blockShift the base-two logarithm of the block size
+     * @return the arena
+     */
+    static MemoryArena allocate(int blockShift) {
+        return new MemoryArena(blockShift, null);
+    }
+
+    /**
+     * Creates an arena mapped from a file, which is created if it does not
+     * exist and grows a block at a time.
+     *
+     * @param file       the file
+     * @param blockShift the base-two logarithm of the block size
+     * @return the arena
+     * @throws IOException if the file cannot be opened
+     */
+    static MemoryArena map(Path file, int blockShift) throws IOException {
+        return new MemoryArena(blockShift, FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Returns the size of each block.
+     *
+     * @return the block size in bytes
+     */
+    int blockSize() {
+        return 1 << blockShift;
+    }
+
+    /**
+     * Returns the block holding an offset, allocating or mapping it and every
+     * block before it if needed.
+     *
+     * @param offset the offset
+     * @return the block
+     */
+    ByteBuffer block(long offset) {
+        int index = (int) (offset >>> blockShift);
+        if (index < blockCount) {
+            return blocks[index];
+        }
+        while (blockCount <= index) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+            }
+            blocks[blockCount] = newBlock(blockCount);
+            blockCount++;
+        }
+        return blocks[index];
+    }
+
+    /**
+     * Returns the index within its block of an offset.
+     *
+     * @param offset the offset
+     * @return the index in the block
+     */
+    int indexInBlock(long offset) {
+        return (int) (offset & blockMask);
+    }
+
+    int getInt(long offset) {
+        return block(offset).getInt(indexInBlock(offset));
+    }
+
+    void putInt(long offset, int value) {
+        block(offset).putInt(indexInBlock(offset), value);
+    }
+
+    long getLong(long offset) {
+        return block(offset).getLong(indexInBlock(offset));
+    }
+
+    void putLong(long offset, long value) {
+        block(offset).putLong(indexInBlock(offset), value);
+    }
+
+    /**
+     * Writes the changes to a file-backed arena to its file.
+     */
+    void force() {
+        for (int i = 0; i < blockCount && channel != null; i++) {
+            ((MappedByteBuffer) blocks[i]).force();
+        }
+    }
+
+    /**
+     * Writes the changes to a file-backed arena and closes its file. Direct
+     * memory is freed once the arena is no longer referenced.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        blocks = new ByteBuffer[0];
+        blockCount = 0;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer newBlock(int index) {
+        if (channel == null) {
+            return ByteBuffer.allocateDirect(blockSize());
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long) index << blockShift, blockSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * The MonteCarloProjection class projects the future value of a portfolio by
+ * simulating a price path for every holding with geometric Brownian motion.
+ * Each holding follows its own drift and volatility, independently of the
+ * others. Positions are copied into primitive arrays when the projection is
+ * created, and paths are simulated in parallel in fixed blocks. Each block
+ * draws from its own generator, split in order from the seed before any work
+ * starts, so a given seed gives the same result on any number of threads. No
+ * objects are allocated per path.
+ * <p>
+ * Path values are never stored. Each step's values are counted into a
+ * fixed-size histogram of log returns, and each simulating thread has its own
+ * histograms, so memory grows with steps and threads but not with paths.
+ */
+public class MonteCarloProjection {
+    private static final int PATHS_PER_BLOCK = 4096;
+    private static final int BLOCKS_PER_WAVE = 64;
+    private static final int BINS = 2048;
+    private static final double BAND_SIGMAS = 8;
+    private static final double DEFAULT_DRIFT = 0.05;
+    private static final double DEFAULT_VOLATILITY = 0.20;
+
+    private final String[] symbols;
+    private final double[] quantities;
+    private final double[] prices;
+    private final double[] drifts;
+    private final double[] volatilities;
+    private final double currentValue;
+
+    /**
+     * Constructs a MonteCarloProjection over the current positions of a
+     * portfolio, with a 5% annual drift and 20% annual volatility for every
+     * holding. Must be called on the thread that updates the portfolio.
+     *
+     * @param portfolio the portfolio to project
+     */
+    public MonteCarloProjection(Portfolio portfolio) {
+        List<Investment> investments = portfolio.getInvestments();
+        int count = investments.size();
+        symbols = new String[count];
+        quantities = new double[count];
+        prices = new double[count];
+        drifts = new double[count];
+        volatilities = new double[count];
+        double value = 0;
+        for (int i = 0; i < count; i++) {
+            Investment investment = investments.get(i);
+            symbols[i] = investment.getSymbol();
+            quantities[i] = investment.getQuantity();
+            prices[i] = investment.getPrice();
+            value += quantities[i] * prices[i];
+        }
+        Arrays.fill(drifts, DEFAULT_DRIFT);
+        Arrays.fill(volatilities, DEFAULT_VOLATILITY);
+        currentValue = value;
+    }
+
+    /**
+     * Sets the drift and volatility of every holding.
+     *
+     * @param drift      the expected annual return, such as 0.05
+     * @param volatility the annual volatility, such as 0.20
+     */
+    public void setParameters(double drift, double volatility) {
+        validateVolatility(volatility);
+        Arrays.fill(drifts, drift);
+        Arrays.fill(volatilities, volatility);
+    }
+
+    /**
+     * Sets the drift and volatility of one holding.
+     *
+     * @param symbol     the symbol of the holding
+     * @param drift      the expected annual return
+     * @param volatility the annual volatility
+     * @throws IllegalArgumentException if the portfolio does not hold the symbol
+     */
+    public void setParameters(String symbol, double drift, double volatility) {
+        validateVolatility(volatility);
+        for (int i = 0; i < symbols.length; i++) {
+            if (symbols[i].equals(symbol)) {
+                drifts[i] = drift;
+                volatilities[i] = volatility;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Investment not found: " + symbol);
+    }
+
+    /**
+     * Simulates price paths and reports the portfolio value at each step.
+     * Percentiles are read from a histogram of the log return at each step,
+     * spanning the holdings' drifts widened by eight of the largest standard
+     * deviations, and are interpolated within bins about a 128th of a
+     * standard deviation wide. Paths beyond that span count in the outermost
+     * bins.
+     *
+     * @param paths       the number of paths to simulate
+     * @param steps       the number of time steps per path
+     * @param years       the length of the projection in years
+     * @param seed        the seed of the random number generators
+     * @param percentiles the percentiles to report, from 0 to 100
+     * @return the mean and percentile bands at each step
+     */
+    public ProjectionBands project(int paths, int steps, double years, long seed, double... percentiles) {
+        if (paths <= 0 || steps <= 0 || !(years > 0)) {
+            throw new IllegalArgumentException("Paths, steps and years must be greater than zero.");
+        }
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 100.");
+            }
+        }
+
+        double dt = years / steps;
+        double[] times = new double[steps + 1];
+        double[] means = new double[steps + 1];
+        double[][] bands = new double[percentiles.length][steps + 1];
+        for (int step = 0; step <= steps; step++) {
+            times[step] = step * dt;
+        }
+        means[0] = currentValue;
+        for (double[] band : bands) {
+            band[0] = currentValue;
+        }
+        if (currentValue == 0) {
+            // Nothing is held, so every path stays at zero
+            return new ProjectionBands(percentiles.clone(), times, means, bands);
+        }
+
+        int count = symbols.length;
+        double[] stepDrifts = new double[count];
+        double[] stepShocks = new double[count];
+        double[] startLogPrices = new double[count];
+        double minDrift = Double.POSITIVE_INFINITY;
+        double maxDrift = Double.NEGATIVE_INFINITY;
+        double maxShock = 0;
+        for (int i = 0; i < count; i++) {
+            startLogPrices[i] = Math.log(prices[i]);
+            stepDrifts[i] = (drifts[i] - 0.5 * volatilities[i] * volatilities[i]) * dt;
+            stepShocks[i] = volatilities[i] * Math.sqrt(dt);
+            minDrift = Math.min(minDrift, stepDrifts[i]);
+            maxDrift = Math.max(maxDrift, stepDrifts[i]);
+            maxShock = Math.max(maxShock, stepShocks[i]);
+        }
+
+        // The portfolio's log return lies between those of its holdings
+        double[] binLows = new double[steps];
+        double[] binScales = new double[steps];
+        for (int step = 0; step < steps; step++) {
+            double spread = BAND_SIGMAS * maxShock * Math.sqrt(step + 1);
+            double low = minDrift * (step + 1) - spread;
+            double high = maxDrift * (step + 1) + spread;
+            binLows[step] = low;
+            binScales[step] = BINS / Math.max(high - low, 1e-9);
+        }
+
+        int blocks = (paths + PATHS_PER_BLOCK - 1) / PATHS_PER_BLOCK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] generators = new SplittableRandom[blocks];
+        for (int block = 0; block < blocks; block++) {
+            generators[block] = root.split();
+        }
+
+        // Block sums are added up in block order after each wave, so the means
+        // do not depend on which thread ran which block
+        double[] sums = new double[steps];
+        double[][] blockSums = new double[Math.min(blocks, BLOCKS_PER_WAVE)][steps];
+        ConcurrentLinkedQueue<int[]> idleHistograms = new ConcurrentLinkedQueue<>();
+        List<int[]> histograms = Collections.synchronizedList(new ArrayList<>());
+        for (int wave = 0; wave < blocks; wave += BLOCKS_PER_WAVE) {
+            int firstBlock = wave;
+            int endBlock = Math.min(blocks, wave + BLOCKS_PER_WAVE);
+            IntStream.range(firstBlock, endBlock).parallel().forEach(block -> {
+                int[] counts = idleHistograms.poll();
+                if (counts == null) {
+                    counts = new int[steps * BINS];
+                    histograms.add(counts);
+                }
+                SplittableRandom random = generators[block];
+                double[] blockSum = blockSums[block - firstBlock];
+                Arrays.fill(blockSum, 0);
+                double[] logPrices = new double[count];
+                int end = Math.min(paths, (block + 1) * PATHS_PER_BLOCK);
+                for (int path = block * PATHS_PER_BLOCK; path < end; path++) {
+                    System.arraycopy(startLogPrices, 0, logPrices, 0, count);
+                    for (int step = 0; step < steps; step++) {
+                        double value = 0;
+                        for (int i = 0; i < count; i++) {
+                            logPrices[i] += stepDrifts[i] + stepShocks[i] * random.nextGaussian();
+                            value += quantities[i] * Math.exp(logPrices[i]);
+                        }
+                        blockSum[step] += value;
+                        int bin = (int) ((Math.log(value / currentValue) - binLows[step]) * binScales[step]);
+                        counts[step * BINS + Math.max(0, Math.min(BINS - 1, bin))]++;
+                    }
+                }
+                idleHistograms.add(counts);
+            });
+            for (int block = firstBlock; block < endBlock; block++) {
+                for (int step = 0; step < steps; step++) {
+                    sums[step] += blockSums[block - firstBlock][step];
+                }
+            }
+        }
+
+        int[] counts = histograms.get(0);
+        for (int h = 1; h < histograms.size(); h++) {
+            int[] other = histograms.get(h);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other[i];
+            }
+        }
+        for (int step = 1; step <= steps; step++) {
+            means[step] = sums[step - 1] / paths;
+            for (int p = 0; p < percentiles.length; p++) {
+                int rank = Math.max(1, Math.min(paths, (int) Math.ceil(percentiles[p] / 100.0 * paths)));
+                double logReturn = binLows[step - 1]
+                        + binPosition(counts, (step - 1) * BINS, rank) / binScales[step - 1];
+                bands[p][step] = currentValue * Math.exp(logReturn);
+            }
+        }
+        return new ProjectionBands(percentiles.clone(), times, means, bands);
+    }
+
+    /**
+     * Finds the path of a given rank in one step's histogram, as a position in
+     * bins, assuming the paths in a bin are spread evenly across it.
+     *
+     * @param counts the histograms of every step
+     * @param offset the index of the step's first bin
+     * @param rank   the rank of the path, from 1
+     * @return the position in bins, from 0 to BINS
+     */
+    private static double binPosition(int[] counts, int offset, int rank) {
+        long seen = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            int n = counts[offset + bin];
+            if (seen + n >= rank) {
+                return bin + (rank - seen - 0.5) / n;
+            }
+            seen += n;
+        }
+        return BINS;
+    }
+
+    /**
+     * Returns the current market value of the projected positions.
+     *
+     * @return the current value
+     */
+    public double getCurrentValue() {
+        return currentValue;
+    }
+
+    private static void validateVolatility(double volatility) {
+        if (!(volatility >= 0)) {
+            throw new IllegalArgumentException("Volatility cannot be negative.");
+        }
+    }
+}
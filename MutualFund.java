@@ -1,11 +1,11 @@
 package ePortfolio;
 
 public class MutualFund extends Investment {
-    private static final double REDEMPTION_FEE = 45.00;
+    static final FeeModel DEFAULT_REDEMPTION_FEE = new FlatFeeModel(45.00);
 
     /**
      * Constructs a MutualFund object with the specified symbol, name, quantity, and
-     * price.
+     * price, charged the standard redemption fee on every sale.
      * 
      * @param symbol   the symbol of the mutual fund
      * @param name     the name of the mutual fund
@@ -13,52 +13,42 @@ public class MutualFund extends Investment {
      * @param price    the price per unit
      */
     public MutualFund(String symbol, String name, int quantity, double price) {
-        super(symbol, name, quantity, price);
+        this(symbol, name, quantity, price, FeeModel.NONE, DEFAULT_REDEMPTION_FEE);
     }
 
     /**
-     * Copy constructor for creating a duplicate MutualFund object.
+     * Constructs a MutualFund object with the specified symbol, name, quantity, price
+     * and fee models.
      * 
-     * @param other the MutualFund object to copy
+     * @param symbol       the symbol of the mutual fund
+     * @param name         the name of the mutual fund
+     * @param quantity     the quantity of units
+     * @param price        the price per unit
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
      */
-    public MutualFund(MutualFund other) {
-        super(other);
+    public MutualFund(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        super(symbol, name, quantity, price, buyFeeModel, sellFeeModel);
     }
 
     /**
-     * Buys additional units of the mutual fund.
-     * The book value is increased based on the quantity and price of the new
-     * purchase.
+     * Copy constructor for creating a duplicate MutualFund object.
      * 
-     * @param additionalQuantity the quantity to buy
-     * @param price              the price per unit
+     * @param other the MutualFund object to copy
      */
-    @Override
-    public void buy(int additionalQuantity, double price) {
-        this.quantity += validateQuantity(additionalQuantity);
-        this.bookValue += additionalQuantity * validatePrice(price);
+    public MutualFund(MutualFund other) {
+        super(other);
     }
 
     /**
-     * Sells a specified quantity of units of the mutual fund.
-     * A redemption fee is subtracted from the proceeds of the sale.
+     * Returns the instrument type of the mutual fund.
      * 
-     * @param quantityToSell the quantity to sell
-     * @param price          the price per unit
-     * @return the proceeds from the sale after deducting the redemption fee
-     * @throws IllegalArgumentException if the quantity to sell is greater than the
-     *                                  available quantity
+     * @return {@link InstrumentType#MUTUAL_FUND}
      */
     @Override
-    public double sell(int quantityToSell, double price) {
-        if (quantityToSell > this.quantity) {
-            throw new IllegalArgumentException("Insufficient quantity to sell.");
-        }
-        double proceeds = quantityToSell * validatePrice(price) - REDEMPTION_FEE;
-        double bookValuePerUnit = this.bookValue / this.quantity;
-        this.bookValue -= bookValuePerUnit * quantityToSell;
-        this.quantity -= quantityToSell;
-        return proceeds;
+    public InstrumentType getInstrumentType() {
+        return InstrumentType.MUTUAL_FUND;
     }
 
     /**
@@ -0,0 +1,96 @@
+package ePortfolio;
+
+/**
+ * The Option class represents a holding of option contracts. The quantity is
+ * the number of contracts and the price is the premium per contract. Trades
+ * are charged a base fee plus a fee per contract by default.
+ */
+public class Option extends Investment {
+    static final FeeModel DEFAULT_FEE = (quantity, price) -> 9.99 + 0.65 * quantity;
+
+    /**
+     * Constructs an Option object with the specified symbol, name, quantity, and
+     * price, charged the standard base fee plus a fee per contract on every buy
+     * and sell.
+     * 
+     * @param symbol   the symbol of the option
+     * @param name     the name of the option
+     * @param quantity the quantity of contracts
+     * @param price    the price per contract
+     */
+    public Option(String symbol, String name, int quantity, double price) {
+        this(symbol, name, quantity, price, DEFAULT_FEE, DEFAULT_FEE);
+    }
+
+    /**
+     * Constructs an Option object with the specified symbol, name, quantity, price
+     * and fee models.
+     * 
+     * @param symbol       the symbol of the option
+     * @param name         the name of the option
+     * @param quantity     the quantity of contracts
+     * @param price        the price per contract
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
+     */
+    public Option(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        super(symbol, name, quantity, price, buyFeeModel, sellFeeModel);
+    }
+
+    /**
+     * Copy constructor for creating a duplicate Option object.
+     * 
+     * @param other the Option object to copy
+     */
+    public Option(Option other) {
+        super(other);
+    }
+
+    /**
+     * Returns the instrument type of the option.
+     * 
+     * @return {@link InstrumentType#OPTION}
+     */
+    @Override
+    public InstrumentType getInstrumentType() {
+        return InstrumentType.OPTION;
+    }
+
+    /**
+     * Returns a string representation of the option, including its symbol, name,
+     * quantity, price, and book value.
+     * 
+     * @return a string representation of the option
+     */
+    @Override
+    public String toString() {
+        return String.format("Option [Symbol: %s, Name: %s, Quantity: %d, Price: %.2f, Book Value: %.2f]",
+                symbol, name, quantity, price, bookValue);
+    }
+
+    /**
+     * Compares two Option objects for equality.
+     * 
+     * @param obj the object to compare
+     * @return true if the objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Option))
+            return false;
+        return super.equals(obj);
+    }
+
+    /**
+     * Returns a hash code for the Option object.
+     * 
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -0,0 +1,333 @@
+package ePortfolio;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The OrderBook class holds resting limit and stop orders against a portfolio
+ * and executes them as price updates arrive. It listens to the portfolio's
+ * price updates; prices of symbols not held can be fed to
+ * {@link #priceUpdated(String, double)} directly.
+ * <p>
+ * An order triggers on the first price at or beyond its trigger price: a buy
+ * limit or sell stop at or below it, a sell limit or buy stop at or above it.
+ * It then executes in full through {@link Portfolio#buyInvestment} or
+ * {@link Portfolio#sellInvestment} at the price that triggered it. An order
+ * that the portfolio rejects, such as a sale of more than is held, is dropped
+ * with a message.
+ * <p>
+ * Each symbol has two heaps of order ids keyed by trigger price, one for the
+ * orders that trigger as the price falls and one for those that trigger as it
+ * rises. A price update only looks at the top of each heap, so an update that
+ * triggers nothing costs the same with any number of resting orders, and each
+ * triggered order costs O(log n) to remove. Orders with the same trigger
+ * price execute in the order they were placed. The orders themselves are
+ * kept in parallel arrays indexed by a slot that is part of the order id, and
+ * cancelled orders are dropped from the heaps lazily. An OrderBook, like its
+ * portfolio, must only be used by one thread.
+ */
+public class OrderBook implements PriceListener {
+    private static final byte BUY_LIMIT = 0;
+    private static final byte BUY_STOP = 1;
+    private static final byte SELL_LIMIT = 2;
+    private static final byte SELL_STOP = 3;
+
+    private final Portfolio portfolio;
+    private final Map<String, SymbolOrders> bySymbol = new HashMap<>();
+    private long nextSequence = 1;
+
+    // The resting orders, by slot; an id of 0 marks a free slot
+    private long[] ids = new long[64];
+    private byte[] kinds = new byte[64];
+    private int[] quantities = new int[64];
+    private double[] triggerPrices = new double[64];
+    private String[] symbols = new String[64];
+    private String[] types = new String[64];
+    private String[] names = new String[64];
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private int slotCount;
+    private int restingCount;
+    private long executedCount;
+    private long rejectedCount;
+
+    /**
+     * Constructs an OrderBook that trades on a portfolio and listens to its
+     * price updates.
+     *
+     * @param portfolio the portfolio
+     */
+    public OrderBook(Portfolio portfolio) {
+        this.portfolio = portfolio;
+        portfolio.addPriceListener(this);
+    }
+
+    /**
+     * Places an order to buy once the price falls to a limit or below.
+     *
+     * @param type       the type of the investment, such as stock
+     * @param symbol     the symbol of the investment
+     * @param name       the name of the investment
+     * @param quantity   the quantity to buy
+     * @param limitPrice the highest price to buy at
+     * @return the order id
+     */
+    public long placeBuyLimit(String type, String symbol, String name, int quantity, double limitPrice) {
+        return place(BUY_LIMIT, requireType(type), symbol, requireName(name), quantity, limitPrice);
+    }
+
+    /**
+     * Places an order to buy once the price rises to a stop price or above.
+     *
+     * @param type      the type of the investment, such as stock
+     * @param symbol    the symbol of the investment
+     * @param name      the name of the investment
+     * @param quantity  the quantity to buy
+     * @param stopPrice the price that triggers the purchase
+     * @return the order id
+     */
+    public long placeBuyStop(String type, String symbol, String name, int quantity, double stopPrice) {
+        return place(BUY_STOP, requireType(type), symbol, requireName(name), quantity, stopPrice);
+    }
+
+    /**
+     * Places an order to sell once the price rises to a limit or above.
+     *
+     * @param symbol     the symbol of the investment
+     * @param quantity   the quantity to sell
+     * @param limitPrice the lowest price to sell at
+     * @return the order id
+     */
+    public long placeSellLimit(String symbol, int quantity, double limitPrice) {
+        return place(SELL_LIMIT, null, symbol, null, quantity, limitPrice);
+    }
+
+    /**
+     * Places an order to sell once the price falls to a stop price or below.
+     *
+     * @param symbol    the symbol of the investment
+     * @param quantity  the quantity to sell
+     * @param stopPrice the price that triggers the sale
+     * @return the order id
+     */
+    public long placeSellStop(String symbol, int quantity, double stopPrice) {
+        return place(SELL_STOP, null, symbol, null, quantity, stopPrice);
+    }
+
+    /**
+     * Cancels a resting order.
+     *
+     * @param orderId the order id
+     * @return true if the order was resting, false if it had already executed
+     *         or been cancelled
+     */
+    public boolean cancel(long orderId) {
+        int slot = (int) orderId;
+        if (orderId <= 0 || slot < 0 || slot >= slotCount || ids[slot] != orderId) {
+            return false;
+        }
+        String symbol = symbols[slot];
+        boolean atOrBelow = kinds[slot] == BUY_LIMIT || kinds[slot] == SELL_STOP;
+        release(slot);
+        SymbolOrders orders = bySymbol.get(symbol);
+        orders.removed(atOrBelow);
+        if (orders.isEmpty()) {
+            bySymbol.remove(symbol);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of resting orders.
+     *
+     * @return the number of orders
+     */
+    public int getRestingCount() {
+        return restingCount;
+    }
+
+    /**
+     * Returns the number of orders executed so far.
+     *
+     * @return the number of orders
+     */
+    public long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * Returns the number of triggered orders the portfolio rejected.
+     *
+     * @return the number of orders
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Executes every resting order of a symbol that a price triggers.
+     *
+     * @param symbol the symbol
+     * @param price  the new price
+     */
+    @Override
+    public void priceUpdated(String symbol, double price) {
+        SymbolOrders orders = bySymbol.get(symbol);
+        if (orders == null) {
+            return;
+        }
+        PriceHeap rising = orders.triggerAtOrAbove;
+        while (!rising.isEmpty() && rising.peekKey() <= price) {
+            long id = rising.peekId();
+            rising.poll();
+            execute(id, price, orders, false);
+        }
+        PriceHeap falling = orders.triggerAtOrBelow;
+        while (!falling.isEmpty() && -falling.peekKey() >= price) {
+            long id = falling.peekId();
+            falling.poll();
+            execute(id, price, orders, true);
+        }
+        if (orders.isEmpty()) {
+            bySymbol.remove(symbol);
+        }
+    }
+
+    private long place(byte kind, String type, String symbol, String name, int quantity, double triggerPrice) {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Symbol cannot be empty.");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+        if (!(triggerPrice > 0) || Double.isInfinite(triggerPrice)) {
+            throw new IllegalArgumentException("Price must be positive.");
+        }
+        symbol = symbol.trim().toUpperCase();
+        int slot = allocate();
+        long id = nextSequence++ << 32 | slot;
+        ids[slot] = id;
+        kinds[slot] = kind;
+        quantities[slot] = quantity;
+        triggerPrices[slot] = triggerPrice;
+        symbols[slot] = symbol;
+        types[slot] = type;
+        names[slot] = name;
+        restingCount++;
+
+        SymbolOrders orders = bySymbol.computeIfAbsent(symbol, s -> new SymbolOrders());
+        if (kind == BUY_LIMIT || kind == SELL_STOP) {
+            orders.triggerAtOrBelow.add(-triggerPrice, id);
+            orders.liveAtOrBelow++;
+        } else {
+            orders.triggerAtOrAbove.add(triggerPrice, id);
+            orders.liveAtOrAbove++;
+        }
+        return id;
+    }
+
+    /**
+     * Executes an order just taken off a heap, unless it was cancelled.
+     */
+    private void execute(long id, double price, SymbolOrders orders, boolean atOrBelow) {
+        int slot = (int) id;
+        if (ids[slot] != id) {
+            // Cancelled; its count was already taken off
+            return;
+        }
+        orders.executed(atOrBelow);
+        byte kind = kinds[slot];
+        String symbol = symbols[slot];
+        String type = types[slot];
+        String name = names[slot];
+        int quantity = quantities[slot];
+        release(slot);
+        try {
+            if (kind == BUY_LIMIT || kind == BUY_STOP) {
+                portfolio.buyInvestment(type, symbol, name, quantity, price);
+            } else {
+                portfolio.sellInvestment(symbol, quantity, price);
+            }
+            executedCount++;
+        } catch (IllegalArgumentException e) {
+            rejectedCount++;
+            System.out.println("Order " + id + " rejected: " + e.getMessage());
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = slotCount * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            triggerPrices = Arrays.copyOf(triggerPrices, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+            types = Arrays.copyOf(types, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void release(int slot) {
+        ids[slot] = 0;
+        symbols[slot] = types[slot] = names[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        restingCount--;
+    }
+
+    private static String requireType(String type) {
+        InstrumentType instrumentType = InstrumentType.forName(type);
+        if (instrumentType == null) {
+            throw new IllegalArgumentException("Unknown investment type: " + type + ".");
+        }
+        return instrumentType.getName();
+    }
+
+    private static String requireName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be empty.");
+        }
+        return name;
+    }
+
+    /**
+     * The SymbolOrders class holds the two heaps of one symbol and the number
+     * of live orders in each. A heap whose cancelled entries outnumber its
+     * live ones is compacted, so cancelled orders cost O(1) amortized.
+     */
+    private class SymbolOrders {
+        private final PriceHeap triggerAtOrBelow = new PriceHeap();
+        private final PriceHeap triggerAtOrAbove = new PriceHeap();
+        private int liveAtOrBelow;
+        private int liveAtOrAbove;
+
+        void executed(boolean atOrBelow) {
+            if (atOrBelow) {
+                liveAtOrBelow--;
+            } else {
+                liveAtOrAbove--;
+            }
+        }
+
+        void removed(boolean atOrBelow) {
+            executed(atOrBelow);
+            PriceHeap heap = atOrBelow ? triggerAtOrBelow : triggerAtOrAbove;
+            int live = atOrBelow ? liveAtOrBelow : liveAtOrAbove;
+            if (heap.size() > 2 * live + 16) {
+                heap.retain(id -> ids[(int) id] == id);
+            }
+        }
+
+        boolean isEmpty() {
+            return liveAtOrBelow == 0 && liveAtOrAbove == 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ePortfolio;
+
+/**
+ * The OrderBookBenchmark class measures the cost of a price update with a
+ * large number of resting orders. Orders are spread over the symbols of a
+ * portfolio well away from the current prices, so most updates trigger
+ * nothing; the run then moves every price through its orders and times
+ * executing them.
+ */
+public class OrderBookBenchmark {
+    private static final int SYMBOLS = 100;
+    private static final int DEFAULT_ORDERS = 100_000;
+    private static final int TICKS = 1_000_000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of resting orders
+     */
+    public static void main(String[] args) {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ORDERS;
+        Portfolio portfolio = new Portfolio();
+        String[] symbols = new String[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbols[i] = "SYM" + i;
+            portfolio.buyInvestment("stock", symbols[i], "Company " + i, 1_000_000, 100);
+        }
+
+        OrderBook book = new OrderBook(portfolio);
+        for (int i = 0; i < orderCount; i++) {
+            String symbol = symbols[i % SYMBOLS];
+            double offset = 20 + i % 50;
+            switch (i % 4) {
+                case 0:
+                    book.placeBuyLimit("stock", symbol, "Company", 1, 100 - offset);
+                    break;
+                case 1:
+                    book.placeSellLimit(symbol, 1, 100 + offset);
+                    break;
+                case 2:
+                    book.placeBuyStop("stock", symbol, "Company", 1, 100 + offset);
+                    break;
+                default:
+                    book.placeSellStop(symbol, 1, 100 - offset);
+                    break;
+            }
+        }
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < TICKS; i++) {
+                portfolio.updatePrice(symbols[i % SYMBOLS], 90 + i % 20);
+            }
+            double perTick = (System.nanoTime() - start) / (double) TICKS;
+            System.out.printf("resting=%d ticks=%d %.0f ns/tick, nothing triggered%n", book.getRestingCount(), TICKS,
+                    perTick);
+        }
+
+        long start = System.nanoTime();
+        for (String symbol : symbols) {
+            portfolio.updatePrice(symbol, 200);
+            portfolio.updatePrice(symbol, 10);
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("executed=%d rejected=%d in %.1f ms, resting=%d%n", book.getExecutedCount(),
+                book.getRejectedCount(), millis, book.getRestingCount());
+    }
+}
@@ -0,0 +1,47 @@
+package ePortfolio;
+
+/**
+ * The PercentageFeeModel class charges a percentage of the traded amount,
+ * optionally bounded by a minimum and a maximum fee.
+ */
+public final class PercentageFeeModel implements FeeModel {
+    private final double rate;
+    private final double minimum;
+    private final double maximum;
+
+    /**
+     * Constructs an unbounded PercentageFeeModel.
+     *
+     * @param percent the fee as a percentage of the traded amount
+     */
+    public PercentageFeeModel(double percent) {
+        this(percent, 0, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Constructs a PercentageFeeModel bounded by a minimum and maximum fee.
+     *
+     * @param percent the fee as a percentage of the traded amount
+     * @param minimum the smallest fee charged
+     * @param maximum the largest fee charged
+     */
+    public PercentageFeeModel(double percent, double minimum, double maximum) {
+        if (!(percent >= 0) || !(minimum >= 0) || !(maximum >= minimum)) {
+            throw new IllegalArgumentException("Invalid percentage fee: rate and bounds must be non-negative "
+                    + "and the maximum cannot be below the minimum.");
+        }
+        this.rate = percent / 100.0;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+    @Override
+    public double calculateFee(int quantity, double price) {
+        return Math.min(maximum, Math.max(minimum, quantity * price * rate));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.4f%% (min %.2f, max %.2f)", rate * 100, minimum, maximum);
+    }
+}
@@ -1,7 +1,14 @@
 package ePortfolio;
 
 import java.io.*;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * The Portfolio class manages a collection of investments, including stocks and
@@ -9,19 +16,83 @@ import java.util.*;
  * It supports adding, removing, updating, searching, and calculating gains for
  * investments.
  * It also maintains a HashMap-based index for optimizing keyword searches.
+ * The indexes are saved to an index file next to the data file and mapped
+ * from it when the file is loaded again.
+ * <p>
+ * A portfolio constructed over a {@link PositionStore} keeps its positions in
+ * the store instead, outside the Java heap, so the garbage collector has
+ * nothing to trace that grows with the book. A position is turned into an
+ * Investment only while an operation works on it, and is written back once
+ * changed. Such a portfolio holds each position as one lot at its average
+ * cost, finds symbols through the store, and searches names by scanning the
+ * store rather than through a keyword index. Selling out a position moves the
+ * last position into its place.
  */
-public class Portfolio {
+public class Portfolio implements AutoCloseable {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9]+");
+    private static final int PARALLEL_INDEX_THRESHOLD = 65536;
+    // Holds the positions in place of the list when the book is off the heap
+    private final PositionStore store;
     private List<Investment> investments = new ArrayList<>();
     private Map<String, List<Integer>> keywordIndex = new HashMap<>();
+    private Map<String, Integer> symbolIndex = new HashMap<>();
+    // Used in place of the two maps from a load until positions are added or removed
+    private PortfolioIndexFile storedIndex;
+    private final RealizedGainLedger realizedGains = new RealizedGainLedger();
+    private PriceHistoryStore priceHistory = new PriceHistoryStore();
+    private final TradeLog tradeLog = new TradeLog(false);
+    private boolean tradeLogEnabled;
+    private long lastEventTimestamp = Long.MIN_VALUE;
+    private FeeSchedule feeSchedule = FeeSchedule.standard();
+    private String venue = FeeSchedule.DEFAULT_VENUE;
+    private int venueId = feeSchedule.venueId(venue);
+    private final InstrumentAggregates aggregates = new InstrumentAggregates();
+    private final PortfolioChangePublisher changePublisher = new PortfolioChangePublisher();
+    private final List<PriceListener> priceListeners = new ArrayList<>();
+    private final PortfolioMetrics metrics = new PortfolioMetrics(() -> investments.size(),
+            () -> storedIndex != null ? storedIndex.getKeywordCount() : keywordIndex.size(),
+            () -> storedIndex != null ? storedIndex.getRecordCount() : symbolIndex.size());
 
     /**
      * Default constructor for Portfolio.
      */
     public Portfolio() {
+        store = null;
     }
 
     /**
-     * Loads investments from a specified file into the portfolio.
+     * Constructs a portfolio whose positions are held in an off-heap position
+     * store, starting with the positions already in it. The store stays open
+     * when the portfolio is closed.
+     * 
+     * @param store the store holding the positions
+     * @throws IllegalArgumentException if a stored position has an unknown
+     *                                  instrument type
+     */
+    public Portfolio(PositionStore store) {
+        this.store = store;
+        this.investments = new StoredPositions();
+        PositionView view = store.view();
+        for (int position = 0; position < store.size(); position++) {
+            if (view.moveTo(position).getType() == null) {
+                throw new IllegalArgumentException("Unknown investment type for " + view.getSymbol() + ".");
+            }
+            aggregates.add(investments.get(position));
+        }
+    }
+
+    /**
+     * Loads investments from a specified file into the portfolio. Files whose
+     * name ends in .gz are read through gzip; other files are parsed in
+     * parallel chunks. The file is read in full and then merged as by
+     * {@link #mergeInvestments(Collection)}, so positions already held, and
+     * repeated symbols in the file, are added to as purchases.
+     * <p>
+     * When an empty portfolio loads a file that has a valid index file, saved
+     * with it and matching its checksum, the indexes are mapped from that file
+     * instead of being rebuilt. They stay mapped until a position is added or
+     * removed, which rebuilds them in memory.
      * 
      * @param filename the name of the file to load investments from
      */
@@ -32,79 +103,356 @@ public class Portfolio {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            String type = null, symbol = null, name = null;
-            int quantity = 0;
-            double price = 0.0, bookValue = 0.0;
-
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.startsWith("type")) {
-                    type = line.split("=")[1].trim().replace("\"", "");
-                } else if (line.startsWith("symbol")) {
-                    symbol = line.split("=")[1].trim().replace("\"", "");
-                } else if (line.startsWith("name")) {
-                    name = line.split("=")[1].trim().replace("\"", "");
-                } else if (line.startsWith("quantity")) {
-                    quantity = Integer.parseInt(line.split("=")[1].trim().replace("\"", ""));
-                } else if (line.startsWith("price")) {
-                    price = Double.parseDouble(line.split("=")[1].trim().replace("\"", ""));
-                } else if (line.startsWith("bookValue")) {
-                    bookValue = Double.parseDouble(line.split("=")[1].trim().replace("\"", ""));
-
-                    if (type != null && symbol != null && name != null) {
-                        Investment newInvestment = type.equalsIgnoreCase("stock")
-                                ? new Stock(symbol, name, quantity, price)
-                                : new MutualFund(symbol, name, quantity, price);
-                        investments.add(newInvestment);
-                        indexKeywords(newInvestment.getName(), investments.size() - 1);
-                    }
-
-                    // Reset fields
-                    type = symbol = name = null;
-                    quantity = 0;
-                    price = bookValue = 0.0;
-                }
+        long start = System.nanoTime();
+        PortfolioEvents.PersistenceEvent event = new PortfolioEvents.PersistenceEvent();
+        event.begin();
+        boolean succeeded = false;
+        int loaded = 0;
+        try {
+            PortfolioIndexFile index = store == null && investments.isEmpty() ? PortfolioIndexFile.open(file) : null;
+            List<Investment> records = new PortfolioFileParser(feeSchedule, venue).parse(file);
+            merge(records, false);
+            if (index != null && index.getRecordCount() == records.size() && investments.size() == records.size()) {
+                symbolIndex = new HashMap<>();
+                keywordIndex = new HashMap<>();
+                storedIndex = index;
+            } else {
+                rebuildIndexes();
             }
+            loaded = records.size();
+            succeeded = true;
         } catch (IOException | NumberFormatException e) {
+            metrics.recordError(PortfolioMetrics.Operation.LOAD);
             System.out.println("Error reading from file: " + e.getMessage());
         }
+        long elapsed = System.nanoTime() - start;
+        metrics.record(PortfolioMetrics.Operation.LOAD, elapsed);
+        metrics.recordLoad(loaded, file.length(), elapsed);
+        PortfolioEvents.commitPersistence(event, "LOAD", filename, loaded, file.length(), succeeded);
     }
 
     /**
-     * Saves the current state of the investments to a specified file.
+     * Saves the current state of the investments to a specified file, in the
+     * text format, compressed with gzip if the file name ends in .gz. The
+     * indexes are saved to an index file named after it with .idx appended.
      * 
      * @param filename the name of the file to save investments to
      */
     public void saveToFile(String filename) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (Investment investment : investments) {
-                writer.write("type = \"" + (investment instanceof Stock ? "stock" : "mutualfund") + "\"\n");
-                writer.write("symbol = \"" + investment.getSymbol() + "\"\n");
-                writer.write("name = \"" + investment.getName() + "\"\n");
-                writer.write("quantity = \"" + investment.getQuantity() + "\"\n");
-                writer.write("price = \"" + investment.getPrice() + "\"\n");
-                writer.write("bookValue = \"" + investment.getBookValue() + "\"\n\n");
-            }
+        long start = System.nanoTime();
+        PortfolioEvents.PersistenceEvent event = new PortfolioEvents.PersistenceEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            PortfolioExporter.TEXT.exportToFile(investments, filename);
+            succeeded = true;
         } catch (IOException e) {
+            metrics.recordError(PortfolioMetrics.Operation.SAVE);
             System.out.println("Error writing to file: " + e.getMessage());
         }
+        if (succeeded) {
+            saveIndexFile(new File(filename));
+        }
+        long elapsed = System.nanoTime() - start;
+        metrics.record(PortfolioMetrics.Operation.SAVE, elapsed);
+        long bytes = new File(filename).length();
+        metrics.recordSave(investments.size(), bytes, elapsed);
+        PortfolioEvents.commitPersistence(event, "SAVE", filename, investments.size(), bytes, succeeded);
+    }
+
+    /**
+     * Writes every position to an off-heap position store, replacing the
+     * stored positions of the same symbols. Like a saved file, the store keeps
+     * each position's quantity, price and book value but not its lots.
+     * 
+     * @param store the store to write to
+     */
+    public void saveToStore(PositionStore store) {
+        long start = System.nanoTime();
+        try {
+            for (Investment investment : investments) {
+                store.put(investment.getInstrumentType(), investment.getSymbol(), investment.getName(),
+                        investment.getQuantity(), investment.getPrice(), investment.getBookValue());
+            }
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.SAVE);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.SAVE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Loads the positions of an off-heap position store into the portfolio,
+     * merging them as {@link #loadFromFile(String)} merges the records of a
+     * file. Positions of an unknown instrument type are skipped with a
+     * message.
+     * 
+     * @param store the store to read from
+     */
+    public void loadFromStore(PositionStore store) {
+        long start = System.nanoTime();
+        try {
+            List<Investment> records = new ArrayList<>(store.size());
+            PositionView view = store.view();
+            for (int position = 0; position < store.size(); position++) {
+                view.moveTo(position);
+                InstrumentType type = view.getType();
+                if (type == null) {
+                    System.out.println("Skipping " + view.getSymbol() + ": unknown investment type.");
+                    continue;
+                }
+                Investment record = createInvestment(type, view.getSymbol(), view.getName(), view.getQuantity(),
+                        view.getPrice());
+                record.restoreBookValue(view.getBookValue());
+                records.add(record);
+            }
+            merge(records, false);
+            rebuildIndexes();
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.LOAD);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.LOAD, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Merges a batch of holdings into the portfolio in one pass. A holding of
+     * a symbol already held is bought into that position at the holding's
+     * quantity and price, with the position's buy fee, just as
+     * {@link #buyInvestment} would. A holding of a new symbol becomes a new
+     * position with the holding's book value. Every holding is checked before
+     * any is merged, so an invalid batch leaves the portfolio unchanged.
+     * 
+     * @param holdings the holdings to merge; they are copied, not kept
+     * @throws IllegalArgumentException if any holding is invalid
+     */
+    public void mergeInvestments(Collection<? extends Investment> holdings) {
+        long start = System.nanoTime();
+        try {
+            List<Investment> records = new ArrayList<>(holdings.size());
+            for (Investment holding : holdings) {
+                String symbol = validateSymbol(holding.getSymbol());
+                Investment record = createInvestment(holding.getInstrumentType(), symbol,
+                        validateName(holding.getName()), validateQuantity(holding.getQuantity()),
+                        validatePrice(holding.getPrice()));
+                if (holding.getBookValue() > 0) {
+                    record.restoreBookValue(holding.getBookValue());
+                }
+                records.add(record);
+            }
+            merge(records, true);
+            rebuildIndexes();
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.MERGE);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.MERGE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the investments held in the portfolio.
+     *
+     * @return an unmodifiable list of the investments
+     */
+    public List<Investment> getInvestments() {
+        return Collections.unmodifiableList(investments);
+    }
+
+    /**
+     * Returns the publisher of position changes. Subscribers receive coalesced
+     * batches of changes at a bounded rate.
+     * 
+     * @return the change publisher
+     */
+    public Flow.Publisher<List<PortfolioChange>> getChangePublisher() {
+        return changePublisher;
+    }
+
+    /**
+     * Returns the sequence number of the last change published. Every change
+     * delivered by the change publisher carries its own sequence number.
+     * 
+     * @return the last sequence number, or 0 if nothing was published
+     */
+    public long getChangeSequence() {
+        return changePublisher.getSequence();
+    }
+
+    /**
+     * Stops publishing position changes, completing every subscriber and
+     * ending the publisher's flusher thread. The portfolio can still be used
+     * afterwards, but its changes are no longer published.
+     */
+    @Override
+    public void close() {
+        changePublisher.close();
+    }
+
+    /**
+     * Adds a listener that is called synchronously after every price update.
+     * 
+     * @param listener the listener
+     */
+    public void addPriceListener(PriceListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+        priceListeners.add(listener);
+    }
+
+    /**
+     * Removes a price listener.
+     * 
+     * @param listener the listener
+     */
+    public void removePriceListener(PriceListener listener) {
+        priceListeners.remove(listener);
     }
 
     /**
-     * Calculates the total gain of all investments in the portfolio.
+     * Returns the operation metrics of the portfolio.
+     * 
+     * @return the portfolio metrics
+     */
+    public PortfolioMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Finds an investment in the portfolio by its symbol.
+     * 
+     * @param symbol the symbol of the investment
+     * @return a copy of the investment, or null if not found
+     */
+    public Investment findInvestment(String symbol) {
+        int index = symbol == null ? -1 : findInvestmentIndex(symbol);
+        return index < 0 ? null : createCopy(investments.get(index));
+    }
+
+    /**
+     * Finds the portfolio's own investment of a symbol, for classes in this
+     * package that read positions as they change. It must not be modified or
+     * kept.
+     * 
+     * @param symbol the symbol of the investment
+     * @return the investment, or null if not found
+     */
+    Investment findPosition(String symbol) {
+        int index = symbol == null ? -1 : findInvestmentIndex(symbol);
+        return index < 0 ? null : investments.get(index);
+    }
+
+    /**
+     * Calculates the total unrealized gain of all investments in the portfolio.
      * 
      * @return the total gain
      */
     public double getTotalGain() {
+        PortfolioEvents.GainEvent event = new PortfolioEvents.GainEvent();
+        event.begin();
         double totalGain = 0;
         for (Investment investment : investments) {
             totalGain += investment.calculateGain();
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.investments = investments.size();
+            event.totalGain = totalGain;
+            event.commit();
+        }
         return totalGain;
     }
 
+    /**
+     * Sets the fee schedule and the venue trades are placed at. The fees of
+     * every open position are replaced, and new positions take their fees from
+     * the schedule.
+     * 
+     * @param feeSchedule the fee schedule
+     * @param venue       the venue trades are placed at
+     */
+    public void setFeeSchedule(FeeSchedule feeSchedule, String venue) {
+        if (feeSchedule == null || venue == null) {
+            throw new IllegalArgumentException("Fee schedule and venue cannot be null.");
+        }
+        this.feeSchedule = feeSchedule;
+        this.venue = venue;
+        this.venueId = feeSchedule.venueId(venue);
+        // Stored positions take their fees from the schedule when they are read
+        for (int i = 0; i < investments.size() && store == null; i++) {
+            Investment investment = investments.get(i);
+            InstrumentType type = investment.getInstrumentType();
+            investment.setFeeModels(feeSchedule.getBuyFeeModel(type, venueId),
+                    feeSchedule.getSellFeeModel(type, venueId));
+        }
+    }
+
+    public FeeSchedule getFeeSchedule() {
+        return feeSchedule;
+    }
+
+    public String getVenue() {
+        return venue;
+    }
+
+    /**
+     * Calculates the fee each position would incur if it were sold in full at
+     * its current price under a fee schedule, which need not be the one in use.
+     * Positions are evaluated in parallel.
+     * 
+     * @param schedule the fee schedule to evaluate
+     * @param venue    the venue the sales would be placed at
+     * @return the sell fee of each investment, in the order of
+     *         {@link #getInvestments()}
+     */
+    public double[] calculateSellFees(FeeSchedule schedule, String venue) {
+        FeeModel[] modelsByTag = new FeeModel[InstrumentType.TAG_COUNT];
+        for (InstrumentType type : InstrumentType.values()) {
+            modelsByTag[type.getTag()] = schedule.getSellFeeModel(type.getName(), venue);
+        }
+        double[] fees = new double[investments.size()];
+        Arrays.parallelSetAll(fees, i -> {
+            Investment investment = investments.get(i);
+            FeeModel model = modelsByTag[investment.getInstrumentType().getTag()];
+            return investment.getQuantity() == 0 ? 0 : model.calculateFee(investment.getQuantity(),
+                    investment.getPrice());
+        });
+        return fees;
+    }
+
+    /**
+     * Calculates the total fees that selling every position in full at its
+     * current price would incur under the fees each position holds.
+     * Positions are evaluated in parallel.
+     * 
+     * @return the total sell fees
+     */
+    public double calculateLiquidationFees() {
+        return investments.parallelStream().mapToDouble(Investment::estimateSellFee).sum();
+    }
+
+    /**
+     * Returns the running totals of positions, market value and book value
+     * held in each instrument type.
+     * 
+     * @return the per-type totals
+     */
+    public InstrumentAggregates getInstrumentAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Returns the ledger of realized gains recorded by every sale.
+     * 
+     * @return the realized gain ledger
+     */
+    public RealizedGainLedger getRealizedGainLedger() {
+        return realizedGains;
+    }
+
     /**
      * Searches for investments that match specified criteria.
      * 
@@ -114,67 +462,162 @@ public class Portfolio {
      * @return a list of matching investments as strings
      */
     public List<String> searchInvestments(String symbol, String nameKeyword, String priceRange) {
-        List<Integer> matchedPositions = null;
-        if (nameKeyword != null && !nameKeyword.trim().isEmpty()) {
-            String[] keywords = splitWords(nameKeyword);
-            for (String keyword : keywords) {
-                List<Integer> positions = keywordIndex.getOrDefault(keyword.toLowerCase(), new ArrayList<>());
-                if (matchedPositions == null) {
-                    matchedPositions = new ArrayList<>(positions);
-                } else {
-                    matchedPositions.retainAll(positions); // Intersection for multiple keywords
-                }
-                if (matchedPositions.isEmpty()) {
-                    break;
+        List<String> results = new ArrayList<>();
+        forEachMatch(symbol, nameKeyword, priceRange, investment -> results.add(investment.toString()));
+        return results;
+    }
+
+    /**
+     * Passes each investment that matches the search criteria to an action, in
+     * portfolio order, without building a list of results. The investments are
+     * the portfolio's own and must not be modified or kept.
+     * 
+     * @param symbol      the symbol to match (or empty for any symbol)
+     * @param nameKeyword the keyword to match in the name (or empty for any)
+     * @param priceRange  the price range to match (or empty for any range)
+     * @param action      the action to run for each match
+     * @return the number of matches
+     */
+    public int forEachMatch(String symbol, String nameKeyword, String priceRange, Consumer<Investment> action) {
+        long start = System.nanoTime();
+        PortfolioEvents.SearchEvent event = new PortfolioEvents.SearchEvent();
+        event.begin();
+        try {
+            List<Integer> matchedPositions = null;
+            if (nameKeyword != null && !nameKeyword.trim().isEmpty()) {
+                String[] keywords = splitWords(nameKeyword);
+                for (String keyword : keywords) {
+                    List<Integer> positions = store != null ? scanKeyword(keyword.toLowerCase())
+                            : storedIndex != null ? storedIndex.findKeyword(keyword.toLowerCase())
+                            : keywordIndex.getOrDefault(keyword.toLowerCase(), new ArrayList<>());
+                    if (matchedPositions == null) {
+                        matchedPositions = new ArrayList<>(positions);
+                    } else {
+                        matchedPositions.retainAll(positions); // Intersection for multiple keywords
+                    }
+                    if (matchedPositions.isEmpty()) {
+                        break;
+                    }
                 }
             }
-        }
 
-        List<String> results = new ArrayList<>();
-        List<Integer> searchPositions = (matchedPositions == null || matchedPositions.isEmpty())
-                ? getAllPositions()
-                : matchedPositions;
+            String searchSymbol = symbol == null ? "" : symbol.trim();
+            double[] bounds = parsePriceRange(priceRange);
+            boolean allPositions = matchedPositions == null || matchedPositions.isEmpty();
+            int candidates = allPositions ? investments.size() : matchedPositions.size();
+            int matches = 0;
+            for (int i = 0; i < candidates && bounds != null; i++) {
+                Investment investment = investments.get(allPositions ? i : matchedPositions.get(i));
+                if (matchesSymbol(investment.getSymbol(), searchSymbol) &&
+                        investment.getPrice() >= bounds[0] && investment.getPrice() <= bounds[1]) {
+                    action.accept(investment);
+                    matches++;
+                }
+            }
 
-        for (int index : searchPositions) {
-            Investment investment = investments.get(index);
-            if (matchesSymbol(investment.getSymbol(), symbol) &&
-                    matchesPriceRange(investment.getPrice(), priceRange)) {
-                results.add(investment.toString());
+            event.end();
+            if (event.shouldCommit()) {
+                event.symbol = symbol;
+                event.keywords = nameKeyword;
+                event.priceRange = priceRange;
+                event.candidates = candidates;
+                event.results = matches;
+                event.commit();
             }
+            return matches;
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.SEARCH);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.SEARCH, System.nanoTime() - start);
         }
+    }
 
-        return results;
+    /**
+     * Writes the investments that match the search criteria to a stream as
+     * they are found, without building a list of results.
+     * 
+     * @param symbol      the symbol to match (or empty for any symbol)
+     * @param nameKeyword the keyword to match in the name (or empty for any)
+     * @param priceRange  the price range to match (or empty for any range)
+     * @param exporter    the format to write
+     * @param out         the stream to write to, which is left open
+     * @return the number of matches
+     * @throws IOException if the stream cannot be written
+     */
+    public int exportMatches(String symbol, String nameKeyword, String priceRange, PortfolioExporter exporter,
+            OutputStream out) throws IOException {
+        PortfolioExporter.Session session = exporter.open(out);
+        int matches;
+        try {
+            matches = forEachMatch(symbol, nameKeyword, priceRange, investment -> {
+                try {
+                    session.write(investment);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        session.finish();
+        return matches;
     }
 
     /**
      * Adds or updates an investment in the portfolio.
      * 
-     * @param type     the type of investment (stock or mutual fund)
+     * @param type     the name of a registered instrument type, such as stock
      * @param symbol   the symbol of the investment
      * @param name     the name of the investment
      * @param quantity the quantity to buy
      * @param price    the price of the investment
      */
     public void buyInvestment(String type, String symbol, String name, int quantity, double price) {
-        symbol = validateSymbol(symbol);
-        name = validateName(name);
-        quantity = validateQuantity(quantity);
-        price = validatePrice(price);
-
-        Investment existingInvestment = findInvestment(symbol);
-        if (existingInvestment != null) {
-            existingInvestment.buy(quantity, price);
-        } else {
-            Investment newInvestment = type.equalsIgnoreCase("stock")
-                    ? new Stock(symbol, name, quantity, price)
-                    : new MutualFund(symbol, name, quantity, price);
-            investments.add(newInvestment);
-            indexKeywords(newInvestment.getName(), investments.size() - 1);
+        long start = System.nanoTime();
+        PortfolioEvents.TradeEvent event = new PortfolioEvents.TradeEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            InstrumentType instrumentType = validateType(type);
+            symbol = validateSymbol(symbol);
+            name = validateName(name);
+            quantity = validateQuantity(quantity);
+            price = validatePrice(price);
+
+            long timestamp = nextTimestamp();
+            int index = findInvestmentIndex(symbol);
+            if (index >= 0) {
+                Investment investment = investments.get(index);
+                double previousMarketValue = investment.getQuantity() * investment.getPrice();
+                double previousBookValue = investment.getBookValue();
+                investment.buy(quantity, price);
+                writeBack(index, investment);
+                aggregates.update(investment, previousMarketValue, previousBookValue);
+                logPosition(investment, timestamp);
+                publishChange(PortfolioChange.Kind.QUANTITY_CHANGED, investment);
+            } else {
+                Investment newInvestment = createInvestment(instrumentType, symbol, name, quantity, price);
+                investments.add(newInvestment);
+                indexInvestment(newInvestment, investments.size() - 1);
+                aggregates.add(newInvestment);
+                priceHistory.append(symbol, timestamp, price);
+                logPosition(newInvestment, timestamp);
+                publishChange(PortfolioChange.Kind.POSITION_ADDED, newInvestment);
+            }
+            succeeded = true;
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.BUY);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.BUY, System.nanoTime() - start);
+            PortfolioEvents.commitTrade(event, "BUY", symbol, quantity, price, succeeded);
         }
     }
 
     /**
-     * Sells a specified quantity of an investment in the portfolio.
+     * Sells a specified quantity of an investment in the portfolio, consuming the
+     * oldest lots first.
      * 
      * @param symbol   the symbol of the investment
      * @param quantity the quantity to sell
@@ -182,47 +625,738 @@ public class Portfolio {
      * @return the proceeds from the sale
      */
     public double sellInvestment(String symbol, int quantity, double price) {
-        symbol = validateSymbol(symbol);
-        quantity = validateQuantity(quantity);
-        price = validatePrice(price);
+        return sellInvestment(symbol, quantity, price, LotSelection.FIFO).getProceeds();
+    }
+
+    /**
+     * Sells a specified quantity of an investment in the portfolio, consuming lots
+     * in the order given by the lot selection method.
+     * 
+     * @param symbol    the symbol of the investment
+     * @param quantity  the quantity to sell
+     * @param price     the price of the investment
+     * @param selection the method used to choose the lots
+     * @return the result of the sale, including the realized gain
+     */
+    public SaleResult sellInvestment(String symbol, int quantity, double price, LotSelection selection) {
+        long start = System.nanoTime();
+        PortfolioEvents.TradeEvent event = new PortfolioEvents.TradeEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            symbol = validateSymbol(symbol);
+            quantity = validateQuantity(quantity);
+            price = validatePrice(price);
+
+            int index = requireInvestmentIndex(symbol);
+            Investment investment = investments.get(index);
+            double previousMarketValue = investment.getQuantity() * investment.getPrice();
+            double previousBookValue = investment.getBookValue();
+            SaleResult result = investment.sell(quantity, price, selection);
+            aggregates.update(investment, previousMarketValue, previousBookValue);
+            recordSale(investment, result);
+            removeIfEmpty(index, investment);
+            event.realizedGain = result.getRealizedGain();
+            succeeded = true;
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.SELL);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.SELL, System.nanoTime() - start);
+            PortfolioEvents.commitTrade(event, "SELL", symbol, quantity, price, succeeded);
+        }
+    }
+
+    /**
+     * Sells a specified quantity of an investment from one purchase lot.
+     * 
+     * @param symbol   the symbol of the investment
+     * @param lotId    the id of the lot to sell from
+     * @param quantity the quantity to sell
+     * @param price    the price of the investment
+     * @return the result of the sale, including the realized gain
+     */
+    public SaleResult sellLot(String symbol, long lotId, int quantity, double price) {
+        long start = System.nanoTime();
+        PortfolioEvents.TradeEvent event = new PortfolioEvents.TradeEvent();
+        event.begin();
+        boolean succeeded = false;
+        try {
+            symbol = validateSymbol(symbol);
+            quantity = validateQuantity(quantity);
+            price = validatePrice(price);
+
+            int index = requireInvestmentIndex(symbol);
+            Investment investment = investments.get(index);
+            double previousMarketValue = investment.getQuantity() * investment.getPrice();
+            double previousBookValue = investment.getBookValue();
+            SaleResult result = investment.sellLot(lotId, quantity, price);
+            aggregates.update(investment, previousMarketValue, previousBookValue);
+            recordSale(investment, result);
+            removeIfEmpty(index, investment);
+            event.realizedGain = result.getRealizedGain();
+            succeeded = true;
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.SELL);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.SELL, System.nanoTime() - start);
+            PortfolioEvents.commitTrade(event, "SELL", symbol, quantity, price, succeeded);
+        }
+    }
 
-        Investment investment = findInvestment(symbol);
-        if (investment != null) {
-            double proceeds = investment.sell(quantity, price);
-            if (investment.getQuantity() == 0) {
-                int index = investments.indexOf(investment);
-                investments.remove(index);
-                updateIndexOnRemoval(index);
+    /**
+     * Applies a batch of orders to the portfolio, in order. Every order is
+     * checked against the positions as they will be at that point in the
+     * batch before any is applied, so an invalid order rejects the whole batch
+     * and leaves the portfolio unchanged. A buy that names a type and a name
+     * may open a position; any other order needs the investment to be held.
+     * 
+     * @param orders the orders to apply
+     * @throws IllegalArgumentException if an order names an investment that is
+     *                                  not held, or sells more than is held at
+     *                                  that point in the batch
+     */
+    public void applyOrders(List<TradeOrder> orders) {
+        Map<String, Integer> held = new HashMap<>();
+        // The type and name of each investment the batch has seen
+        Map<String, String[]> known = new HashMap<>();
+        String[] types = new String[orders.size()];
+        String[] names = new String[orders.size()];
+        String[] symbols = new String[orders.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            TradeOrder order = orders.get(i);
+            String symbol = validateSymbol(order.getSymbol());
+            validatePrice(order.getPrice());
+            symbols[i] = symbol;
+            if (!known.containsKey(symbol)) {
+                int index = findInvestmentIndex(symbol);
+                Investment investment = index < 0 ? null : investments.get(index);
+                held.put(symbol, investment == null ? 0 : investment.getQuantity());
+                known.put(symbol, investment == null ? null : new String[] { typeOf(investment), investment.getName() });
+            }
+            int quantity = held.get(symbol);
+            if (order.isPriceUpdate()) {
+                if (quantity == 0) {
+                    throw new IllegalArgumentException("Investment with symbol " + symbol + " not found.");
+                }
+                continue;
+            }
+            validateQuantity(order.getQuantity());
+            if (order.isBuy() && order.getType() != null) {
+                types[i] = validateType(order.getType()).getName();
+                names[i] = validateName(order.getName());
+                if (known.get(symbol) == null) {
+                    known.put(symbol, new String[] { types[i], names[i] });
+                }
+            } else if (known.get(symbol) == null) {
+                throw new IllegalArgumentException("Investment with symbol " + symbol + " not found.");
+            } else {
+                types[i] = known.get(symbol)[0];
+                names[i] = known.get(symbol)[1];
             }
-            return proceeds;
+            if (!order.isBuy() && order.getQuantity() > quantity) {
+                throw new IllegalArgumentException("Insufficient quantity to sell: " + symbol);
+            }
+            held.put(symbol, quantity + (order.isBuy() ? order.getQuantity() : -order.getQuantity()));
         }
 
-        throw new IllegalArgumentException("Investment with symbol " + symbol + " not found.");
+        for (int i = 0; i < orders.size(); i++) {
+            TradeOrder order = orders.get(i);
+            if (order.isPriceUpdate()) {
+                updatePrice(symbols[i], order.getPrice());
+            } else if (order.isBuy()) {
+                buyInvestment(types[i], symbols[i], names[i], order.getQuantity(), order.getPrice());
+            } else {
+                sellInvestment(symbols[i], order.getQuantity(), order.getPrice(), order.getSelection());
+            }
+        }
     }
 
     /**
-     * Updates the prices of all investments in the portfolio.
+     * Updates the prices of all investments in the portfolio. The investments
+     * are those held when the update starts, since price listeners may trade;
+     * one sold out by a listener before its turn is skipped, and one added by
+     * a listener is not prompted for.
      */
     public void updatePrices() {
-        for (Investment investment : investments) {
-            double newPrice = promptForPrice(investment.getClass().getSimpleName(), investment.getSymbol());
+        PortfolioEvents.PriceUpdateBatchEvent event = new PortfolioEvents.PriceUpdateBatchEvent();
+        event.begin();
+        String[] types = new String[investments.size()];
+        String[] symbols = new String[investments.size()];
+        for (int i = 0; i < symbols.length; i++) {
+            Investment investment = investments.get(i);
+            types[i] = investment.getClass().getSimpleName();
+            symbols[i] = investment.getSymbol();
+        }
+        int updates = 0;
+        for (int i = 0; i < symbols.length; i++) {
+            if (findInvestmentIndex(symbols[i]) < 0) {
+                continue;
+            }
+            double newPrice = promptForPrice(types[i], symbols[i]);
+            updatePrice(symbols[i], newPrice);
+            updates++;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.updates = updates;
+            event.commit();
+        }
+    }
+
+    /**
+     * Updates the price of one investment and records it in the price history.
+     * The price listeners are then called in the order they were added, once
+     * the update has been recorded in the metrics; a trade they make is timed
+     * as a trade of its own.
+     * 
+     * @param symbol   the symbol of the investment
+     * @param newPrice the new price of the investment
+     */
+    public void updatePrice(String symbol, double newPrice) {
+        long start = System.nanoTime();
+        PortfolioEvents.PriceUpdateEvent event = new PortfolioEvents.PriceUpdateEvent();
+        event.begin();
+        try {
+            symbol = validateSymbol(symbol);
+            newPrice = validatePrice(newPrice);
+
+            int index = requireInvestmentIndex(symbol);
+            Investment investment = investments.get(index);
+            double previousMarketValue = investment.getQuantity() * investment.getPrice();
             investment.updatePrice(newPrice);
+            writeBack(index, investment);
+            aggregates.update(investment, previousMarketValue, investment.getBookValue());
+            long timestamp = nextTimestamp();
+            priceHistory.append(symbol, timestamp, newPrice);
+            logPosition(investment, timestamp);
+            publishChange(PortfolioChange.Kind.PRICE_CHANGED, investment);
+        } catch (RuntimeException e) {
+            metrics.recordError(PortfolioMetrics.Operation.UPDATE_PRICE);
+            throw e;
+        } finally {
+            metrics.record(PortfolioMetrics.Operation.UPDATE_PRICE, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.symbol = symbol;
+                event.price = newPrice;
+                event.commit();
+            }
+        }
+        for (int i = 0; i < priceListeners.size(); i++) {
+            priceListeners.get(i).priceUpdated(symbol, newPrice);
         }
     }
 
     /**
-     * Finds an investment in the portfolio by its symbol.
+     * Returns the log of every change made to the positions of the portfolio.
      * 
-     * @param symbol the symbol of the investment
-     * @return the investment if found, or null if not found
+     * @return the trade log
+     */
+    public TradeLog getTradeLog() {
+        return tradeLog;
+    }
+
+    /**
+     * Turns logging of position changes on or off. The log keeps every change
+     * and grows without bound, so it is off by default. Turning it on records
+     * every position held at that moment, so the book can be reconstructed
+     * with getPortfolioAt from then on, but not while the log is off.
+     * 
+     * @param enabled true to log position changes
+     */
+    public void setTradeLogEnabled(boolean enabled) {
+        if (enabled && !tradeLogEnabled) {
+            long timestamp = nextTimestamp();
+            List<PositionSnapshot> book = new ArrayList<>(investments.size());
+            for (Investment investment : investments) {
+                book.add(snapshotOf(investment, timestamp));
+            }
+            tradeLog.start(timestamp, book);
+        } else if (!enabled && tradeLogEnabled) {
+            tradeLog.stop(nextTimestamp());
+        }
+        this.tradeLogEnabled = enabled;
+    }
+
+    /**
+     * Reconstructs the portfolio as it was at a point in time from the trade
+     * log. The returned portfolio is independent of this one.
+     * 
+     * @param timestamp the time in milliseconds since the epoch
+     * @return a new portfolio holding the positions open at that time
+     * @throws IllegalArgumentException if the log was off at that time
      */
-    private Investment findInvestment(String symbol) {
+    public Portfolio getPortfolioAt(long timestamp) {
+        Portfolio snapshot = new Portfolio();
+        snapshot.feeSchedule = feeSchedule;
+        snapshot.venue = venue;
+        snapshot.venueId = venueId;
+        for (PositionSnapshot position : tradeLog.getPositionsAt(timestamp).values()) {
+            Investment investment = snapshot.createInvestment(InstrumentType.forName(position.getType()),
+                    position.getSymbol(), position.getName(), position.getQuantity(), position.getPrice());
+            investment.restoreBookValue(position.getBookValue());
+            snapshot.investments.add(investment);
+            snapshot.indexInvestment(investment, snapshot.investments.size() - 1);
+            snapshot.aggregates.add(investment);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the store holding the price history of every investment.
+     * 
+     * @return the price history store
+     */
+    public PriceHistoryStore getPriceHistoryStore() {
+        return priceHistory;
+    }
+
+    /**
+     * Replaces the store used to record the price history, for example with
+     * one backed by a directory.
+     * 
+     * @param priceHistory the price history store to use
+     */
+    public void setPriceHistoryStore(PriceHistoryStore priceHistory) {
+        if (priceHistory == null) {
+            throw new IllegalArgumentException("Price history store cannot be null.");
+        }
+        this.priceHistory = priceHistory;
+    }
+
+    /**
+     * Calculates the market value of the current holdings at the prices they
+     * had at a point in time. Holdings without a recorded price at that time
+     * are left out.
+     * 
+     * @param timestamp the time in milliseconds since the epoch
+     * @return the market value at that time
+     */
+    public double getMarketValueAt(long timestamp) {
+        double value = 0;
         for (Investment investment : investments) {
-            if (investment.getSymbol().equalsIgnoreCase(symbol)) {
-                return createCopy(investment);
+            double price = priceHistory.priceAt(investment.getSymbol(), timestamp);
+            if (!Double.isNaN(price)) {
+                value += investment.getQuantity() * price;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Finds the position of an investment in the portfolio by its symbol using
+     * the symbol index.
+     * 
+     * @param symbol the symbol of the investment
+     * @return the position of the investment, or -1 if not found
+     */
+    private int findInvestmentIndex(String symbol) {
+        if (store != null) {
+            return store.find(symbol.toUpperCase());
+        }
+        if (storedIndex != null) {
+            return storedIndex.findSymbol(symbol.toUpperCase(), investments);
+        }
+        Integer index = symbolIndex.get(symbol.toUpperCase());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the current time for the price history and trade log, keeping
+     * timestamps in order even if the system clock moves backwards.
+     * 
+     * @return the time in milliseconds since the epoch
+     */
+    private long nextTimestamp() {
+        lastEventTimestamp = Math.max(System.currentTimeMillis(), lastEventTimestamp);
+        return lastEventTimestamp;
+    }
+
+    /**
+     * Records a sale in the realized gain ledger and the trade log, and
+     * publishes the change.
+     * 
+     * @param investment the investment after the sale
+     * @param result     the result of the sale
+     */
+    private void recordSale(Investment investment, SaleResult result) {
+        long timestamp = nextTimestamp();
+        realizedGains.record(Instant.ofEpochMilli(timestamp), result.getRealizedGain());
+        logPosition(investment, timestamp);
+        publishChange(investment.getQuantity() == 0
+                ? PortfolioChange.Kind.POSITION_REMOVED
+                : PortfolioChange.Kind.QUANTITY_CHANGED, investment);
+    }
+
+    /**
+     * Logs the current state of an investment in the trade log.
+     * 
+     * @param investment the investment that changed
+     * @param timestamp  the time of the change
+     */
+    private void logPosition(Investment investment, long timestamp) {
+        if (!tradeLogEnabled) {
+            return;
+        }
+        tradeLog.record(snapshotOf(investment, timestamp));
+    }
+
+    /**
+     * Records the current state of an investment for the trade log.
+     * 
+     * @param investment the investment
+     * @param timestamp  the time of the state
+     * @return the snapshot
+     */
+    private PositionSnapshot snapshotOf(Investment investment, long timestamp) {
+        return new PositionSnapshot(timestamp, typeOf(investment), investment.getSymbol(), investment.getName(),
+                investment.getQuantity(), investment.getPrice(), investment.getBookValue());
+    }
+
+    /**
+     * Publishes a change to an investment, unless nobody is subscribed.
+     * 
+     * @param kind       the kind of change
+     * @param investment the investment that changed
+     */
+    private void publishChange(PortfolioChange.Kind kind, Investment investment) {
+        if (changePublisher.hasSubscribers()) {
+            changePublisher.publish(new PortfolioChange(kind, investment));
+        }
+    }
+
+    /**
+     * Creates an investment of a type with the fees of the current schedule
+     * and venue.
+     * 
+     * @param type     the instrument type
+     * @param symbol   the symbol of the investment
+     * @param name     the name of the investment
+     * @param quantity the initial quantity
+     * @param price    the initial price
+     * @return the new investment
+     */
+    private Investment createInvestment(InstrumentType type, String symbol, String name, int quantity,
+            double price) {
+        return type.create(symbol, name, quantity, price, feeSchedule.getBuyFeeModel(type, venueId),
+                feeSchedule.getSellFeeModel(type, venueId));
+    }
+
+    /**
+     * Returns the type name used for an investment in files and logs.
+     * 
+     * @param investment the investment
+     * @return the name of the instrument type, such as "stock"
+     */
+    private String typeOf(Investment investment) {
+        return investment.getInstrumentType().getName();
+    }
+
+    /**
+     * Merges validated records into the book. The records are sorted by symbol
+     * and walked together with a symbol-sorted view of the book, so each
+     * record is matched without a lookup. A record is bought into the position
+     * it matches, or into the position created by an earlier record of the
+     * same symbol; any other record is added as a new position. New positions
+     * are appended in the order given. The symbol and keyword indexes are not
+     * updated; the caller rebuilds them once the merge is done.
+     * 
+     * @param records      the records to merge, which are taken over
+     * @param recordPrices whether to add the price of each new position to the
+     *                     price history, as a purchase does
+     */
+    private void merge(List<Investment> records, boolean recordPrices) {
+        if (store != null) {
+            mergeIntoStore(records, recordPrices);
+            return;
+        }
+        Integer[] incoming = new Integer[records.size()];
+        for (int i = 0; i < incoming.length; i++) {
+            incoming[i] = i;
+        }
+        // Stable, so repeated symbols are merged in the order they were given
+        Arrays.parallelSort(incoming, Comparator.comparing(i -> records.get(i).getSymbol()));
+        Investment[] book = investments.toArray(new Investment[0]);
+        Arrays.parallelSort(book, Comparator.comparing(Investment::getSymbol));
+
+        long timestamp = nextTimestamp();
+        boolean[] isNew = new boolean[records.size()];
+        int position = 0;
+        Investment added = null;
+        for (int index : incoming) {
+            Investment record = records.get(index);
+            String symbol = record.getSymbol();
+            while (position < book.length && book[position].getSymbol().compareTo(symbol) < 0) {
+                position++;
+            }
+            Investment target = position < book.length && book[position].getSymbol().equals(symbol)
+                    ? book[position]
+                    : added != null && added.getSymbol().equals(symbol) ? added : null;
+            if (target != null) {
+                double previousMarketValue = target.getQuantity() * target.getPrice();
+                double previousBookValue = target.getBookValue();
+                target.buy(record.getQuantity(), record.getPrice());
+                aggregates.update(target, previousMarketValue, previousBookValue);
+                logPosition(target, timestamp);
+                publishChange(target == added
+                        ? PortfolioChange.Kind.POSITION_ADDED : PortfolioChange.Kind.QUANTITY_CHANGED, target);
+            } else {
+                added = record;
+                isNew[index] = true;
+                aggregates.add(record);
+                if (recordPrices) {
+                    priceHistory.append(symbol, timestamp, record.getPrice());
+                }
+                logPosition(record, timestamp);
+                publishChange(PortfolioChange.Kind.POSITION_ADDED, record);
+            }
+        }
+
+        // New positions keep the order they were given in
+        for (int i = 0; i < isNew.length; i++) {
+            if (isNew[i]) {
+                investments.add(records.get(i));
             }
         }
-        return null;
+    }
+
+    /**
+     * Merges validated records into a book held in a store, in the order
+     * given. The store finds each record's position by symbol, so the book is
+     * never read in full. The result is the same as that of
+     * {@link #merge(List, boolean)}.
+     * 
+     * @param records      the records to merge
+     * @param recordPrices whether to add the price of each new position to the
+     *                     price history
+     */
+    private void mergeIntoStore(List<Investment> records, boolean recordPrices) {
+        long timestamp = nextTimestamp();
+        int held = investments.size();
+        for (Investment record : records) {
+            String symbol = record.getSymbol();
+            int index = findInvestmentIndex(symbol);
+            if (index >= 0) {
+                Investment target = investments.get(index);
+                double previousMarketValue = target.getQuantity() * target.getPrice();
+                double previousBookValue = target.getBookValue();
+                target.buy(record.getQuantity(), record.getPrice());
+                writeBack(index, target);
+                aggregates.update(target, previousMarketValue, previousBookValue);
+                logPosition(target, timestamp);
+                // Positions past those held before were added by this merge
+                publishChange(index >= held
+                        ? PortfolioChange.Kind.POSITION_ADDED : PortfolioChange.Kind.QUANTITY_CHANGED, target);
+            } else {
+                investments.add(record);
+                aggregates.add(record);
+                if (recordPrices) {
+                    priceHistory.append(symbol, timestamp, record.getPrice());
+                }
+                logPosition(record, timestamp);
+                publishChange(PortfolioChange.Kind.POSITION_ADDED, record);
+            }
+        }
+    }
+
+    /**
+     * Writes the index file of a saved data file. The book is unchanged since
+     * the indexes were mapped, if they still are, so the mapped index is
+     * copied. A failure leaves the data file saved, and its indexes are rebuilt
+     * when it is loaded.
+     * 
+     * @param file the data file, already written
+     */
+    private void saveIndexFile(File file) {
+        try {
+            if (storedIndex != null) {
+                storedIndex.copyTo(file);
+            } else {
+                PortfolioIndexFile.write(file, investments, keywordIndex);
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing index file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the symbol and keyword indexes from the list of investments.
+     * Large books are cut into ranges that are indexed in parallel, each into
+     * its own fragment. The fragments are then merged in range order, so
+     * every keyword's positions stay in ascending order.
+     */
+    private void rebuildIndexes() {
+        if (store != null) {
+            return;
+        }
+        int count = investments.size();
+        int ranges = count < PARALLEL_INDEX_THRESHOLD ? 1
+                : Math.min(count / (PARALLEL_INDEX_THRESHOLD / 4), ForkJoinPool.getCommonPoolParallelism() * 4);
+        List<IndexFragment> fragments = IntStream.range(0, ranges).parallel()
+                .mapToObj(r -> new IndexFragment((int) ((long) count * r / ranges),
+                        (int) ((long) count * (r + 1) / ranges)))
+                .collect(Collectors.toList());
+
+        Map<String, Integer> symbols = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+        Map<String, List<Integer>> keywords = new HashMap<>();
+        for (IndexFragment fragment : fragments) {
+            symbols.putAll(fragment.symbols);
+            for (Map.Entry<String, List<Integer>> entry : fragment.keywords.entrySet()) {
+                List<Integer> positions = keywords.putIfAbsent(entry.getKey(), entry.getValue());
+                if (positions != null) {
+                    positions.addAll(entry.getValue());
+                }
+            }
+        }
+        symbolIndex = symbols;
+        keywordIndex = keywords;
+        storedIndex = null;
+    }
+
+    /**
+     * The IndexFragment class holds the symbol and keyword index entries of a
+     * range of positions.
+     */
+    private class IndexFragment {
+        private final Map<String, Integer> symbols = new HashMap<>();
+        private final Map<String, List<Integer>> keywords = new HashMap<>();
+
+        /**
+         * Indexes the investments in a range of positions.
+         * 
+         * @param from the first position, inclusive
+         * @param to   the last position, exclusive
+         */
+        IndexFragment(int from, int to) {
+            for (int position = from; position < to; position++) {
+                Investment investment = investments.get(position);
+                symbols.put(investment.getSymbol(), position);
+                for (String keyword : splitWords(investment.getName())) {
+                    keywords.computeIfAbsent(keyword, k -> new ArrayList<>()).add(position);
+                }
+            }
+        }
+    }
+
+    /**
+     * The StoredPositions class is the list of investments of a portfolio
+     * whose book is held in a position store. Each read makes a new
+     * Investment from the stored record, with one lot at its average cost and
+     * the fees of the current schedule; setting a position writes it back.
+     * Removing a position moves the last position into its place, as the
+     * store does. Reads may run in parallel.
+     */
+    private class StoredPositions extends AbstractList<Investment> implements RandomAccess {
+        @Override
+        public Investment get(int index) {
+            PositionView view = store.view().moveTo(index);
+            Investment investment = createInvestment(view.getType(), view.getSymbol(), view.getName(),
+                    view.getQuantity(), view.getPrice());
+            investment.restoreBookValue(view.getBookValue());
+            return investment;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public Investment set(int index, Investment investment) {
+            Investment previous = get(index);
+            if (!previous.getSymbol().equals(investment.getSymbol())) {
+                throw new IllegalArgumentException("Position " + index + " holds " + previous.getSymbol() + ".");
+            }
+            put(investment);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Investment investment) {
+            if (index != size() || store.find(investment.getSymbol()) >= 0) {
+                throw new IllegalArgumentException("Positions can only be added at the end, once per symbol.");
+            }
+            put(investment);
+        }
+
+        @Override
+        public Investment remove(int index) {
+            Investment removed = get(index);
+            store.remove(index);
+            return removed;
+        }
+
+        private void put(Investment investment) {
+            store.put(investment.getInstrumentType(), investment.getSymbol(), investment.getName(),
+                    investment.getQuantity(), investment.getPrice(), investment.getBookValue());
+        }
+    }
+
+    /**
+     * Finds the position of an investment that must exist in the portfolio.
+     * 
+     * @param symbol the symbol of the investment
+     * @return the position of the investment
+     * @throws IllegalArgumentException if the investment is not found
+     */
+    private int requireInvestmentIndex(String symbol) {
+        int index = findInvestmentIndex(symbol);
+        if (index < 0) {
+            throw new IllegalArgumentException("Investment with symbol " + symbol + " not found.");
+        }
+        return index;
+    }
+
+    /**
+     * Removes an investment and updates the indexes once it has been sold out,
+     * or writes it back if it is still held.
+     * 
+     * @param index      the position of the investment
+     * @param investment the investment after the sale
+     */
+    private void removeIfEmpty(int index, Investment investment) {
+        if (investment.getQuantity() == 0) {
+            investments.remove(index);
+            aggregates.remove(investment);
+            updateIndexOnRemoval(index);
+        } else {
+            writeBack(index, investment);
+        }
+    }
+
+    /**
+     * Writes a changed investment back to the store, if the book is held in
+     * one. Investments on the heap are changed in place.
+     * 
+     * @param index      the position of the investment
+     * @param investment the investment after the change
+     */
+    private void writeBack(int index, Investment investment) {
+        if (store != null) {
+            investments.set(index, investment);
+        }
+    }
+
+    /**
+     * Finds the stored positions whose name contains a keyword, by reading
+     * every name in the store.
+     * 
+     * @param keyword the lowercase keyword
+     * @return the positions, in ascending order
+     */
+    private List<Integer> scanKeyword(String keyword) {
+        List<Integer> positions = new ArrayList<>();
+        PositionView view = store.view();
+        for (int position = 0; position < store.size(); position++) {
+            if (Arrays.asList(splitWords(view.moveTo(position).getName())).contains(keyword)) {
+                positions.add(position);
+            }
+        }
+        return positions;
     }
 
     /**
@@ -232,12 +1366,25 @@ public class Portfolio {
      * @return a copy of the investment
      */
     private Investment createCopy(Investment investment) {
-        if (investment instanceof Stock) {
-            return new Stock((Stock) investment);
-        } else if (investment instanceof MutualFund) {
-            return new MutualFund((MutualFund) investment);
+        return investment.getInstrumentType().copy(investment);
+    }
+
+    /**
+     * Adds an investment to the symbol and keyword indexes.
+     * 
+     * @param investment the investment to index
+     * @param position   the position of the investment in the list
+     */
+    private void indexInvestment(Investment investment, int position) {
+        if (store != null) {
+            return;
         }
-        return null;
+        if (storedIndex != null) {
+            rebuildIndexes();
+            return;
+        }
+        symbolIndex.put(investment.getSymbol(), position);
+        indexKeywords(investment.getName(), position);
     }
 
     /**
@@ -254,13 +1401,21 @@ public class Portfolio {
     }
 
     /**
-     * Updates the keyword index when an investment is removed.
+     * Updates the keyword and symbol indexes when an investment is removed.
      * 
      * @param removedPosition the position of the removed investment
      */
     private void updateIndexOnRemoval(int removedPosition) {
-        for (Map.Entry<String, List<Integer>> entry : keywordIndex.entrySet()) {
-            List<Integer> positions = entry.getValue();
+        if (store != null) {
+            return;
+        }
+        if (storedIndex != null) {
+            rebuildIndexes();
+            return;
+        }
+        Iterator<Map.Entry<String, List<Integer>>> entries = keywordIndex.entrySet().iterator();
+        while (entries.hasNext()) {
+            List<Integer> positions = entries.next().getValue();
             positions.removeIf(pos -> pos == removedPosition);
             for (int i = 0; i < positions.size(); i++) {
                 if (positions.get(i) > removedPosition) {
@@ -268,22 +1423,12 @@ public class Portfolio {
                 }
             }
             if (positions.isEmpty()) {
-                keywordIndex.remove(entry.getKey());
+                entries.remove();
             }
         }
-    }
 
-    /**
-     * Gets a list of all positions of investments in the portfolio.
-     * 
-     * @return a list of all positions
-     */
-    private List<Integer> getAllPositions() {
-        List<Integer> positions = new ArrayList<>();
-        for (int i = 0; i < investments.size(); i++) {
-            positions.add(i);
-        }
-        return positions;
+        symbolIndex.values().removeIf(pos -> pos == removedPosition);
+        symbolIndex.replaceAll((symbol, pos) -> pos > removedPosition ? pos - 1 : pos);
     }
 
     /**
@@ -296,7 +1441,7 @@ public class Portfolio {
         if (input == null || input.trim().isEmpty()) {
             return new String[0];
         }
-        return input.toLowerCase().split("\\s+");
+        return WHITESPACE.split(input.toLowerCase());
     }
 
     /**
@@ -311,40 +1456,56 @@ public class Portfolio {
     }
 
     /**
-     * Checks if an investment price falls within a specified price range.
+     * Parses a price range into its lower and upper bounds, so the range is
+     * only parsed once per search.
      * 
-     * @param price      the price of the investment
-     * @param priceRange the price range to match
-     * @return true if the price matches the range, false otherwise
+     * @param priceRange the price range to match, such as 10, 10-, -20 or 10-20
+     * @return the inclusive lower and upper bounds, or null if the range is
+     *         invalid and matches nothing
      */
-    private boolean matchesPriceRange(double price, String priceRange) {
+    private double[] parsePriceRange(String priceRange) {
         if (priceRange == null || priceRange.trim().isEmpty()) {
-            return true;
+            return new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
         }
         priceRange = priceRange.trim();
         try {
             if (priceRange.matches("^\\d+(\\.\\d{1,2})?$")) {
                 double targetPrice = Double.parseDouble(priceRange);
-                return price == targetPrice;
+                return new double[] { targetPrice, targetPrice };
             }
             if (priceRange.matches("^\\d+(\\.\\d{1,2})?-$")) {
                 double minPrice = Double.parseDouble(priceRange.substring(0, priceRange.length() - 1));
-                return price >= minPrice;
+                return new double[] { minPrice, Double.POSITIVE_INFINITY };
             }
             if (priceRange.matches("^-(\\d+(\\.\\d{1,2})?)$")) {
                 double maxPrice = Double.parseDouble(priceRange.substring(1));
-                return price <= maxPrice;
+                return new double[] { Double.NEGATIVE_INFINITY, maxPrice };
             }
             if (priceRange.matches("^\\d+(\\.\\d{1,2})?-\\d+(\\.\\d{1,2})?$")) {
                 String[] parts = priceRange.split("-");
                 double minPrice = Double.parseDouble(parts[0]);
                 double maxPrice = Double.parseDouble(parts[1]);
-                return price >= minPrice && price <= maxPrice;
+                return new double[] { minPrice, maxPrice };
             }
-            return false;
+            return null;
         } catch (NumberFormatException e) {
-            return false;
+            return null;
+        }
+    }
+
+    /**
+     * Validates an investment type.
+     * 
+     * @param type the name of the type to validate
+     * @return the registered instrument type
+     * @throws IllegalArgumentException if no type is registered under the name
+     */
+    private InstrumentType validateType(String type) {
+        InstrumentType instrumentType = InstrumentType.forName(type);
+        if (instrumentType == null) {
+            throw new IllegalArgumentException("Invalid investment type: " + type + ".");
         }
+        return instrumentType;
     }
 
     /**
@@ -355,7 +1516,7 @@ public class Portfolio {
      * @throws IllegalArgumentException if the symbol is invalid
      */
     private String validateSymbol(String symbol) {
-        if (symbol == null || !symbol.matches("^[A-Z0-9]+$")) {
+        if (symbol == null || !SYMBOL.matcher(symbol).matches()) {
             throw new IllegalArgumentException("Invalid symbol format. Symbols must be alphanumeric and uppercase.");
         }
         return symbol.toUpperCase();
@@ -0,0 +1,127 @@
+package ePortfolio;
+
+/**
+ * The PortfolioChange class describes one change to a position, carrying the
+ * state of the position right after the change.
+ */
+public class PortfolioChange {
+    /**
+     * The kinds of change a position can go through.
+     */
+    public enum Kind {
+        POSITION_ADDED, POSITION_REMOVED, QUANTITY_CHANGED, PRICE_CHANGED
+    }
+
+    private final Kind kind;
+    private final InstrumentType type;
+    private final String symbol;
+    private final String name;
+    private final int quantity;
+    private final double price;
+    private final double bookValue;
+    private final long sequence;
+
+    /**
+     * Constructs a PortfolioChange.
+     *
+     * @param kind      the kind of change
+     * @param type      the instrument type of the investment
+     * @param symbol    the symbol of the investment
+     * @param name      the name of the investment
+     * @param quantity  the quantity held after the change
+     * @param price     the price after the change
+     * @param bookValue the book value after the change
+     */
+    public PortfolioChange(Kind kind, InstrumentType type, String symbol, String name, int quantity, double price,
+            double bookValue) {
+        this(kind, type, symbol, name, quantity, price, bookValue, 0);
+    }
+
+    private PortfolioChange(Kind kind, InstrumentType type, String symbol, String name, int quantity, double price,
+            double bookValue, long sequence) {
+        this.kind = kind;
+        this.type = type;
+        this.symbol = symbol;
+        this.name = name;
+        this.quantity = quantity;
+        this.price = price;
+        this.bookValue = bookValue;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Constructs a PortfolioChange from the current state of an investment.
+     *
+     * @param kind       the kind of change
+     * @param investment the investment after the change
+     */
+    public PortfolioChange(Kind kind, Investment investment) {
+        this(kind, investment.getInstrumentType(), investment.getSymbol(), investment.getName(),
+                investment.getQuantity(), investment.getPrice(), investment.getBookValue());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public InstrumentType getType() {
+        return type;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getBookValue() {
+        return bookValue;
+    }
+
+    /**
+     * Returns the sequence number the publisher gave this change. Numbers grow
+     * with every change published, so a change numbered at or below the
+     * sequence read from {@link Portfolio#getChangeSequence()} happened before
+     * that read.
+     *
+     * @return the sequence number, or 0 if the change was never published
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns a copy of this change carrying a sequence number.
+     *
+     * @param sequence the sequence number
+     * @return the numbered change
+     */
+    PortfolioChange withSequence(long sequence) {
+        return new PortfolioChange(kind, type, symbol, name, quantity, price, bookValue, sequence);
+    }
+
+    /**
+     * Calculates the gain of the position after the change.
+     *
+     * @return the market value minus the book value
+     */
+    public double getGain() {
+        return quantity * price - bookValue;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [Symbol: %s, Quantity: %d, Price: %.2f, Book Value: %.2f]",
+                kind, symbol, quantity, price, bookValue);
+    }
+}
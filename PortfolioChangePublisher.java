@@ -0,0 +1,161 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The PortfolioChangePublisher class publishes position changes to Flow
+ * subscribers in coalesced batches.
+ * Changes are collected per symbol as they happen. Only the latest state of
+ * each symbol is kept, so a position whose price ticks many times between
+ * flushes shows up once in the next batch. Batches are flushed on a
+ * background thread at a fixed interval, which bounds the rate at which
+ * subscribers are notified no matter how fast the portfolio changes.
+ * Because a removal followed by a new purchase is merged into a single
+ * POSITION_ADDED, subscribers should treat POSITION_ADDED as insert-or-replace.
+ * Likewise a purchase followed by a full sale is published as
+ * POSITION_REMOVED, which subscribers that never saw the position can ignore.
+ */
+public class PortfolioChangePublisher implements Flow.Publisher<List<PortfolioChange>>, AutoCloseable {
+    private static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private final SubmissionPublisher<List<PortfolioChange>> publisher;
+    private final ScheduledExecutorService flusher;
+    private final long intervalMillis;
+    private Map<String, PortfolioChange> pending = new LinkedHashMap<>();
+    private long sequence;
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * Constructs a publisher that flushes at most ten batches per second.
+     */
+    public PortfolioChangePublisher() {
+        this(DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Constructs a publisher that flushes at a given interval.
+     *
+     * @param intervalMillis the interval between batches in milliseconds
+     */
+    public PortfolioChangePublisher(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be greater than zero.");
+        }
+        this.intervalMillis = intervalMillis;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-change-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher = new SubmissionPublisher<>(flusher, Flow.defaultBufferSize());
+    }
+
+    /**
+     * Adds a subscriber. Flushing starts with the first subscriber.
+     *
+     * @param subscriber the subscriber to add
+     */
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super List<PortfolioChange>> subscriber) {
+        publisher.subscribe(subscriber);
+        if (flushTask == null && !publisher.isClosed()) {
+            flushTask = flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Records a change to be published in the next batch, merging it with any
+     * change to the same symbol that is still pending. Each recorded change is
+     * numbered from the publisher's sequence. Changes are dropped when nobody
+     * is subscribed.
+     *
+     * @param change the change to publish
+     */
+    public void publish(PortfolioChange change) {
+        if (!publisher.hasSubscribers()) {
+            return;
+        }
+        synchronized (this) {
+            PortfolioChange numbered = change.withSequence(++sequence);
+            PortfolioChange previous = pending.get(change.getSymbol());
+            pending.put(change.getSymbol(), previous == null ? numbered : merge(previous, numbered));
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last change recorded. A subscriber
+     * that reads the portfolio directly can note this number and ignore
+     * changes numbered at or below it, since its read already includes them.
+     *
+     * @return the last sequence number, or 0 if nothing was recorded
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns whether anybody is subscribed, so callers can skip building
+     * changes that would be dropped.
+     *
+     * @return true if there is at least one subscriber
+     */
+    public boolean hasSubscribers() {
+        return publisher.hasSubscribers();
+    }
+
+    /**
+     * Stops flushing and completes all subscribers.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+        flusher.shutdown();
+    }
+
+    /**
+     * Hands the pending changes to the subscribers as one batch.
+     */
+    private void flush() {
+        Map<String, PortfolioChange> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        publisher.submit(Collections.unmodifiableList(new ArrayList<>(batch.values())));
+    }
+
+    /**
+     * Merges two changes to the same symbol into one that carries the latest
+     * state.
+     *
+     * @param previous the pending change
+     * @param next     the new change
+     * @return the merged change
+     */
+    private static PortfolioChange merge(PortfolioChange previous, PortfolioChange next) {
+        PortfolioChange.Kind kind;
+        switch (next.getKind()) {
+            case POSITION_REMOVED:
+                kind = PortfolioChange.Kind.POSITION_REMOVED;
+                break;
+            case POSITION_ADDED:
+                kind = PortfolioChange.Kind.POSITION_ADDED;
+                break;
+            case QUANTITY_CHANGED:
+                kind = previous.getKind() == PortfolioChange.Kind.POSITION_ADDED
+                        ? PortfolioChange.Kind.POSITION_ADDED
+                        : PortfolioChange.Kind.QUANTITY_CHANGED;
+                break;
+            default:
+                kind = previous.getKind();
+                break;
+        }
+        return new PortfolioChange(kind, next.getType(), next.getSymbol(), next.getName(), next.getQuantity(),
+                next.getPrice(), next.getBookValue()).withSequence(next.getSequence());
+    }
+}
@@ -0,0 +1,183 @@
+package ePortfolio;
+
+import jdk.jfr.*;
+
+/**
+ * The PortfolioEvents class holds the JDK Flight Recorder events emitted by
+ * Portfolio for trades, searches, gain calculations, price updates and file
+ * loads and saves.
+ * When no recording is running, the events are disabled and cost almost
+ * nothing; fields are only filled in for events that will be committed.
+ */
+public final class PortfolioEvents {
+    private static final String CATEGORY = "ePortfolio";
+
+    private PortfolioEvents() {
+    }
+
+    /**
+     * Emitted for every buy or sell.
+     */
+    @Name("ePortfolio.Trade")
+    @Label("Trade")
+    @Category(CATEGORY)
+    @Description("A buy or sell applied to the portfolio")
+    public static class TradeEvent extends Event {
+        @Label("Side")
+        String side;
+
+        @Label("Symbol")
+        String symbol;
+
+        @Label("Quantity")
+        int quantity;
+
+        @Label("Price")
+        double price;
+
+        @Label("Realized Gain")
+        double realizedGain;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    /**
+     * Emitted for every search, with the number of candidates examined and the
+     * number of results returned.
+     */
+    @Name("ePortfolio.Search")
+    @Label("Search")
+    @Category(CATEGORY)
+    @Description("A search of the portfolio by symbol, keywords and price range")
+    public static class SearchEvent extends Event {
+        @Label("Symbol")
+        String symbol;
+
+        @Label("Keywords")
+        String keywords;
+
+        @Label("Price Range")
+        String priceRange;
+
+        @Label("Candidates")
+        int candidates;
+
+        @Label("Results")
+        int results;
+    }
+
+    /**
+     * Emitted for every total gain calculation.
+     */
+    @Name("ePortfolio.GainCalculation")
+    @Label("Gain Calculation")
+    @Category(CATEGORY)
+    @Description("A calculation of the total unrealized gain")
+    public static class GainEvent extends Event {
+        @Label("Investments")
+        int investments;
+
+        @Label("Total Gain")
+        double totalGain;
+    }
+
+    /**
+     * Emitted for every price update.
+     */
+    @Name("ePortfolio.PriceUpdate")
+    @Label("Price Update")
+    @Category(CATEGORY)
+    @Description("The price of one investment updated")
+    public static class PriceUpdateEvent extends Event {
+        @Label("Symbol")
+        String symbol;
+
+        @Label("Price")
+        double price;
+    }
+
+    /**
+     * Emitted for every batch of price updates made by updatePrices. Each
+     * update in the batch also emits its own price update event.
+     */
+    @Name("ePortfolio.PriceUpdateBatch")
+    @Label("Price Update Batch")
+    @Category(CATEGORY)
+    @Description("One or more investment prices updated together")
+    public static class PriceUpdateBatchEvent extends Event {
+        @Label("Updates")
+        int updates;
+    }
+
+    /**
+     * Emitted for every file load or save.
+     */
+    @Name("ePortfolio.Persistence")
+    @Label("Persistence")
+    @Category(CATEGORY)
+    @Description("A portfolio file load or save")
+    public static class PersistenceEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("File")
+        String file;
+
+        @Label("Records")
+        long records;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    /**
+     * Ends and, if enabled, commits a trade event.
+     *
+     * @param event     the event begun when the trade started
+     * @param side      BUY or SELL
+     * @param symbol    the symbol traded
+     * @param quantity  the quantity traded
+     * @param price     the price of the trade
+     * @param succeeded whether the trade was applied
+     */
+    static void commitTrade(TradeEvent event, String side, String symbol, int quantity, double price,
+            boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.side = side;
+            event.symbol = symbol;
+            event.quantity = quantity;
+            event.price = price;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends and, if enabled, commits a persistence event.
+     *
+     * @param event     the event begun when the operation started
+     * @param operation LOAD or SAVE
+     * @param file      the name of the file
+     * @param records   the number of investments read or written
+     * @param bytes     the size of the file
+     * @param succeeded whether the operation completed without error
+     */
+    static void commitPersistence(PersistenceEvent event, String operation, String file, long records, long bytes,
+            boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.file = file;
+            event.records = records;
+            event.bytes = bytes;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ePortfolio;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The PortfolioExporter class writes positions to a stream in one record
+ * format. Records are appended to a {@link ByteSink}, so an export holds no
+ * more than one buffer of output in memory however many positions it writes,
+ * and formats numbers without creating strings. Exporters hold no state and
+ * can be shared.
+ */
+public abstract class PortfolioExporter {
+    /** The text format read by {@link Portfolio#loadFromFile(String)}. */
+    public static final PortfolioExporter TEXT = new TextExporter();
+    /** Comma-separated values with a header row. */
+    public static final PortfolioExporter CSV = new CsvExporter();
+    /** One JSON object per line. */
+    public static final PortfolioExporter JSON_LINES = new JsonLinesExporter();
+
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Writes positions to a stream. The stream is not closed.
+     *
+     * @param investments the positions to write
+     * @param out         the stream to write to
+     * @return the number of bytes written
+     * @throws IOException if the stream cannot be written
+     */
+    public long export(Iterable<? extends Investment> investments, OutputStream out) throws IOException {
+        Session session = open(out);
+        for (Investment investment : investments) {
+            session.write(investment);
+        }
+        return session.finish();
+    }
+
+    /**
+     * Writes positions to a file, compressed with gzip at its fastest level
+     * if the file name ends in .gz.
+     *
+     * @param investments the positions to write
+     * @param filename    the file to write
+     * @return the number of bytes written before compression
+     * @throws IOException if the file cannot be written
+     */
+    public long exportToFile(Iterable<? extends Investment> investments, String filename) throws IOException {
+        try (OutputStream out = openFile(filename)) {
+            return export(investments, out);
+        }
+    }
+
+    /**
+     * Starts writing records to a stream one at a time, for callers that visit
+     * positions themselves.
+     *
+     * @param out the stream to write to
+     * @return the session to write records with
+     * @throws IOException if the stream cannot be written
+     */
+    public Session open(OutputStream out) throws IOException {
+        return new Session(out);
+    }
+
+    /**
+     * Opens a file for writing, behind a gzip stream if its name ends in .gz.
+     *
+     * @param filename the file to open
+     * @return the stream to write to
+     * @throws IOException if the file cannot be opened
+     */
+    public static OutputStream openFile(String filename) throws IOException {
+        OutputStream file = new FileOutputStream(filename);
+        if (filename.endsWith(".gz")) {
+            // Favour speed over size so compression keeps up with the disk
+            return new GZIPOutputStream(file, FILE_BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+        return file;
+    }
+
+    /**
+     * Writes whatever comes before the first record, such as a header row.
+     *
+     * @param sink the sink to append to
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeHeader(ByteSink sink) throws IOException {
+    }
+
+    /**
+     * Writes one position.
+     *
+     * @param sink       the sink to append to
+     * @param investment the position to write
+     * @throws IOException if the stream cannot be written
+     */
+    protected abstract void writeRecord(ByteSink sink, Investment investment) throws IOException;
+
+    /**
+     * The Session class writes the records of one export.
+     */
+    public class Session {
+        private final ByteSink sink;
+
+        private Session(OutputStream out) throws IOException {
+            sink = new ByteSink(out);
+            writeHeader(sink);
+        }
+
+        /**
+         * Writes one position.
+         *
+         * @param investment the position to write
+         * @throws IOException if the stream cannot be written
+         */
+        public void write(Investment investment) throws IOException {
+            writeRecord(sink, investment);
+        }
+
+        /**
+         * Writes out the buffered records and flushes the stream, which is
+         * left open.
+         *
+         * @return the number of bytes written
+         * @throws IOException if the stream cannot be written
+         */
+        public long finish() throws IOException {
+            sink.flush();
+            return sink.getBytesWritten();
+        }
+    }
+}
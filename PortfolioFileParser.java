@@ -0,0 +1,372 @@
+package ePortfolio;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The PortfolioFileParser class reads the records of a portfolio file.
+ * A plain file is memory-mapped and cut into chunks at blank lines, which
+ * only ever fall between records, and the chunks are parsed in parallel. The
+ * records of all chunks are returned in file order. A gzipped file cannot be
+ * split without decompressing it first, so it is parsed as one stream.
+ * Records are created with the fees of a fee schedule and venue.
+ */
+class PortfolioFileParser {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BLOCK_SIZE = 65536;
+
+    private final FeeSchedule feeSchedule;
+    private final int venueId;
+
+    /**
+     * Constructs a PortfolioFileParser.
+     *
+     * @param feeSchedule the fee schedule of the records
+     * @param venue       the venue whose fees the records pay
+     */
+    PortfolioFileParser(FeeSchedule feeSchedule, String venue) {
+        this.feeSchedule = feeSchedule;
+        this.venueId = feeSchedule.venueId(venue);
+    }
+
+    /**
+     * Parses every record of a file. Records with an unknown type or invalid
+     * fields are skipped with a message.
+     *
+     * @param file the file to parse, gzipped if its name ends in .gz
+     * @return the records in file order
+     * @throws IOException if the file cannot be read
+     */
+    List<Investment> parse(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file), 65536)) {
+                return parseLines(in);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = split(channel);
+            List<List<Investment>> chunks;
+            try {
+                chunks = IntStream.range(0, bounds.length - 1).parallel()
+                        .mapToObj(i -> parseChunk(channel, bounds[i], bounds[i + 1]))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            List<Investment> records = new ArrayList<>(chunks.stream().mapToInt(List::size).sum());
+            for (List<Investment> chunk : chunks) {
+                records.addAll(chunk);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Cuts a file into chunks, about one per thread times four and no smaller
+     * than a megabyte, each ending just after a blank line or at the end of
+     * the file.
+     *
+     * @param channel the file
+     * @return the offsets where the chunks start, followed by the file size
+     */
+    private static long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parallelism = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD;
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / parallelism + 1));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextRecordStart(channel, start + chunkSize, size);
+            bounds.add(end);
+            start = end;
+        }
+        if (bounds.size() == 1) {
+            bounds.add(size);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Finds the first offset at or after a position that follows a blank line.
+     *
+     * @param channel  the file
+     * @param position the position to search from
+     * @param size     the size of the file
+     * @return the offset after the blank line, or the file size if there is
+     *         none
+     */
+    private static long nextRecordStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        boolean lineEmpty = false;
+        while (position < size) {
+            block.clear();
+            int read = channel.read(block, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = block.get(i);
+                if (b == '\n') {
+                    if (lineEmpty) {
+                        return position + i + 1;
+                    }
+                    lineEmpty = true;
+                } else if (b != '\r' && b != ' ' && b != '\t') {
+                    lineEmpty = false;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the records of a stream.
+     *
+     * @param in the stream
+     * @return the records in stream order
+     * @throws IOException if the stream cannot be read
+     */
+    private List<Investment> parseLines(InputStream in) throws IOException {
+        RecordBuilder builder = new RecordBuilder();
+        byte[] block = new byte[BLOCK_SIZE];
+        for (int read; (read = in.read(block)) > 0;) {
+            builder.feed(block, read);
+        }
+        return builder.finish();
+    }
+
+    /**
+     * Maps and parses one chunk of a file. The mapped bytes are copied out in
+     * blocks, which is much faster than reading them one at a time.
+     *
+     * @param channel the file
+     * @param start   the offset of the chunk
+     * @param end     the offset after the chunk
+     * @return the records of the chunk
+     */
+    private List<Investment> parseChunk(FileChannel channel, long start, long end) {
+        MappedByteBuffer chunk;
+        try {
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        RecordBuilder builder = new RecordBuilder();
+        byte[] block = new byte[BLOCK_SIZE];
+        while (chunk.hasRemaining()) {
+            int count = Math.min(block.length, chunk.remaining());
+            chunk.get(block, 0, count);
+            builder.feed(block, count);
+        }
+        return builder.finish();
+    }
+
+    /**
+     * The RecordBuilder class collects the fields of a record line by line and
+     * creates the record once its last field, the book value, is read. Lines
+     * are read as bytes; only the symbol, name, type and price fields are
+     * turned into strings.
+     */
+    private class RecordBuilder {
+        private final List<Investment> records = new ArrayList<>();
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private byte[] value = new byte[256];
+        private int valueLength;
+        private String type, symbol, name;
+        private int tag, quantity;
+        private double price, bookValue;
+        // Why the record being read is invalid, or null if it is not
+        private String invalid;
+
+        /**
+         * Reads the next bytes of the file, passing on each complete line.
+         *
+         * @param block the bytes
+         * @param count the number of bytes to read from the block
+         */
+        void feed(byte[] block, int count) {
+            for (int i = 0; i < count; i++) {
+                byte b = block[i];
+                if (b == '\n') {
+                    accept(line, lineLength);
+                    lineLength = 0;
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, lineLength * 2);
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+        }
+
+        /**
+         * Reads the last line of the file if it has no line break.
+         *
+         * @return the records read
+         */
+        List<Investment> finish() {
+            if (lineLength > 0) {
+                accept(line, lineLength);
+                lineLength = 0;
+            }
+            return records;
+        }
+
+        /**
+         * Reads one line of the file.
+         *
+         * @param line   the bytes of the line, without its line break
+         * @param length the length of the line
+         */
+        void accept(byte[] line, int length) {
+            int start = 0;
+            while (start < length && isSpace(line[start])) {
+                start++;
+            }
+            boolean last = startsWith(line, start, length, "bookValue");
+            try {
+                if (startsWith(line, start, length, "type")) {
+                    type = value(line, start, length);
+                } else if (startsWith(line, start, length, "tag")) {
+                    tag = intValue(line, start, length);
+                } else if (startsWith(line, start, length, "symbol")) {
+                    symbol = value(line, start, length);
+                } else if (startsWith(line, start, length, "name")) {
+                    name = value(line, start, length);
+                } else if (startsWith(line, start, length, "quantity")) {
+                    quantity = intValue(line, start, length);
+                } else if (startsWith(line, start, length, "price")) {
+                    price = Double.parseDouble(value(line, start, length));
+                } else if (last) {
+                    bookValue = Double.parseDouble(value(line, start, length));
+                }
+            } catch (NumberFormatException e) {
+                // The rest of the record is still read, so the next one starts cleanly
+                if (invalid == null) {
+                    invalid = e.getMessage();
+                }
+            }
+            if (last) {
+                addRecord();
+
+                // Reset fields
+                type = symbol = name = invalid = null;
+                tag = quantity = 0;
+                price = bookValue = 0.0;
+            }
+        }
+
+        private void addRecord() {
+            // Files written before tags were saved only name the type
+            InstrumentType instrumentType = tag > 0 ? InstrumentType.forTag(tag) : InstrumentType.forName(type);
+            if (invalid != null) {
+                System.out.println("Skipping " + symbol + ": " + invalid);
+            } else if (instrumentType == null && (tag > 0 || type != null)) {
+                System.out.println("Skipping " + symbol + ": unknown investment type "
+                        + (tag > 0 ? tag : type) + ".");
+            } else if (instrumentType != null && symbol != null && name != null) {
+                try {
+                    Investment record = instrumentType.create(symbol, name, quantity, price,
+                            feeSchedule.getBuyFeeModel(instrumentType, venueId),
+                            feeSchedule.getSellFeeModel(instrumentType, venueId));
+                    if (bookValue > 0) {
+                        record.restoreBookValue(bookValue);
+                    }
+                    records.add(record);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Skipping " + symbol + ": " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Copies the value of a name = "value" line into the value buffer:
+         * the text after the first equals sign, up to any second one, trimmed
+         * and with its quotes removed.
+         */
+        private void copyValue(byte[] line, int start, int length) {
+            int from = start;
+            while (from < length && line[from] != '=') {
+                from++;
+            }
+            if (from == length) {
+                throw new NumberFormatException("Missing value: "
+                        + new String(line, start, length - start, StandardCharsets.UTF_8));
+            }
+            int to = ++from;
+            while (to < length && line[to] != '=') {
+                to++;
+            }
+            while (from < to && isSpace(line[from])) {
+                from++;
+            }
+            while (to > from && isSpace(line[to - 1])) {
+                to--;
+            }
+            if (value.length < to - from) {
+                value = new byte[Math.max(value.length * 2, to - from)];
+            }
+            valueLength = 0;
+            for (int i = from; i < to; i++) {
+                if (line[i] != '"') {
+                    value[valueLength++] = line[i];
+                }
+            }
+        }
+
+        private String value(byte[] line, int start, int length) {
+            copyValue(line, start, length);
+            return new String(value, 0, valueLength, StandardCharsets.UTF_8);
+        }
+
+        private int intValue(byte[] line, int start, int length) {
+            copyValue(line, start, length);
+            int i = valueLength > 0 && (value[0] == '-' || value[0] == '+') ? 1 : 0;
+            if (i == valueLength || valueLength - i > 9) {
+                // Empty, signed only or possibly out of range; let parseInt decide
+                return Integer.parseInt(new String(value, 0, valueLength, StandardCharsets.UTF_8));
+            }
+            int result = 0;
+            for (; i < valueLength; i++) {
+                int digit = value[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("For input string: \""
+                            + new String(value, 0, valueLength, StandardCharsets.UTF_8) + "\"");
+                }
+                result = result * 10 + digit;
+            }
+            return value[0] == '-' ? -result : result;
+        }
+    }
+
+    private static boolean startsWith(byte[] line, int start, int length, String prefix) {
+        if (length - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        // The characters String.trim removes
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -0,0 +1,284 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The PortfolioFork class is a cheap, private copy of a simulator's book that
+ * trades can be tried on.
+ * Unchanged positions are read from the shared book. The first change to a
+ * position copies it into the fork, and later changes update the copy, so the
+ * fork only ever holds the positions it changed. Gains and market value are
+ * kept as differences from the book and never require a scan of it.
+ * The trades are also recorded as orders so a scenario that works out can be
+ * committed to the real portfolio. A fork is not thread-safe; use one fork per
+ * thread.
+ */
+public class PortfolioFork {
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9]+");
+
+    private final ScenarioSimulator base;
+    private final Map<String, Investment> changed = new HashMap<>();
+    private final List<TradeOrder> orders = new ArrayList<>();
+    private double totalGainChange;
+    private double marketValueChange;
+    private double realizedGain;
+
+    /**
+     * Constructs an empty fork of a simulator's book.
+     *
+     * @param base the simulator holding the book
+     */
+    PortfolioFork(ScenarioSimulator base) {
+        this.base = base;
+    }
+
+    /**
+     * Buys an investment in the fork.
+     *
+     * @param type     the name of a registered instrument type, such as stock
+     * @param symbol   the symbol of the investment
+     * @param name     the name of the investment
+     * @param quantity the quantity to buy
+     * @param price    the price per unit
+     */
+    public void buy(String type, String symbol, String name, int quantity, double price) {
+        InstrumentType instrumentType = InstrumentType.forName(type);
+        if (instrumentType == null) {
+            throw new IllegalArgumentException("Invalid investment type: " + type + ".");
+        }
+        String validSymbol = validateSymbol(symbol);
+        Investment investment = forWrite(validSymbol);
+        if (investment == null) {
+            FeeSchedule fees = base.getFeeSchedule();
+            investment = instrumentType.create(symbol, name, quantity, price,
+                    fees.getBuyFeeModel(instrumentType.getName(), base.getVenue()),
+                    fees.getSellFeeModel(instrumentType.getName(), base.getVenue()));
+            changed.put(investment.getSymbol(), investment);
+            addContribution(investment, 1);
+        } else {
+            addContribution(investment, -1);
+            try {
+                investment.buy(quantity, price);
+            } finally {
+                addContribution(investment, 1);
+            }
+        }
+        orders.add(new TradeOrder(type, validSymbol, name, quantity, price,
+                investment.getBuyFeeModel().calculateFee(quantity, price)));
+    }
+
+    /**
+     * Sells part of a position in the fork.
+     *
+     * @param symbol    the symbol of the investment
+     * @param quantity  the quantity to sell
+     * @param price     the price per unit
+     * @param selection the method used to choose the lots
+     * @return the result of the sale
+     */
+    public SaleResult sell(String symbol, int quantity, double price, LotSelection selection) {
+        String validSymbol = validateSymbol(symbol);
+        Investment investment = forWrite(validSymbol);
+        if (investment == null) {
+            throw new IllegalArgumentException("Investment not found: " + symbol);
+        }
+        addContribution(investment, -1);
+        SaleResult result;
+        try {
+            result = investment.sell(quantity, price, selection);
+        } finally {
+            addContribution(investment, 1);
+        }
+        realizedGain += result.getRealizedGain();
+        if (investment.getQuantity() == 0) {
+            changed.put(validSymbol, null);
+        }
+        orders.add(new TradeOrder(validSymbol, quantity, price,
+                investment.getSellFeeModel().calculateFee(quantity, price), selection));
+        return result;
+    }
+
+    /**
+     * Sells a fraction of a position in the fork, rounded down to a whole
+     * quantity.
+     *
+     * @param symbol    the symbol of the investment
+     * @param fraction  the fraction of the position to sell, above 0 and up to 1
+     * @param price     the price per unit
+     * @param selection the method used to choose the lots
+     * @return the result of the sale
+     */
+    public SaleResult sellFraction(String symbol, double fraction, double price, LotSelection selection) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Fraction must be above 0 and at most 1.");
+        }
+        Investment investment = read(validateSymbol(symbol));
+        if (investment == null) {
+            throw new IllegalArgumentException("Investment not found: " + symbol);
+        }
+        return sell(symbol, (int) (investment.getQuantity() * fraction), price, selection);
+    }
+
+    /**
+     * Moves the price of a position in the fork.
+     *
+     * @param symbol   the symbol of the investment
+     * @param newPrice the new price
+     */
+    public void updatePrice(String symbol, double newPrice) {
+        String validSymbol = validateSymbol(symbol);
+        Investment investment = forWrite(validSymbol);
+        if (investment == null) {
+            throw new IllegalArgumentException("Investment not found: " + symbol);
+        }
+        addContribution(investment, -1);
+        try {
+            investment.updatePrice(newPrice);
+        } finally {
+            addContribution(investment, 1);
+        }
+        orders.add(new TradeOrder(validSymbol, newPrice));
+    }
+
+    /**
+     * Returns a copy of a position as it stands in the fork.
+     *
+     * @param symbol the symbol of the investment
+     * @return a copy of the position, or null if the fork does not hold it
+     */
+    public Investment findInvestment(String symbol) {
+        Investment investment = read(symbol);
+        return investment == null ? null : investment.getInstrumentType().copy(investment);
+    }
+
+    /**
+     * Returns the unrealized gain of all positions in the fork.
+     *
+     * @return the total gain
+     */
+    public double getTotalGain() {
+        return base.getTotalGain() + totalGainChange;
+    }
+
+    /**
+     * Returns the market value of all positions in the fork.
+     *
+     * @return the market value
+     */
+    public double getMarketValue() {
+        return base.getMarketValue() + marketValueChange;
+    }
+
+    /**
+     * Returns the gain realized by the sales made in the fork.
+     *
+     * @return the realized gain
+     */
+    public double getRealizedGain() {
+        return realizedGain;
+    }
+
+    /**
+     * Returns the symbols of the positions the fork changed, added or sold out.
+     *
+     * @return the changed symbols
+     */
+    public Set<String> getChangedSymbols() {
+        return Collections.unmodifiableSet(changed.keySet());
+    }
+
+    /**
+     * Returns the number of positions held in the fork.
+     *
+     * @return the number of positions
+     */
+    public int getPositionCount() {
+        int count = base.getPositionCount();
+        for (Map.Entry<String, Investment> entry : changed.entrySet()) {
+            boolean inBook = base.getPosition(entry.getKey()) != null;
+            boolean held = entry.getValue() != null;
+            count += (held ? 1 : 0) - (inBook ? 1 : 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the orders made in the fork, in the order they were made.
+     *
+     * @return the orders
+     */
+    public List<TradeOrder> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    /**
+     * Applies the orders made in the fork to a portfolio, in the order they
+     * were made, through {@link Portfolio#applyOrders(List)}. The portfolio
+     * should be the one the fork was taken from. Every order is checked
+     * against it before any is applied, so if one is invalid the portfolio is
+     * left unchanged.
+     *
+     * @param portfolio the portfolio to trade
+     * @throws IllegalArgumentException if an order is invalid against the
+     *                                  portfolio
+     */
+    public void commitTo(Portfolio portfolio) {
+        portfolio.applyOrders(orders);
+    }
+
+    /**
+     * Finds a position as it stands in the fork without copying it.
+     *
+     * @param symbol the symbol of the investment
+     * @return the position, or null if the fork does not hold it
+     */
+    private Investment read(String symbol) {
+        return changed.containsKey(symbol) ? changed.get(symbol) : base.getPosition(symbol);
+    }
+
+    /**
+     * Finds a position for changing, copying it from the book the first time.
+     *
+     * @param symbol the symbol of the investment
+     * @return the fork's own copy of the position, or null if the fork does not
+     *         hold it
+     */
+    private Investment forWrite(String symbol) {
+        if (changed.containsKey(symbol)) {
+            return changed.get(symbol);
+        }
+        Investment original = base.getPosition(symbol);
+        if (original == null) {
+            return null;
+        }
+        Investment copy = original.getInstrumentType().copy(original);
+        changed.put(symbol, copy);
+        return copy;
+    }
+
+    /**
+     * Validates a symbol with the same rule as the portfolio.
+     *
+     * @param symbol the symbol to validate
+     * @return the validated symbol in uppercase
+     * @throws IllegalArgumentException if the symbol is invalid
+     */
+    private static String validateSymbol(String symbol) {
+        if (symbol == null || !SYMBOL.matcher(symbol).matches()) {
+            throw new IllegalArgumentException("Invalid symbol format. Symbols must be alphanumeric and uppercase.");
+        }
+        return symbol.toUpperCase();
+    }
+
+    /**
+     * Adds or removes a position's share of the gain and market value.
+     *
+     * @param investment the position
+     * @param sign       1 to add its share, -1 to remove it
+     */
+    private void addContribution(Investment investment, int sign) {
+        totalGainChange += sign * investment.calculateGain();
+        marketValueChange += sign * investment.getQuantity() * investment.getPrice();
+    }
+}
@@ -0,0 +1,401 @@
+package ePortfolio;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The PortfolioIndexFile class stores the symbol and keyword indexes of a
+ * portfolio in a file next to its data file, so that a large book can be
+ * searched as soon as it is loaded instead of after its indexes are rebuilt.
+ * The file is memory-mapped and read in place: symbols and keywords are found
+ * by probing hash tables in the mapped bytes, and nothing is decoded until it
+ * is looked up.
+ * <p>
+ * The file starts with a header holding a magic number, a format version, the
+ * length and CRC-32C checksum of the data file it indexes and a CRC-32C
+ * checksum of the rest of the index file. An index file is only used if all
+ * of these match, so an index left behind by an older data file, or a damaged
+ * one, is ignored. All numbers are big-endian. After the header come:
+ * <ul>
+ * <li>the symbol table: one int per slot, holding a position plus one, or
+ * zero for an empty slot. The symbols themselves are not stored, since the
+ * investment at a position holds its own symbol;</li>
+ * <li>the keyword table: one int per slot, holding a keyword number plus one,
+ * or zero for an empty slot;</li>
+ * <li>the keyword entries: four ints per keyword, the offset and length of its
+ * UTF-8 bytes and the offset and count of its positions;</li>
+ * <li>the positions of every keyword in ascending order;</li>
+ * <li>the UTF-8 bytes of every keyword.</li>
+ * </ul>
+ * Both tables use linear probing from the {@link String#hashCode()} of the
+ * symbol or keyword, which is the same on every JVM. A PortfolioIndexFile is
+ * immutable and safe to read from several threads.
+ */
+class PortfolioIndexFile {
+    private static final int MAGIC = 0x45504958; // "EPIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 56;
+    private static final int ENTRY_SIZE = 16;
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private final MappedByteBuffer buffer;
+    private final int recordCount;
+    private final int symbolMask;
+    private final int keywordMask;
+    private final int keywordCount;
+    private final int keywordTableOffset;
+    private final int entriesOffset;
+    private final int postingsOffset;
+    private final int stringsOffset;
+
+    private PortfolioIndexFile(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        recordCount = buffer.getInt(24);
+        int symbolSlots = buffer.getInt(28);
+        int keywordSlots = buffer.getInt(32);
+        keywordCount = buffer.getInt(36);
+        int postingCount = buffer.getInt(40);
+        symbolMask = symbolSlots - 1;
+        keywordMask = keywordSlots - 1;
+        keywordTableOffset = HEADER_SIZE + symbolSlots * 4;
+        entriesOffset = keywordTableOffset + keywordSlots * 4;
+        postingsOffset = entriesOffset + keywordCount * ENTRY_SIZE;
+        stringsOffset = postingsOffset + postingCount * 4;
+    }
+
+    /**
+     * Returns the index file that belongs to a data file, which has the same
+     * name with .idx appended.
+     *
+     * @param dataFile the data file
+     * @return the index file
+     */
+    static File indexFileFor(File dataFile) {
+        return new File(dataFile.getPath() + ".idx");
+    }
+
+    /**
+     * Maps the index file of a data file if it exists and is valid for the
+     * data file as it is now.
+     *
+     * @param dataFile the data file
+     * @return the index, or null if there is no valid index file
+     */
+    static PortfolioIndexFile open(File dataFile) {
+        File indexFile = indexFileFor(dataFile);
+        if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE || indexFile.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != dataFile.length() || !hasValidLayout(buffer)) {
+                return null;
+            }
+            // The cheap checks passed, so the checksums are worth computing
+            CRC32C body = new CRC32C();
+            body.update(buffer.duplicate().position(HEADER_SIZE));
+            if (buffer.getLong(48) != body.getValue() || buffer.getLong(16) != checksum(dataFile)) {
+                return null;
+            }
+            return new PortfolioIndexFile(buffer);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that the table sizes in the header are powers of two and that
+     * the sections they describe fill the file exactly.
+     */
+    private static boolean hasValidLayout(ByteBuffer buffer) {
+        int symbolSlots = buffer.getInt(28);
+        int keywordSlots = buffer.getInt(32);
+        int keywordCount = buffer.getInt(36);
+        int postingCount = buffer.getInt(40);
+        int stringBytes = buffer.getInt(44);
+        if (Integer.bitCount(symbolSlots) != 1 || Integer.bitCount(keywordSlots) != 1 || keywordCount < 0
+                || postingCount < 0 || stringBytes < 0 || buffer.getInt(24) < 0) {
+            return false;
+        }
+        long size = HEADER_SIZE + 4L * symbolSlots + 4L * keywordSlots + (long) ENTRY_SIZE * keywordCount
+                + 4L * postingCount + stringBytes;
+        return size == buffer.capacity();
+    }
+
+    /**
+     * Computes the CRC-32C checksum of a file, mapping it a gigabyte at a
+     * time.
+     *
+     * @param file the file
+     * @return the checksum
+     * @throws IOException if the file cannot be read
+     */
+    static long checksum(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_WINDOW, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the index file of a data file from in-memory indexes. The file
+     * is written under a temporary name and then moved into place, so an
+     * index that is mapped by a portfolio is never changed underneath it.
+     *
+     * @param dataFile    the data file, already written
+     * @param investments the investments in the order of the data file
+     * @param keywords    the positions of each keyword, in ascending order
+     * @throws IOException if the file cannot be written
+     */
+    static void write(File dataFile, List<Investment> investments, Map<String, List<Integer>> keywords)
+            throws IOException {
+        int symbolSlots = tableSize(investments.size());
+        int[] symbolTable = new int[symbolSlots];
+        for (int position = 0; position < investments.size(); position++) {
+            int slot = slot(investments.get(position).getSymbol().hashCode(), symbolSlots - 1);
+            while (symbolTable[slot] != 0) {
+                slot = (slot + 1) & (symbolSlots - 1);
+            }
+            symbolTable[slot] = position + 1;
+        }
+
+        String[] names = keywords.keySet().toArray(new String[0]);
+        byte[][] bytes = new byte[names.length][];
+        int keywordSlots = tableSize(names.length);
+        int[] keywordTable = new int[keywordSlots];
+        long postingCount = 0;
+        long stringBytes = 0;
+        for (int id = 0; id < names.length; id++) {
+            int slot = slot(names[id].hashCode(), keywordSlots - 1);
+            while (keywordTable[slot] != 0) {
+                slot = (slot + 1) & (keywordSlots - 1);
+            }
+            keywordTable[slot] = id + 1;
+            bytes[id] = names[id].getBytes(StandardCharsets.UTF_8);
+            postingCount += keywords.get(names[id]).size();
+            stringBytes += bytes[id].length;
+        }
+        long size = HEADER_SIZE + 4L * symbolSlots + 4L * keywordSlots + (long) ENTRY_SIZE * names.length
+                + 4 * postingCount + stringBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Index of " + investments.size() + " investments is too large to map.");
+        }
+
+        File indexFile = indexFileFor(dataFile);
+        File temporary = new File(indexFile.getPath() + ".tmp");
+        CRC32C body = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), body), 65536));
+            for (int value : symbolTable) {
+                out.writeInt(value);
+            }
+            for (int value : keywordTable) {
+                out.writeInt(value);
+            }
+            int postingOffset = 0;
+            int stringOffset = 0;
+            for (int id = 0; id < names.length; id++) {
+                int count = keywords.get(names[id]).size();
+                out.writeInt(stringOffset);
+                out.writeInt(bytes[id].length);
+                out.writeInt(postingOffset);
+                out.writeInt(count);
+                stringOffset += bytes[id].length;
+                postingOffset += count;
+            }
+            for (String name : names) {
+                for (int position : keywords.get(name)) {
+                    out.writeInt(position);
+                }
+            }
+            for (byte[] keyword : bytes) {
+                out.write(keyword);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(dataFile.length()).putLong(checksum(dataFile))
+                    .putInt(investments.size()).putInt(symbolSlots).putInt(keywordSlots).putInt(names.length)
+                    .putInt((int) postingCount).putInt((int) stringBytes).putLong(body.getValue()).flip();
+            channel.write(header, 0);
+        }
+        move(temporary, indexFile);
+    }
+
+    /**
+     * Writes the index file of another data file holding the same investments
+     * in the same order, copying this index with a new header.
+     *
+     * @param dataFile the data file, already written
+     * @throws IOException if the file cannot be written
+     */
+    void copyTo(File dataFile) throws IOException {
+        File indexFile = indexFileFor(dataFile);
+        File temporary = new File(indexFile.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = buffer.duplicate().limit(HEADER_SIZE).slice();
+            ByteBuffer copy = ByteBuffer.allocate(HEADER_SIZE).put(header).flip();
+            copy.putLong(8, dataFile.length()).putLong(16, checksum(dataFile));
+            channel.write(copy, 0);
+            channel.write(buffer.duplicate().position(HEADER_SIZE), HEADER_SIZE);
+        }
+        move(temporary, indexFile);
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the number of investments indexed.
+     *
+     * @return the number of investments
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of distinct keywords indexed.
+     *
+     * @return the number of keywords
+     */
+    int getKeywordCount() {
+        return keywordCount;
+    }
+
+    /**
+     * Finds the position of a symbol.
+     *
+     * @param symbol      the symbol, in upper case
+     * @param investments the investments this index was built for
+     * @return the position of the investment, or -1 if not found
+     */
+    int findSymbol(String symbol, List<Investment> investments) {
+        int offset = HEADER_SIZE;
+        for (int slot = slot(symbol.hashCode(), symbolMask);; slot = (slot + 1) & symbolMask) {
+            int position = buffer.getInt(offset + slot * 4) - 1;
+            if (position < 0) {
+                return -1;
+            }
+            if (position < investments.size() && investments.get(position).getSymbol().equals(symbol)) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Finds the positions of the investments whose name contains a keyword.
+     *
+     * @param keyword the keyword, in lower case
+     * @return the positions in ascending order, read from the mapped file
+     */
+    List<Integer> findKeyword(String keyword) {
+        byte[] wanted = keyword.getBytes(StandardCharsets.UTF_8);
+        for (int slot = slot(keyword.hashCode(), keywordMask);; slot = (slot + 1) & keywordMask) {
+            int id = buffer.getInt(keywordTableOffset + slot * 4) - 1;
+            if (id < 0) {
+                return Collections.emptyList();
+            }
+            int entry = entriesOffset + id * ENTRY_SIZE;
+            if (bytesEqual(stringsOffset + buffer.getInt(entry), buffer.getInt(entry + 4), wanted)) {
+                return new Postings(postingsOffset + buffer.getInt(entry + 8) * 4, buffer.getInt(entry + 12));
+            }
+        }
+    }
+
+    private boolean bytesEqual(int offset, int length, byte[] wanted) {
+        if (length != wanted.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of slots for a hash table of a number of keys, a
+     * power of two at most half full.
+     */
+    private static int tableSize(int keys) {
+        return Integer.highestOneBit(Math.max(1, keys) * 2 - 1) << 1;
+    }
+
+    private static int slot(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * The Postings class is a read-only view of the positions of one keyword
+     * in the mapped file. Since the positions are sorted, a lookup is a binary
+     * search.
+     */
+    private class Postings extends AbstractList<Integer> implements RandomAccess {
+        private final int offset;
+        private final int size;
+
+        Postings(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            Objects.checkIndex(index, size);
+            return buffer.getInt(offset + index * 4);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            if (!(value instanceof Integer)) {
+                return false;
+            }
+            int target = (Integer) value;
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int position = buffer.getInt(offset + middle * 4);
+                if (position < target) {
+                    low = middle + 1;
+                } else if (position > target) {
+                    high = middle - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
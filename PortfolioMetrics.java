@@ -0,0 +1,305 @@
+package ePortfolio;
+
+import javax.management.*;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The PortfolioMetrics class collects operation counts, error counts and
+ * latency histograms for the operations of a Portfolio, along with index size
+ * gauges and load/save throughput.
+ * Recording only updates atomic counters and never allocates, so the metrics
+ * can stay enabled in production. They can be read through JMX or dumped as
+ * text periodically.
+ */
+public class PortfolioMetrics implements PortfolioMetricsMXBean {
+    /**
+     * The instrumented operations of a Portfolio.
+     */
+    public enum Operation {
+        BUY, SELL, SEARCH, UPDATE_PRICE, LOAD, SAVE, MERGE
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final AtomicLongArray errors = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLong loadedRecords = new AtomicLong();
+    private final AtomicLong loadedBytes = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final AtomicLong savedRecords = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+    private final AtomicLong saveNanos = new AtomicLong();
+    private final IntSupplier investmentCount;
+    private final IntSupplier keywordIndexSize;
+    private final IntSupplier symbolIndexSize;
+    private ScheduledExecutorService dumpExecutor;
+
+    /**
+     * Constructs PortfolioMetrics with gauges read from the portfolio.
+     *
+     * @param investmentCount  supplies the number of investments held
+     * @param keywordIndexSize supplies the number of keywords indexed
+     * @param symbolIndexSize  supplies the number of symbols indexed
+     */
+    public PortfolioMetrics(IntSupplier investmentCount, IntSupplier keywordIndexSize, IntSupplier symbolIndexSize) {
+        this.investmentCount = investmentCount;
+        this.keywordIndexSize = keywordIndexSize;
+        this.symbolIndexSize = symbolIndexSize;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the latency of a completed operation.
+     *
+     * @param operation the operation
+     * @param nanos     the latency in nanoseconds
+     */
+    public void record(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records a failed operation.
+     *
+     * @param operation the operation
+     */
+    public void recordError(Operation operation) {
+        errors.incrementAndGet(operation.ordinal());
+    }
+
+    /**
+     * Records the volume of a completed file load.
+     *
+     * @param records the number of investments read
+     * @param bytes   the size of the file
+     * @param nanos   the time taken
+     */
+    public void recordLoad(long records, long bytes, long nanos) {
+        loadedRecords.addAndGet(records);
+        loadedBytes.addAndGet(bytes);
+        loadNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records the volume of a completed file save.
+     *
+     * @param records the number of investments written
+     * @param bytes   the size of the file
+     * @param nanos   the time taken
+     */
+    public void recordSave(long records, long bytes, long nanos) {
+        savedRecords.addAndGet(records);
+        savedBytes.addAndGet(bytes);
+        saveNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation the operation
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            counts.put(operation.name(), latencies[operation.ordinal()].getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            counts.put(operation.name(), errors.get(operation.ordinal()));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMicros() {
+        return latencyMicros(LatencyHistogram::getMean);
+    }
+
+    @Override
+    public Map<String, Double> getP50LatencyMicros() {
+        return latencyMicros(histogram -> histogram.getValueAtPercentile(50));
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMicros() {
+        return latencyMicros(histogram -> histogram.getValueAtPercentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getP999LatencyMicros() {
+        return latencyMicros(histogram -> histogram.getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public Map<String, Double> getMaxLatencyMicros() {
+        return latencyMicros(LatencyHistogram::getMax);
+    }
+
+    @Override
+    public int getInvestmentCount() {
+        return investmentCount.getAsInt();
+    }
+
+    @Override
+    public int getKeywordIndexSize() {
+        return keywordIndexSize.getAsInt();
+    }
+
+    @Override
+    public int getSymbolIndexSize() {
+        return symbolIndexSize.getAsInt();
+    }
+
+    @Override
+    public long getLoadedRecords() {
+        return loadedRecords.get();
+    }
+
+    @Override
+    public long getLoadedBytes() {
+        return loadedBytes.get();
+    }
+
+    @Override
+    public double getLoadRecordsPerSecond() {
+        return perSecond(loadedRecords.get(), loadNanos.get());
+    }
+
+    @Override
+    public long getSavedRecords() {
+        return savedRecords.get();
+    }
+
+    @Override
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    @Override
+    public double getSaveRecordsPerSecond() {
+        return perSecond(savedRecords.get(), saveNanos.get());
+    }
+
+    /**
+     * Formats all metrics as text, one line per operation followed by the
+     * gauges and throughput figures.
+     *
+     * @return the formatted metrics
+     */
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-13s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "count", "errors",
+                "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            text.append(String.format("%-13s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation.name(),
+                    histogram.getCount(), errors.get(operation.ordinal()), histogram.getMean() / 1e3,
+                    histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+                    histogram.getValueAtPercentile(99.9) / 1e3, histogram.getMax() / 1e3));
+        }
+        text.append(String.format("investments: %d, keywords indexed: %d, symbols indexed: %d%n",
+                getInvestmentCount(), getKeywordIndexSize(), getSymbolIndexSize()));
+        text.append(String.format("loaded: %d records, %d bytes, %.0f records/s%n", getLoadedRecords(),
+                getLoadedBytes(), getLoadRecordsPerSecond()));
+        text.append(String.format("saved: %d records, %d bytes, %.0f records/s%n", getSavedRecords(),
+                getSavedBytes(), getSaveRecordsPerSecond()));
+        return text.toString();
+    }
+
+    /**
+     * Clears all counters and histograms.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].reset();
+            errors.set(i, 0);
+        }
+        loadedRecords.set(0);
+        loadedBytes.set(0);
+        loadNanos.set(0);
+        savedRecords.set(0);
+        savedBytes.set(0);
+        saveNanos.set(0);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name the name distinguishing this portfolio's metrics
+     * @return the object name the metrics were registered under
+     * @throws JMException if registration fails
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("ePortfolio:type=PortfolioMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Starts printing the metrics dump to a stream at a fixed interval.
+     *
+     * @param out    the stream to print to
+     * @param period the interval between dumps
+     * @param unit   the unit of the interval
+     */
+    public synchronized void startPeriodicDump(PrintStream out, long period, TimeUnit unit) {
+        stopPeriodicDump();
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+
+    /**
+     * Stops the periodic metrics dump, if one is running.
+     */
+    public synchronized void stopPeriodicDump() {
+        if (dumpExecutor != null) {
+            dumpExecutor.shutdownNow();
+            dumpExecutor = null;
+        }
+    }
+
+    /**
+     * Builds a map of one latency statistic per operation, in microseconds.
+     *
+     * @param statistic the statistic to read from each histogram, in nanoseconds
+     * @return a map from operation name to the statistic in microseconds
+     */
+    private Map<String, Double> latencyMicros(ToDoubleFunction<LatencyHistogram> statistic) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            values.put(operation.name(), statistic.applyAsDouble(latencies[operation.ordinal()]) / 1e3);
+        }
+        return values;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count / (nanos / 1e9);
+    }
+}
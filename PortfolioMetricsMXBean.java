@@ -0,0 +1,45 @@
+package ePortfolio;
+
+import java.util.Map;
+
+/**
+ * The PortfolioMetricsMXBean interface is the JMX management interface of
+ * PortfolioMetrics. Maps are keyed by operation name.
+ */
+public interface PortfolioMetricsMXBean {
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    Map<String, Double> getMeanLatencyMicros();
+
+    Map<String, Double> getP50LatencyMicros();
+
+    Map<String, Double> getP99LatencyMicros();
+
+    Map<String, Double> getP999LatencyMicros();
+
+    Map<String, Double> getMaxLatencyMicros();
+
+    int getInvestmentCount();
+
+    int getKeywordIndexSize();
+
+    int getSymbolIndexSize();
+
+    long getLoadedRecords();
+
+    long getLoadedBytes();
+
+    double getLoadRecordsPerSecond();
+
+    long getSavedRecords();
+
+    long getSavedBytes();
+
+    double getSaveRecordsPerSecond();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,267 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * The PortfolioRegistry class manages many client accounts, each backed by its
+ * own Portfolio.
+ * Accounts are sharded across a fixed number of worker threads. Every shard
+ * owns a single-writer executor, so a Portfolio is only ever touched by the
+ * thread of its shard and needs no locking.
+ * Firm-wide queries fan out to all shards in parallel and merge the partial
+ * results.
+ */
+public class PortfolioRegistry implements AutoCloseable {
+    private final Shard[] shards;
+
+    /**
+     * Constructs a registry with one shard per available processor.
+     */
+    public PortfolioRegistry() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a registry with the given number of shards.
+     *
+     * @param shardCount the number of shards (worker threads)
+     */
+    public PortfolioRegistry(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be greater than zero.");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * Creates a new, empty account.
+     *
+     * @param accountId the identifier of the account
+     * @return a future completing once the account exists
+     * @throws IllegalArgumentException if the account id is null or empty
+     */
+    public CompletableFuture<Void> createAccount(String accountId) {
+        String id = validateAccountId(accountId);
+        Shard shard = shardFor(id);
+        return CompletableFuture.runAsync(() -> {
+            if (shard.accounts.putIfAbsent(id, new Portfolio()) != null) {
+                throw new IllegalArgumentException("Account " + id + " already exists.");
+            }
+        }, shard.executor);
+    }
+
+    /**
+     * Removes an account and closes its portfolio.
+     *
+     * @param accountId the identifier of the account
+     * @return a future completing with true if the account existed
+     */
+    public CompletableFuture<Boolean> removeAccount(String accountId) {
+        String id = validateAccountId(accountId);
+        Shard shard = shardFor(id);
+        return CompletableFuture.supplyAsync(() -> {
+            Portfolio portfolio = shard.accounts.remove(id);
+            if (portfolio == null) {
+                return false;
+            }
+            portfolio.close();
+            return true;
+        }, shard.executor);
+    }
+
+    /**
+     * Runs an action against the portfolio of an account on the thread that owns
+     * it. All actions for the same account are applied in submission order.
+     *
+     * @param accountId the identifier of the account
+     * @param action    the action to run against the account's portfolio
+     * @param <T>       the result type of the action
+     * @return a future completing with the result of the action
+     */
+    public <T> CompletableFuture<T> submit(String accountId, Function<Portfolio, T> action) {
+        String id = validateAccountId(accountId);
+        Shard shard = shardFor(id);
+        return CompletableFuture.supplyAsync(() -> {
+            Portfolio portfolio = shard.accounts.get(id);
+            if (portfolio == null) {
+                throw new IllegalArgumentException("Account " + id + " not found.");
+            }
+            return action.apply(portfolio);
+        }, shard.executor);
+    }
+
+    /**
+     * Buys an investment for an account.
+     *
+     * @param accountId the identifier of the account
+     * @param type      the instrument type of the investment, such as stock
+     * @param symbol    the symbol of the investment
+     * @param name      the name of the investment
+     * @param quantity  the quantity to buy
+     * @param price     the price of the investment
+     * @return a future completing once the purchase has been applied
+     */
+    public CompletableFuture<Void> buyInvestment(String accountId, String type, String symbol, String name,
+            int quantity, double price) {
+        return submit(accountId, portfolio -> {
+            portfolio.buyInvestment(type, symbol, name, quantity, price);
+            return null;
+        });
+    }
+
+    /**
+     * Sells an investment for an account.
+     *
+     * @param accountId the identifier of the account
+     * @param symbol    the symbol of the investment
+     * @param quantity  the quantity to sell
+     * @param price     the price of the investment
+     * @return a future completing with the proceeds from the sale
+     */
+    public CompletableFuture<Double> sellInvestment(String accountId, String symbol, int quantity, double price) {
+        return submit(accountId, portfolio -> portfolio.sellInvestment(symbol, quantity, price));
+    }
+
+    /**
+     * Returns the number of accounts across all shards.
+     *
+     * @return the number of accounts
+     */
+    public int getAccountCount() {
+        return mapShards(shard -> shard.accounts.size()).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Calculates the total gain across every account in the firm. Each shard sums
+     * its own accounts in parallel with the others.
+     *
+     * @return the firm-wide total gain
+     */
+    public double getFirmWideGain() {
+        List<Double> partials = mapShards(shard -> {
+            double gain = 0;
+            for (Portfolio portfolio : shard.accounts.values()) {
+                gain += portfolio.getTotalGain();
+            }
+            return gain;
+        });
+        double total = 0;
+        for (double partial : partials) {
+            total += partial;
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the firm-wide market value held in each symbol. Each shard
+     * builds a partial map in parallel and the partial maps are merged.
+     *
+     * @return a map from symbol to total market value across all accounts
+     */
+    public Map<String, Double> getExposureBySymbol() {
+        List<Map<String, Double>> partials = mapShards(shard -> {
+            Map<String, Double> exposure = new HashMap<>();
+            for (Portfolio portfolio : shard.accounts.values()) {
+                for (Investment investment : portfolio.getInvestments()) {
+                    exposure.merge(investment.getSymbol(), investment.getQuantity() * investment.getPrice(),
+                            Double::sum);
+                }
+            }
+            return exposure;
+        });
+        Map<String, Double> merged = new TreeMap<>();
+        for (Map<String, Double> partial : partials) {
+            partial.forEach((symbol, value) -> merged.merge(symbol, value, Double::sum));
+        }
+        return merged;
+    }
+
+    /**
+     * Shuts down all shard executors after the already submitted work completes,
+     * then closes every account's portfolio.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        for (Shard shard : shards) {
+            for (Portfolio portfolio : shard.accounts.values()) {
+                portfolio.close();
+            }
+        }
+    }
+
+    /**
+     * Runs a function on every shard's own thread and waits for all the results.
+     *
+     * @param function the function to run per shard
+     * @param <T>      the result type of the function
+     * @return the results in shard order
+     */
+    private <T> List<T> mapShards(Function<Shard, T> function) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> function.apply(shard), shard.executor));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Finds the shard responsible for an account.
+     *
+     * @param accountId the identifier of the account
+     * @return the shard owning the account
+     */
+    private Shard shardFor(String accountId) {
+        return shards[Math.floorMod(accountId.hashCode(), shards.length)];
+    }
+
+    /**
+     * Validates an account identifier.
+     *
+     * @param accountId the account id to validate
+     * @return the trimmed account id
+     * @throws IllegalArgumentException if the account id is null or empty
+     */
+    private String validateAccountId(String accountId) {
+        if (accountId == null || accountId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Account id cannot be null or empty.");
+        }
+        return accountId.trim();
+    }
+
+    /**
+     * A shard owns a group of accounts and the single thread allowed to touch
+     * them.
+     */
+    private static final class Shard {
+        private final Map<String, Portfolio> accounts = new HashMap<>();
+        private final ExecutorService executor;
+
+        private Shard(int id) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "portfolio-shard-" + id);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
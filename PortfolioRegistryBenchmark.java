@@ -0,0 +1,76 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The PortfolioRegistryBenchmark class measures how the PortfolioRegistry
+ * scales from 10 to 10,000 accounts.
+ * For each account count it times loading the accounts, the firm-wide gain
+ * query and the per-symbol exposure query.
+ */
+public class PortfolioRegistryBenchmark {
+    private static final int[] ACCOUNT_COUNTS = { 10, 100, 1_000, 10_000 };
+    private static final int POSITIONS_PER_ACCOUNT = 20;
+    private static final int SYMBOL_COUNT = 500;
+    private static final int QUERY_ROUNDS = 20;
+
+    /**
+     * Runs the benchmark and prints one line per account count.
+     *
+     * @param args optional shard count as the first argument
+     */
+    public static void main(String[] args) {
+        int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        System.out.printf("shards=%d positions/account=%d%n", shardCount, POSITIONS_PER_ACCOUNT);
+        System.out.printf("%10s %12s %14s %18s%n", "accounts", "load ms", "gain ms/query", "exposure ms/query");
+
+        for (int accounts : ACCOUNT_COUNTS) {
+            try (PortfolioRegistry registry = new PortfolioRegistry(shardCount)) {
+                long start = System.nanoTime();
+                populate(registry, accounts);
+                double loadMillis = (System.nanoTime() - start) / 1e6;
+
+                // Warm up before measuring the queries
+                registry.getFirmWideGain();
+                registry.getExposureBySymbol();
+
+                start = System.nanoTime();
+                for (int i = 0; i < QUERY_ROUNDS; i++) {
+                    registry.getFirmWideGain();
+                }
+                double gainMillis = (System.nanoTime() - start) / 1e6 / QUERY_ROUNDS;
+
+                start = System.nanoTime();
+                for (int i = 0; i < QUERY_ROUNDS; i++) {
+                    registry.getExposureBySymbol();
+                }
+                double exposureMillis = (System.nanoTime() - start) / 1e6 / QUERY_ROUNDS;
+
+                System.out.printf("%10d %12.1f %14.3f %18.3f%n", accounts, loadMillis, gainMillis, exposureMillis);
+            }
+        }
+    }
+
+    /**
+     * Creates the accounts and fills each one with positions.
+     *
+     * @param registry the registry to populate
+     * @param accounts the number of accounts to create
+     */
+    private static void populate(PortfolioRegistry registry, int accounts) {
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int a = 0; a < accounts; a++) {
+            String accountId = "ACCT" + a;
+            registry.createAccount(accountId);
+            for (int p = 0; p < POSITIONS_PER_ACCOUNT; p++) {
+                int s = (a * 31 + p * 7) % SYMBOL_COUNT;
+                String type = s % 2 == 0 ? "stock" : "mutualfund";
+                pending.add(registry.buyInvestment(accountId, type, "SYM" + s, "Company " + s,
+                        10 + p, 10.0 + s % 90));
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+}
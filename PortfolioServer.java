@@ -0,0 +1,498 @@
+package ePortfolio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The PortfolioServer class serves a portfolio over HTTP with JSON responses.
+ * <ul>
+ * <li>GET /positions lists every position, and GET /positions/SYMBOL one.</li>
+ * <li>GET /search?symbol=&amp;keywords=&amp;price= lists the positions that
+ * match, with the same criteria as the search window.</li>
+ * <li>GET /gain returns the total gain and market value, overall and per
+ * instrument type.</li>
+ * <li>POST /trades buys or sells, with form fields side (buy or sell), type,
+ * symbol, name, quantity and price.</li>
+ * </ul>
+ * Requests run on a fixed pool of worker threads. Reads share a read lock and
+ * run concurrently; trades take the write lock, so a response never sees a
+ * trade half applied. No response is written to the socket while the lock is
+ * held, so a slow client never holds up trades or the reads queued behind
+ * them. Lists of positions copy the fields of the matching positions into
+ * columns under the lock and stream JSON from the columns once it is
+ * released, so the book is never held serialized in memory; other responses
+ * are small and are rendered into memory under the lock.
+ * Once a portfolio is served, every other change to it must go through
+ * {@link #update(Function)} so that it takes the same lock.
+ * <p>
+ * The JDK server writes the headers and the body of a response separately.
+ * Unless the process runs with {@code -Dsun.net.httpserver.nodelay=true},
+ * the body then waits on the client's delayed acknowledgement of the headers,
+ * which adds about 40 ms to every response. The property applies to every
+ * HttpServer in the process, so only {@link #main(String[])} sets it.
+ */
+public class PortfolioServer implements AutoCloseable {
+    private static final int BACKLOG = 4096;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final Portfolio portfolio;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    /**
+     * Constructs a PortfolioServer with one worker thread per available
+     * processor, times four since workers spend much of their time writing to
+     * slow connections. The server does not accept requests until started.
+     *
+     * @param portfolio the portfolio to serve
+     * @param port      the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public PortfolioServer(Portfolio portfolio, int port) throws IOException {
+        this(portfolio, port, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Constructs a PortfolioServer with a given number of worker threads. The
+     * server does not accept requests until started.
+     *
+     * @param portfolio   the portfolio to serve
+     * @param port        the port to listen on, or 0 for any free port
+     * @param workerCount the number of worker threads
+     * @throws IOException if the port cannot be bound
+     */
+    public PortfolioServer(Portfolio portfolio, int port, int workerCount) throws IOException {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be greater than zero.");
+        }
+        this.portfolio = portfolio;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(workers);
+        server.createContext("/positions", exchange -> handle(exchange, "GET", this::positions));
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/gain", exchange -> handle(exchange, "GET", this::gain));
+        server.createContext("/trades", exchange -> handle(exchange, "POST", this::trade));
+    }
+
+    /**
+     * Loads a portfolio from a file and serves it until the process is
+     * stopped.
+     *
+     * @param args the portfolio file and, optionally, the port (8080 by
+     *             default)
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: PortfolioServer <portfolio file> [port]");
+            return;
+        }
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+        Portfolio portfolio = new Portfolio();
+        portfolio.loadFromFile(args[0]);
+        PortfolioServer server = new PortfolioServer(portfolio, args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        server.start();
+        System.out.println("Serving " + args[0] + " on port " + server.getPort());
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Changes the served portfolio while holding the write lock, so the change
+     * is never seen half applied by a request.
+     *
+     * @param action the change to make
+     * @param <T>    the result type of the change
+     * @return the result of the change
+     */
+    public <T> T update(Function<Portfolio, T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.apply(portfolio);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for those in progress and
+     * stops the worker threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    /**
+     * A request handler that writes its JSON response body.
+     */
+    private interface Handler {
+        /**
+         * Handles a request.
+         *
+         * @param exchange the request and response
+         * @throws IOException if the response cannot be written
+         */
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * A response body rendered into memory.
+     */
+    private interface Renderer {
+        /**
+         * Writes a response body.
+         *
+         * @param json the writer to write the body to
+         * @return the status of the response
+         * @throws IOException if the body cannot be written
+         */
+        int render(JsonWriter json) throws IOException;
+    }
+
+    /**
+     * Checks the method of a request and runs its handler, turning invalid
+     * requests into error responses.
+     *
+     * @param exchange the request and response
+     * @param method   the method the handler accepts
+     * @param handler  the handler
+     */
+    private void handle(HttpExchange exchange, String method, Handler handler) {
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, "Method not allowed.");
+                return;
+            }
+            handler.handle(exchange);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            // The client went away; there is no one left to tell
+        } catch (RuntimeException e) {
+            System.out.println("Error handling " + exchange.getRequestURI() + ": " + e);
+            sendError(exchange, 500, "Internal error.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void positions(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String symbol = path.length() > "/positions/".length() ? path.substring("/positions/".length()) : null;
+        if (symbol == null) {
+            sendPositions(exchange, action -> portfolio.getInvestments().forEach(action));
+            return;
+        }
+        sendRead(exchange, json -> {
+            Investment investment = portfolio.findInvestment(symbol);
+            if (investment == null) {
+                writeError(json, "Investment not found: " + symbol);
+                return 404;
+            }
+            writePosition(json, investment);
+            return 200;
+        });
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+        sendPositions(exchange, action -> portfolio.forEachMatch(query.getOrDefault("symbol", ""),
+                query.getOrDefault("keywords", ""), query.getOrDefault("price", ""), action));
+    }
+
+    private void gain(HttpExchange exchange) throws IOException {
+        sendRead(exchange, json -> {
+            // The per-type totals are kept up to date by every trade, so no
+            // position has to be visited
+            InstrumentAggregates aggregates = portfolio.getInstrumentAggregates();
+            double totalGain = 0;
+            double marketValue = 0;
+            for (InstrumentType type : InstrumentType.values()) {
+                totalGain += aggregates.getGain(type);
+                marketValue += aggregates.getMarketValue(type);
+            }
+            json.beginObject()
+                    .name("totalGain").value(totalGain)
+                    .name("marketValue").value(marketValue)
+                    .name("positions").value(portfolio.getInvestments().size())
+                    .name("byType").beginObject();
+            for (InstrumentType type : InstrumentType.values()) {
+                if (aggregates.getCount(type) > 0) {
+                    json.name(type.getName()).beginObject()
+                            .name("positions").value(aggregates.getCount(type))
+                            .name("gain").value(aggregates.getGain(type))
+                            .name("marketValue").value(aggregates.getMarketValue(type))
+                            .endObject();
+                }
+            }
+            json.endObject().endObject();
+            return 200;
+        });
+    }
+
+    private void trade(HttpExchange exchange) throws IOException {
+        Map<String, String> form;
+        try (InputStream body = exchange.getRequestBody()) {
+            form = parseForm(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        String side = form.getOrDefault("side", "");
+        String symbol = form.getOrDefault("symbol", "");
+        int quantity = parseInt(form.get("quantity"), "quantity");
+        double price = parseDouble(form.get("price"), "price");
+
+        if (side.equalsIgnoreCase("buy")) {
+            String type = form.getOrDefault("type", "stock");
+            String name = form.getOrDefault("name", "");
+            Investment position = update(portfolio -> {
+                portfolio.buyInvestment(type, symbol, name, quantity, price);
+                return portfolio.findInvestment(symbol);
+            });
+            send(exchange, json -> {
+                writePosition(json, position);
+                return 200;
+            });
+        } else if (side.equalsIgnoreCase("sell")) {
+            SaleResult result = update(portfolio -> portfolio.sellInvestment(symbol, quantity, price,
+                    LotSelection.FIFO));
+            send(exchange, json -> {
+                json.beginObject()
+                        .name("symbol").value(result.getSymbol())
+                        .name("quantity").value(result.getQuantity())
+                        .name("proceeds").value(result.getProceeds())
+                        .name("realizedGain").value(result.getRealizedGain())
+                        .endObject();
+                return 200;
+            });
+        } else {
+            throw new IllegalArgumentException("Side must be buy or sell.");
+        }
+    }
+
+    private static void writePosition(JsonWriter json, Investment investment) throws IOException {
+        json.beginObject()
+                .name("type").value(investment.getInstrumentType().getName())
+                .name("symbol").value(investment.getSymbol())
+                .name("name").value(investment.getName())
+                .name("quantity").value(investment.getQuantity())
+                .name("price").value(investment.getPrice())
+                .name("bookValue").value(investment.getBookValue())
+                .name("gain").value(investment.calculateGain())
+                .endObject();
+    }
+
+    private static void writeError(JsonWriter json, String message) throws IOException {
+        json.beginObject().name("error").value(message).endObject();
+    }
+
+    /**
+     * Copies a list of positions into columns while holding the read lock, then
+     * streams them as a JSON array once the lock is released. The body is sent
+     * chunked, as its length is not known in advance.
+     *
+     * @param exchange the request and response
+     * @param source   passes each position to list to an action
+     */
+    private void sendPositions(HttpExchange exchange, Consumer<Consumer<Investment>> source) throws IOException {
+        PositionColumns positions = new PositionColumns();
+        lock.readLock().lock();
+        try {
+            source.accept(positions);
+        } finally {
+            lock.readLock().unlock();
+        }
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (JsonWriter json = new JsonWriter(exchange.getResponseBody())) {
+            json.beginArray();
+            for (int i = 0; i < positions.size; i++) {
+                positions.write(json, i);
+            }
+            json.endArray();
+        }
+    }
+
+    /**
+     * Renders a response while holding the read lock and sends it once the
+     * lock is released.
+     */
+    private void sendRead(HttpExchange exchange, Renderer renderer) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int status;
+        lock.readLock().lock();
+        try {
+            status = render(body, renderer);
+        } finally {
+            lock.readLock().unlock();
+        }
+        send(exchange, status, body);
+    }
+
+    /**
+     * Renders a response and sends it.
+     */
+    private static void send(HttpExchange exchange, Renderer renderer) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int status = render(body, renderer);
+        send(exchange, status, body);
+    }
+
+    private static int render(ByteArrayOutputStream body, Renderer renderer) throws IOException {
+        JsonWriter json = new JsonWriter(body);
+        int status = renderer.render(json);
+        json.close();
+        return status;
+    }
+
+    /**
+     * Sends the response headers with the length of a rendered body, then the
+     * body.
+     */
+    private static void send(HttpExchange exchange, int status, ByteArrayOutputStream body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, json -> {
+                writeError(json, message);
+                return status;
+            });
+        } catch (IOException | IllegalStateException e) {
+            // Headers were already sent or the client went away
+        }
+    }
+
+    /**
+     * The PositionColumns class holds the fields of a list of positions in
+     * parallel arrays, so a response can be written after the positions have
+     * changed. The strings are shared with the positions, not copied.
+     */
+    private static final class PositionColumns implements Consumer<Investment> {
+        private String[] types = new String[16];
+        private String[] symbols = new String[16];
+        private String[] names = new String[16];
+        private int[] quantities = new int[16];
+        private double[] prices = new double[16];
+        private double[] bookValues = new double[16];
+        private double[] gains = new double[16];
+        private int size;
+
+        @Override
+        public void accept(Investment investment) {
+            if (size == symbols.length) {
+                int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                symbols = Arrays.copyOf(symbols, capacity);
+                names = Arrays.copyOf(names, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                bookValues = Arrays.copyOf(bookValues, capacity);
+                gains = Arrays.copyOf(gains, capacity);
+            }
+            types[size] = investment.getInstrumentType().getName();
+            symbols[size] = investment.getSymbol();
+            names[size] = investment.getName();
+            quantities[size] = investment.getQuantity();
+            prices[size] = investment.getPrice();
+            bookValues[size] = investment.getBookValue();
+            gains[size] = investment.calculateGain();
+            size++;
+        }
+
+        /**
+         * Writes one position as writePosition does.
+         *
+         * @param json  the writer
+         * @param index the index of the position
+         */
+        void write(JsonWriter json, int index) throws IOException {
+            json.beginObject()
+                    .name("type").value(types[index])
+                    .name("symbol").value(symbols[index])
+                    .name("name").value(names[index])
+                    .name("quantity").value(quantities[index])
+                    .name("price").value(prices[index])
+                    .name("bookValue").value(bookValues[index])
+                    .name("gain").value(gains[index])
+                    .endObject();
+        }
+    }
+
+    /**
+     * Parses URL-encoded name=value pairs, as found in a query string or a
+     * form body.
+     *
+     * @param encoded the encoded pairs, or null
+     * @return the decoded values by name
+     */
+    private static Map<String, String> parseForm(String encoded) {
+        Map<String, String> values = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return values;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            values.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    private static int parseInt(String value, String field) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + value);
+        }
+    }
+
+    private static double parseDouble(String value, String field) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid " + field + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package ePortfolio;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The PortfolioServerLoadTest class measures the PortfolioServer under a mix
+ * of concurrent reads and a steady stream of trades, all against localhost.
+ * Every reader holds its own keep-alive connection and sends requests back to
+ * back, spread over the position, search and gain endpoints, while one client
+ * buys and sells as fast as the server accepts the trades. The clients speak
+ * just enough HTTP/1.1 to do this, so that they cost far less than the server
+ * they measure. Latencies are reported per kind of request.
+ */
+public class PortfolioServerLoadTest {
+    private static final int POSITIONS = 5_000;
+    private static final int DEFAULT_CONNECTIONS = 2_000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final String[] READ_NAMES = { "position", "search", "gain" };
+    private static final String[] READ_PATHS = { "/positions/SYM42", "/search?keywords=company%207&price=20-60",
+            "/gain" };
+
+    /**
+     * Runs the load test and prints throughput and latency percentiles.
+     *
+     * @param args optional number of reader connections and duration in
+     *             seconds
+     * @throws Exception if the server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        // The test owns its process, so it can turn off Nagle's algorithm for
+        // the server as PortfolioServer.main does
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+
+        Portfolio portfolio = new Portfolio();
+        for (int i = 0; i < POSITIONS; i++) {
+            portfolio.buyInvestment(i % 2 == 0 ? "stock" : "mutualfund", "SYM" + i, "Company " + i % 100 + " Holdings",
+                    100, 10.0 + i % 90);
+        }
+
+        try (PortfolioServer server = new PortfolioServer(portfolio, 0)) {
+            server.start();
+            int port = server.getPort();
+            LatencyHistogram[] readLatencies = new LatencyHistogram[READ_PATHS.length];
+            for (int kind = 0; kind < readLatencies.length; kind++) {
+                readLatencies[kind] = new LatencyHistogram();
+            }
+            LatencyHistogram tradeLatency = new LatencyHistogram();
+            AtomicLong failures = new AtomicLong();
+            CountDownLatch ready = new CountDownLatch(connections + 1);
+            CountDownLatch go = new CountDownLatch(1);
+            long[] deadline = new long[1];
+
+            Thread[] clients = new Thread[connections + 1];
+            for (int c = 0; c < connections; c++) {
+                int first = c;
+                clients[c] = new Thread(() -> {
+                    try (Client client = new Client(port)) {
+                        ready.countDown();
+                        go.await();
+                        for (int i = first; System.nanoTime() < deadline[0]; i++) {
+                            int kind = i % READ_PATHS.length;
+                            long start = System.nanoTime();
+                            if (client.send("GET", READ_PATHS[kind], null) != 200) {
+                                failures.incrementAndGet();
+                            }
+                            readLatencies[kind].record(System.nanoTime() - start);
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }, "load-reader-" + c);
+            }
+            clients[connections] = new Thread(() -> {
+                try (Client client = new Client(port)) {
+                    ready.countDown();
+                    go.await();
+                    for (int i = 0; System.nanoTime() < deadline[0]; i++) {
+                        String form = i % 2 == 0
+                                ? "side=buy&type=stock&symbol=SYM" + i % POSITIONS + "&name=Company&quantity=10&price=50"
+                                : "side=sell&symbol=SYM" + (i - 1) % POSITIONS + "&quantity=10&price=51";
+                        long start = System.nanoTime();
+                        if (client.send("POST", "/trades", form) != 200) {
+                            failures.incrementAndGet();
+                        }
+                        tradeLatency.record(System.nanoTime() - start);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                }
+            }, "load-trader");
+            for (Thread client : clients) {
+                client.setDaemon(true);
+                client.start();
+            }
+
+            ready.await();
+            long started = System.nanoTime();
+            deadline[0] = started + TimeUnit.SECONDS.toNanos(seconds);
+            go.countDown();
+            for (Thread client : clients) {
+                client.join();
+            }
+            double elapsed = (System.nanoTime() - started) / 1e9;
+
+            System.out.printf("positions=%d connections=%d seconds=%.1f failures=%d%n", POSITIONS, connections,
+                    elapsed, failures.get());
+            System.out.printf("%10s %10s %10s %10s %10s %10s%n", "request", "count", "req/s", "p50 ms", "p99 ms",
+                    "max ms");
+            for (int kind = 0; kind < READ_PATHS.length; kind++) {
+                print(READ_NAMES[kind], readLatencies[kind], elapsed);
+            }
+            print("trade", tradeLatency, elapsed);
+        }
+    }
+
+    private static void print(String name, LatencyHistogram latency, double seconds) {
+        System.out.printf("%10s %10d %10.0f %10.2f %10.2f %10.2f%n", name, latency.getCount(),
+                latency.getCount() / seconds, latency.getValueAtPercentile(50) / 1e6,
+                latency.getValueAtPercentile(99) / 1e6, latency.getMax() / 1e6);
+    }
+
+    /**
+     * A minimal HTTP/1.1 client over one keep-alive connection. It reads the
+     * status and discards the body, which the server sends either chunked or
+     * with a Content-Length.
+     */
+    private static class Client implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        /**
+         * Sends a request and waits for the whole response.
+         *
+         * @param method the request method
+         * @param path   the path and query
+         * @param form   the URL-encoded form body, or null for none
+         * @return the response status
+         */
+        int send(String method, String path, String form) throws IOException {
+            byte[] body = form == null ? new byte[0] : form.getBytes(StandardCharsets.UTF_8);
+            String head = method + " " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                    + (form == null ? "" : "Content-Type: application/x-www-form-urlencoded\r\n")
+                    + "Content-Length: " + body.length + "\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            long contentLength = 0;
+            boolean chunked = false;
+            for (String header; !(header = readLine()).isEmpty();) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Long.parseLong(header.substring(15).trim());
+                } else if (header.regionMatches(true, 0, "Transfer-Encoding:", 0, 18)) {
+                    chunked = header.substring(18).trim().equalsIgnoreCase("chunked");
+                }
+            }
+            if (!chunked) {
+                in.skipNBytes(contentLength);
+                return status;
+            }
+            for (int length; (length = Integer.parseInt(readLine().trim(), 16)) > 0;) {
+                in.skipNBytes(length);
+                readLine();
+            }
+            readLine();
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c; (c = in.read()) != '\n';) {
+                if (c < 0) {
+                    throw new EOFException("Connection closed by server.");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ePortfolio;
+
+/**
+ * The PositionSnapshot class is an immutable record of the state of one
+ * position right after a change. A quantity of zero means the position was
+ * sold out and removed.
+ */
+public class PositionSnapshot {
+    private final long timestamp;
+    private final String type;
+    private final String symbol;
+    private final String name;
+    private final int quantity;
+    private final double price;
+    private final double bookValue;
+
+    /**
+     * Constructs a PositionSnapshot.
+     *
+     * @param timestamp the time of the change in milliseconds since the epoch
+     * @param type      the name of the instrument type, such as stock
+     * @param symbol    the symbol of the investment
+     * @param name      the name of the investment
+     * @param quantity  the quantity held after the change
+     * @param price     the price after the change
+     * @param bookValue the book value after the change
+     */
+    public PositionSnapshot(long timestamp, String type, String symbol, String name, int quantity, double price,
+            double bookValue) {
+        this.timestamp = timestamp;
+        this.type = type;
+        this.symbol = symbol;
+        this.name = name;
+        this.quantity = quantity;
+        this.price = price;
+        this.bookValue = bookValue;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getBookValue() {
+        return bookValue;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Position [Symbol: %s, Name: %s, Quantity: %d, Price: %.2f, Book Value: %.2f]",
+                symbol, name, quantity, price, bookValue);
+    }
+}
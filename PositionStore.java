@@ -0,0 +1,279 @@
+package ePortfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The PositionStore class holds a book of positions outside the Java heap, so
+ * that a book of tens of millions of positions adds nothing for the garbage
+ * collector to trace and its pauses do not grow with the book. Each position
+ * is a fixed-width record of 32 bytes:
+ * <ul>
+ * <li>the symbol id and name id, ints into two {@link StringDictionary
+ * string dictionaries}, so a name shared by many positions is stored once;</li>
+ * <li>the instrument type tag, a byte, followed by three bytes of padding;</li>
+ * <li>the quantity, an int;</li>
+ * <li>the price and book value, doubles.</li>
+ * </ul>
+ * Positions are read and changed through {@link PositionView} flyweights,
+ * which point at one record at a time and allocate nothing except when a
+ * symbol or name is turned into a string.
+ * <p>
+ * A store is either anonymous, in directly allocated memory that is counted
+ * against -XX:MaxDirectMemorySize, or backed by three files in a directory,
+ * which are mapped into memory and can be opened again. A position holds
+ * only its average cost, not its lots or fee models, just as a saved
+ * portfolio file does. Removing a position moves the last position into its
+ * place. A PositionStore is not thread-safe.
+ */
+public class PositionStore implements AutoCloseable {
+    /** The size of a position record in bytes. */
+    public static final int RECORD_SIZE = 32;
+    static final int SYMBOL = 0;
+    static final int NAME = 4;
+    static final int TAG = 8;
+    static final int QUANTITY = 12;
+    static final int PRICE = 16;
+    static final int BOOK_VALUE = 24;
+
+    private static final int MAGIC = 0x45505053; // "EPPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_BLOCK_SHIFT = 24;
+    private static final int STRING_BLOCK_SHIFT = 22;
+
+    private final MemoryArena records;
+    private final StringDictionary symbols;
+    private final StringDictionary names;
+    // Per symbol id, the position holding the symbol plus one, or zero
+    private final MemoryArena positionsBySymbol = MemoryArena.allocate(20);
+    private int count;
+
+    private PositionStore(MemoryArena records, MemoryArena symbolBytes, MemoryArena nameBytes) {
+        this.records = records;
+        ByteBuffer header = records.block(0);
+        if (header.getInt(0) == 0) {
+            header.putInt(0, MAGIC).putInt(4, VERSION);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a position store of version " + VERSION + ".");
+        }
+        count = header.getInt(8);
+        symbols = new StringDictionary(symbolBytes, header.getInt(12), header.getLong(24));
+        names = new StringDictionary(nameBytes, header.getInt(16), header.getLong(32));
+        for (int position = 0; position < count; position++) {
+            positionsBySymbol.putInt(4L * records.getInt(offsetOf(position) + SYMBOL), position + 1);
+        }
+    }
+
+    /**
+     * Creates an empty store in directly allocated memory.
+     *
+     * @return the store
+     */
+    public static PositionStore allocate() {
+        return new PositionStore(MemoryArena.allocate(RECORD_BLOCK_SHIFT), MemoryArena.allocate(STRING_BLOCK_SHIFT),
+                MemoryArena.allocate(STRING_BLOCK_SHIFT));
+    }
+
+    /**
+     * Opens the store saved in a directory, or creates an empty one there.
+     * Changes are written to the files as they are made and are certain to
+     * be saved once the store is forced or closed.
+     *
+     * @param directory the directory of the store's files
+     * @return the store
+     * @throws IOException              if the files cannot be opened
+     * @throws IllegalArgumentException if the files do not hold a store
+     */
+    public static PositionStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new PositionStore(MemoryArena.map(directory.resolve("positions.dat"), RECORD_BLOCK_SHIFT),
+                MemoryArena.map(directory.resolve("symbols.dat"), STRING_BLOCK_SHIFT),
+                MemoryArena.map(directory.resolve("names.dat"), STRING_BLOCK_SHIFT));
+    }
+
+    /**
+     * Returns the number of positions.
+     *
+     * @return the number of positions
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finds the position holding a symbol.
+     *
+     * @param symbol the symbol
+     * @return the position, or -1 if the symbol is not held
+     */
+    public int find(String symbol) {
+        int id = symbols.idOf(symbol);
+        return id < 0 ? -1 : positionsBySymbol.getInt(4L * id) - 1;
+    }
+
+    /**
+     * Stores a position, replacing the position of the same symbol if there
+     * is one.
+     *
+     * @param type      the instrument type
+     * @param symbol    the symbol
+     * @param name      the name
+     * @param quantity  the quantity held
+     * @param price     the current price
+     * @param bookValue the book value
+     * @return the position
+     * @throws IllegalArgumentException if a field is missing or not positive
+     */
+    public int put(InstrumentType type, String symbol, String name, int quantity, double price, double bookValue) {
+        if (type == null || symbol == null || symbol.isEmpty() || name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Type, symbol and name are required.");
+        }
+        if (quantity <= 0 || !(price > 0) || !(bookValue > 0)) {
+            throw new IllegalArgumentException("Quantity, price and book value must be positive.");
+        }
+        int symbolId = symbols.intern(symbol);
+        int position = positionsBySymbol.getInt(4L * symbolId) - 1;
+        if (position < 0) {
+            position = count++;
+            positionsBySymbol.putInt(4L * symbolId, position + 1);
+        }
+        long offset = offsetOf(position);
+        ByteBuffer block = records.block(offset);
+        int index = records.indexInBlock(offset);
+        block.putInt(index + SYMBOL, symbolId);
+        block.putInt(index + NAME, names.intern(name));
+        block.put(index + TAG, type.getTag());
+        block.putInt(index + QUANTITY, quantity);
+        block.putDouble(index + PRICE, price);
+        block.putDouble(index + BOOK_VALUE, bookValue);
+        writeHeader();
+        return position;
+    }
+
+    /**
+     * Removes a position. The last position is moved into its place, so the
+     * position of that symbol changes.
+     *
+     * @param position the position to remove
+     */
+    public void remove(int position) {
+        checkPosition(position);
+        positionsBySymbol.putInt(4L * records.getInt(offsetOf(position) + SYMBOL), 0);
+        int last = --count;
+        if (position != last) {
+            long from = offsetOf(last);
+            long to = offsetOf(position);
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                records.putLong(to + i, records.getLong(from + i));
+            }
+            positionsBySymbol.putInt(4L * records.getInt(to + SYMBOL), position + 1);
+        }
+        writeHeader();
+    }
+
+    /**
+     * Returns a new view, not yet pointing at any position.
+     *
+     * @return the view
+     */
+    public PositionView view() {
+        return new PositionView(this);
+    }
+
+    /**
+     * Calculates the total unrealized gain of all positions, their market
+     * value less their book value.
+     *
+     * @return the total gain
+     */
+    public double getTotalGain() {
+        double total = 0;
+        for (int position = 0; position < count; position++) {
+            long offset = offsetOf(position);
+            ByteBuffer block = records.block(offset);
+            int index = records.indexInBlock(offset);
+            total += block.getInt(index + QUANTITY) * block.getDouble(index + PRICE)
+                    - block.getDouble(index + BOOK_VALUE);
+        }
+        return total;
+    }
+
+    /**
+     * Writes the changes to a file-backed store to its files.
+     */
+    public void force() {
+        records.force();
+        symbols.force();
+        names.force();
+    }
+
+    /**
+     * Saves and closes a file-backed store, or frees the memory of an
+     * anonymous one once it is no longer referenced.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        writeHeader();
+        // Every arena is closed even if one fails; later failures are suppressed
+        Exception failure = null;
+        for (Closeable resource : new Closeable[] { records, symbols, names, positionsBySymbol }) {
+            try {
+                resource.close();
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    /**
+     * Checks that a position is held.
+     *
+     * @param position the position
+     * @throws IndexOutOfBoundsException if it is not
+     */
+    void checkPosition(int position) {
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + count + ".");
+        }
+    }
+
+    MemoryArena records() {
+        return records;
+    }
+
+    long offsetOf(int position) {
+        return HEADER_SIZE + (long) position * RECORD_SIZE;
+    }
+
+    String symbol(int id) {
+        return symbols.get(id);
+    }
+
+    String name(int id) {
+        return names.get(id);
+    }
+
+    private void writeHeader() {
+        ByteBuffer header = records.block(0);
+        header.putInt(8, count);
+        header.putInt(12, symbols.size());
+        header.putInt(16, names.size());
+        header.putLong(24, symbols.byteLength());
+        header.putLong(32, names.byteLength());
+    }
+}
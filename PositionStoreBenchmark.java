@@ -0,0 +1,92 @@
+package ePortfolio;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PositionStoreBenchmark class compares garbage collection pauses with a
+ * large book held by a Portfolio on the heap, as Investment objects, and by a
+ * Portfolio over a PositionStore, off the heap. For each it reports the heap in use, the time
+ * of a full collection, and the number and average pause of the collections
+ * run while short-lived garbage is allocated, as trading and searching
+ * allocate it.
+ */
+public class PositionStoreBenchmark {
+    private static final int DEFAULT_POSITIONS = 2_000_000;
+    private static final int FULL_COLLECTIONS = 3;
+    private static final long CHURN_BYTES = 4L << 30;
+
+    /**
+     * Runs the benchmark and prints one line per kind of book.
+     *
+     * @param args optional number of positions
+     */
+    public static void main(String[] args) throws Exception {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_POSITIONS;
+        System.out.printf("positions=%d%n", positions);
+        System.out.printf("%10s %12s %14s %16s %14s%n", "book", "heap MB", "full GC ms", "churn GCs", "avg GC ms");
+
+        Portfolio portfolio = new Portfolio();
+        List<Investment> holdings = new ArrayList<>(positions);
+        for (int i = 0; i < positions; i++) {
+            holdings.add(new Stock("SYM" + i, "Company " + i % 10_000 + " Holdings", 100, 10.0 + i % 90));
+        }
+        portfolio.mergeInvestments(holdings);
+        holdings = null;
+        measure("heap", portfolio);
+
+        try (PositionStore store = PositionStore.allocate()) {
+            portfolio.saveToStore(store);
+            portfolio = null;
+            measure("off-heap", new Portfolio(store));
+        }
+    }
+
+    /**
+     * Measures the collector while a book is reachable.
+     *
+     * @param label the name of the book
+     * @param book  the book, kept reachable until measuring is done
+     */
+    private static void measure(String label, Object book) {
+        long fullStart = System.nanoTime();
+        for (int i = 0; i < FULL_COLLECTIONS; i++) {
+            System.gc();
+        }
+        double fullMillis = (System.nanoTime() - fullStart) / 1e6 / FULL_COLLECTIONS;
+        Runtime runtime = Runtime.getRuntime();
+        long heapBytes = runtime.totalMemory() - runtime.freeMemory();
+
+        long[] before = collections();
+        // A ring of recent arrays keeps the allocations from being optimized away
+        byte[][] recent = new byte[1024][];
+        for (long allocated = 0, i = 0; allocated < CHURN_BYTES; allocated += 1024, i++) {
+            recent[(int) (i & 1023)] = new byte[1008];
+        }
+        long[] after = collections();
+        long churnCount = after[0] - before[0];
+        double churnMillis = churnCount == 0 ? 0 : (double) (after[1] - before[1]) / churnCount;
+
+        System.out.printf("%10s %12d %14.1f %16d %14.2f%n", label, heapBytes >> 20, fullMillis, churnCount,
+                churnMillis);
+        if (recent[0] == null || book == null) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Returns the number and total milliseconds of the collections so far, of
+     * every collector.
+     */
+    private static long[] collections() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+            millis += collector.getCollectionTime();
+        }
+        return new long[] { count, millis };
+    }
+}
@@ -0,0 +1,117 @@
+package ePortfolio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The PositionView class is a flyweight over one record of a
+ * {@link PositionStore}. A view is moved from position to position and reads
+ * and writes the record in place, so walking a whole book takes a single
+ * view. A view only stays valid while its position is held; removing a
+ * position moves another record into it.
+ */
+public class PositionView {
+    private final PositionStore store;
+    private ByteBuffer block;
+    private int index;
+    private int position = -1;
+
+    /**
+     * Constructs a view of a store.
+     *
+     * @param store the store
+     */
+    PositionView(PositionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Points the view at a position.
+     *
+     * @param position the position
+     * @return this view
+     * @throws IndexOutOfBoundsException if the position is not held
+     */
+    public PositionView moveTo(int position) {
+        store.checkPosition(position);
+        long offset = store.offsetOf(position);
+        this.block = store.records().block(offset);
+        this.index = store.records().indexInBlock(offset);
+        this.position = position;
+        return this;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public InstrumentType getType() {
+        return InstrumentType.forTag(block.get(index + PositionStore.TAG));
+    }
+
+    public String getSymbol() {
+        return store.symbol(block.getInt(index + PositionStore.SYMBOL));
+    }
+
+    public String getName() {
+        return store.name(block.getInt(index + PositionStore.NAME));
+    }
+
+    public int getQuantity() {
+        return block.getInt(index + PositionStore.QUANTITY);
+    }
+
+    public double getPrice() {
+        return block.getDouble(index + PositionStore.PRICE);
+    }
+
+    public double getBookValue() {
+        return block.getDouble(index + PositionStore.BOOK_VALUE);
+    }
+
+    /**
+     * Calculates the gain of the position, its market value less its book
+     * value.
+     *
+     * @return the gain
+     */
+    public double calculateGain() {
+        return getQuantity() * getPrice() - getBookValue();
+    }
+
+    /**
+     * Updates the price of the position.
+     *
+     * @param price the new price
+     * @throws IllegalArgumentException if the price is not positive
+     */
+    public void setPrice(double price) {
+        if (!(price > 0)) {
+            throw new IllegalArgumentException("Price must be positive.");
+        }
+        block.putDouble(index + PositionStore.PRICE, price);
+    }
+
+    /**
+     * Updates the quantity and book value of the position, as after a buy or
+     * a partial sale.
+     *
+     * @param quantity  the new quantity
+     * @param bookValue the new book value
+     * @throws IllegalArgumentException if either is not positive
+     */
+    public void setHolding(int quantity, double bookValue) {
+        if (quantity <= 0 || !(bookValue > 0)) {
+            throw new IllegalArgumentException("Quantity and book value must be positive.");
+        }
+        block.putInt(index + PositionStore.QUANTITY, quantity);
+        block.putDouble(index + PositionStore.BOOK_VALUE, bookValue);
+    }
+
+    @Override
+    public String toString() {
+        return position < 0 ? "PositionView [no position]"
+                : getType().getLabel() + " [Symbol: " + getSymbol() + ", Name: " + getName() + ", Quantity: "
+                        + getQuantity() + ", Price: " + String.format("%.2f", getPrice()) + ", Book Value: "
+                        + String.format("%.2f", getBookValue()) + "]";
+    }
+}
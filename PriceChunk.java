@@ -0,0 +1,357 @@
+package ePortfolio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The PriceChunk class encodes a run of (timestamp, price) points into a
+ * compact bit stream and decodes it again.
+ * Timestamps are stored as delta-of-delta values, so regularly spaced ticks
+ * take a single bit. Prices that are exact multiples of 0.0001 are stored as
+ * zig-zag deltas in those units; all other prices fall back to Gorilla-style
+ * XOR encoding against the previous value. An unchanged price takes a single
+ * bit.
+ */
+public class PriceChunk {
+    /** Maximum number of points held by one chunk. */
+    public static final int MAX_POINTS = 4096;
+
+    private static final double SCALE = 10_000.0;
+    private static final long MAX_SCALED = 1L << 52;
+
+    private long[] words = new long[64];
+    private long bitLength;
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private double lastPrice;
+    private int lastLeading = -1;
+    private int lastTrailing;
+
+    /**
+     * Appends a point to the chunk.
+     *
+     * @param timestamp the time of the point, not earlier than the previous point
+     * @param price     the price at that time
+     */
+    public void append(long timestamp, double price) {
+        if (count == 0) {
+            writeBits(timestamp, 64);
+            writeBits(Double.doubleToRawLongBits(price), 64);
+            firstTimestamp = timestamp;
+        } else {
+            long delta = timestamp - lastTimestamp;
+            writeTimestamp(delta - lastDelta);
+            writePrice(price);
+            lastDelta = delta;
+        }
+        lastTimestamp = timestamp;
+        lastPrice = price;
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the encoded size of the chunk in bytes, padded to whole words.
+     *
+     * @return the encoded size in bytes
+     */
+    public int getByteLength() {
+        return (int) ((bitLength + 63) >>> 6) * 8;
+    }
+
+    /**
+     * Writes the encoded words into a buffer.
+     *
+     * @param buffer the buffer to write into, with at least getByteLength bytes
+     *               remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        int wordCount = getByteLength() / 8;
+        for (int i = 0; i < wordCount; i++) {
+            buffer.putLong(words[i]);
+        }
+    }
+
+    /**
+     * Decodes the points of this chunk that fall in a time range.
+     *
+     * @param from    the start of the range, inclusive
+     * @param to      the end of the range, inclusive
+     * @param visitor the visitor to call for each point
+     * @return false if the visitor stopped the scan
+     */
+    public boolean scan(long from, long to, PricePointVisitor visitor) {
+        return decode(new BitReader(words, null, 0), count, from, to, visitor);
+    }
+
+    /**
+     * Decodes the points of an encoded chunk that fall in a time range.
+     *
+     * @param buffer  the buffer holding the encoded words
+     * @param offset  the offset of the first word in the buffer
+     * @param count   the number of points in the chunk
+     * @param from    the start of the range, inclusive
+     * @param to      the end of the range, inclusive
+     * @param visitor the visitor to call for each point
+     * @return false if the visitor stopped the scan
+     */
+    public static boolean scan(ByteBuffer buffer, int offset, int count, long from, long to,
+            PricePointVisitor visitor) {
+        return decode(new BitReader(null, buffer, offset), count, from, to, visitor);
+    }
+
+    /**
+     * Decodes points in order, stopping after the end of the range.
+     *
+     * @param reader  the source of encoded bits
+     * @param count   the number of points encoded
+     * @param from    the start of the range, inclusive
+     * @param to      the end of the range, inclusive
+     * @param visitor the visitor to call for each point
+     * @return false if the visitor stopped the scan
+     */
+    private static boolean decode(BitReader reader, int count, long from, long to, PricePointVisitor visitor) {
+        long timestamp = 0;
+        long delta = 0;
+        double price = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamp = reader.read(64);
+                price = Double.longBitsToDouble(reader.read(64));
+            } else {
+                delta += readTimestamp(reader);
+                timestamp += delta;
+                if (reader.read(1) == 1) {
+                    if (reader.read(1) == 0) {
+                        long scaled = Math.round(price * SCALE) + zigZagDecode(readScaledDelta(reader));
+                        price = scaled / SCALE;
+                    } else {
+                        if (reader.read(1) == 1) {
+                            leading = (int) reader.read(5);
+                            int meaningful = (int) reader.read(6) + 1;
+                            trailing = 64 - leading - meaningful;
+                        }
+                        long xor = reader.read(64 - leading - trailing) << trailing;
+                        price = Double.longBitsToDouble(Double.doubleToRawLongBits(price) ^ xor);
+                    }
+                }
+            }
+            if (timestamp > to) {
+                return true;
+            }
+            if (timestamp >= from && !visitor.visit(timestamp, price)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a delta-of-delta timestamp value with a variable-length prefix.
+     *
+     * @param deltaOfDelta the change between consecutive timestamp deltas
+     */
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta < 64) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta < 256) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta < 2048) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    /**
+     * Reads a delta-of-delta timestamp value.
+     *
+     * @param reader the source of encoded bits
+     * @return the change between consecutive timestamp deltas
+     */
+    private static long readTimestamp(BitReader reader) {
+        if (reader.read(1) == 0) {
+            return 0;
+        }
+        if (reader.read(1) == 0) {
+            return signExtend(reader.read(7), 7);
+        }
+        if (reader.read(1) == 0) {
+            return signExtend(reader.read(9), 9);
+        }
+        if (reader.read(1) == 0) {
+            return signExtend(reader.read(12), 12);
+        }
+        return reader.read(64);
+    }
+
+    /**
+     * Writes a price relative to the previous price.
+     *
+     * @param price the price to write
+     */
+    private void writePrice(double price) {
+        long bits = Double.doubleToRawLongBits(price);
+        long xor = bits ^ Double.doubleToRawLongBits(lastPrice);
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        long scaled = Math.round(price * SCALE);
+        long lastScaled = Math.round(lastPrice * SCALE);
+        if (Math.abs(scaled) < MAX_SCALED && Math.abs(lastScaled) < MAX_SCALED
+                && scaled / SCALE == price && lastScaled / SCALE == lastPrice) {
+            writeBits(0b10, 2);
+            writeScaledDelta(zigZagEncode(scaled - lastScaled));
+            return;
+        }
+
+        writeBits(0b11, 2);
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            writeBits(0, 1);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            writeBits(1, 1);
+            writeBits(leading, 5);
+            writeBits(meaningful - 1, 6);
+            writeBits(xor >>> trailing, meaningful);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+    }
+
+    /**
+     * Writes a zig-zag encoded price delta with a variable-length prefix.
+     *
+     * @param value the zig-zag encoded delta
+     */
+    private void writeScaledDelta(long value) {
+        if (value < (1L << 8)) {
+            writeBits(0, 1);
+            writeBits(value, 8);
+        } else if (value < (1L << 16)) {
+            writeBits(0b10, 2);
+            writeBits(value, 16);
+        } else if (value < (1L << 32)) {
+            writeBits(0b110, 3);
+            writeBits(value, 32);
+        } else {
+            writeBits(0b111, 3);
+            writeBits(value, 64);
+        }
+    }
+
+    /**
+     * Reads a zig-zag encoded price delta.
+     *
+     * @param reader the source of encoded bits
+     * @return the zig-zag encoded delta
+     */
+    private static long readScaledDelta(BitReader reader) {
+        if (reader.read(1) == 0) {
+            return reader.read(8);
+        }
+        if (reader.read(1) == 0) {
+            return reader.read(16);
+        }
+        return reader.read(1) == 0 ? reader.read(32) : reader.read(64);
+    }
+
+    /**
+     * Appends the low bits of a value to the bit stream.
+     *
+     * @param value  the value to write
+     * @param length the number of low bits to write, from 1 to 64
+     */
+    private void writeBits(long value, int length) {
+        int wordIndex = (int) (bitLength >>> 6);
+        if (wordIndex + 1 >= words.length) {
+            long[] grown = new long[words.length * 2];
+            System.arraycopy(words, 0, grown, 0, words.length);
+            words = grown;
+        }
+        if (length < 64) {
+            value &= (1L << length) - 1;
+        }
+        int used = (int) (bitLength & 63);
+        int free = 64 - used;
+        if (length <= free) {
+            words[wordIndex] |= value << (free - length);
+        } else {
+            int spill = length - free;
+            words[wordIndex] |= value >>> spill;
+            words[wordIndex + 1] |= value << (64 - spill);
+        }
+        bitLength += length;
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long signExtend(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * Reads bits from either a word array or a buffer of encoded words.
+     */
+    private static final class BitReader {
+        private final long[] words;
+        private final ByteBuffer buffer;
+        private final int offset;
+        private long position;
+
+        private BitReader(long[] words, ByteBuffer buffer, int offset) {
+            this.words = words;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        private long word(int index) {
+            return words != null ? words[index] : buffer.getLong(offset + index * 8);
+        }
+
+        private long read(int length) {
+            int wordIndex = (int) (position >>> 6);
+            int used = (int) (position & 63);
+            int free = 64 - used;
+            long value;
+            if (length <= free) {
+                value = word(wordIndex) >>> (free - length);
+            } else {
+                int spill = length - free;
+                value = (word(wordIndex) << spill) | (word(wordIndex + 1) >>> (64 - spill));
+            }
+            position += length;
+            return length == 64 ? value : value & ((1L << length) - 1);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ePortfolio;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * The PriceHeap class is a binary min-heap of order ids keyed by price, kept
+ * in parallel primitive arrays. Ids break ties between equal prices, so
+ * orders placed earlier come first when ids increase over time. A max-heap
+ * is made by adding negated prices.
+ */
+class PriceHeap {
+    private double[] keys = new double[16];
+    private long[] ids = new long[16];
+    private int size;
+
+    /**
+     * Adds an id.
+     *
+     * @param key the price to order by
+     * @param id  the order id
+     */
+    void add(double key, long id) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int i = size++;
+        // Sift the new entry up from the last leaf
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(key, id, keys[parent], ids[parent])) {
+                break;
+            }
+            keys[i] = keys[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        ids[i] = id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the smallest price.
+     *
+     * @return the smallest price
+     */
+    double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Returns the id with the smallest price.
+     *
+     * @return the id
+     */
+    long peekId() {
+        return ids[0];
+    }
+
+    /**
+     * Removes the id with the smallest price.
+     */
+    void poll() {
+        size--;
+        if (size > 0) {
+            siftDown(0, keys[size], ids[size]);
+        }
+    }
+
+    /**
+     * Removes every id that is no longer wanted and restores the heap order.
+     *
+     * @param keep whether to keep an id
+     */
+    void retain(LongPredicate keep) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep.test(ids[i])) {
+                keys[kept] = keys[i];
+                ids[kept] = ids[i];
+                kept++;
+            }
+        }
+        size = kept;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i, keys[i], ids[i]);
+        }
+    }
+
+    private void siftDown(int i, double key, long id) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && less(keys[child + 1], ids[child + 1], keys[child], ids[child])) {
+                child++;
+            }
+            if (!less(keys[child], ids[child], key, id)) {
+                break;
+            }
+            keys[i] = keys[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        keys[i] = key;
+        ids[i] = id;
+    }
+
+    private static boolean less(double key, long id, double otherKey, long otherId) {
+        return key < otherKey || (key == otherKey && id < otherId);
+    }
+}
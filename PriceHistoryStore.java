@@ -0,0 +1,425 @@
+package ePortfolio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The PriceHistoryStore class keeps an append-only price history per symbol.
+ * Points are compressed into PriceChunk blocks. Full chunks are sealed and,
+ * when the store has a directory, appended to one file per symbol which is
+ * read back through memory-mapped windows of whole chunks, so a file may grow
+ * past the 2 GB limit of a single mapping. Without a directory, sealed chunks
+ * stay on the heap.
+ * Each chunk records its time range, so range scans skip chunks outside the
+ * requested window without decoding them.
+ */
+public class PriceHistoryStore implements AutoCloseable {
+    private static final String FILE_SUFFIX = ".prices";
+    private static final int CHUNK_HEADER_BYTES = 24;
+    private static final long WINDOW_BYTES = 1L << 26;
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9]+");
+
+    private final Path directory;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an in-memory price history store.
+     */
+    public PriceHistoryStore() {
+        this.directory = null;
+    }
+
+    /**
+     * Opens a price history store backed by a directory, loading the chunks of
+     * any symbols already stored there.
+     *
+     * @param directory the directory holding one file per symbol
+     * @throws IOException if the directory cannot be read
+     */
+    public PriceHistoryStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String symbol = name.substring(0, name.length() - FILE_SUFFIX.length());
+                if (SYMBOL.matcher(symbol).matches()) {
+                    series.put(symbol, new Series(file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a price point to the history of a symbol.
+     *
+     * @param symbol    the symbol of the investment
+     * @param timestamp the time of the point in milliseconds since the epoch
+     * @param price     the price at that time
+     * @throws IllegalArgumentException if the symbol is not alphanumeric and
+     *                                  uppercase, or the point is older than
+     *                                  the newest point of the symbol
+     */
+    public void append(String symbol, long timestamp, double price) {
+        if (symbol == null || !SYMBOL.matcher(symbol).matches()) {
+            throw new IllegalArgumentException("Invalid symbol. Symbols must be alphanumeric and uppercase.");
+        }
+        seriesFor(symbol).append(timestamp, price);
+    }
+
+    /**
+     * Visits the points of a symbol within a time range, oldest first.
+     *
+     * @param symbol  the symbol of the investment
+     * @param from    the start of the range, inclusive
+     * @param to      the end of the range, inclusive
+     * @param visitor the visitor to call for each point
+     */
+    public void scan(String symbol, long from, long to, PricePointVisitor visitor) {
+        Series s = series.get(symbol);
+        if (s != null) {
+            s.scan(from, to, visitor);
+        }
+    }
+
+    /**
+     * Finds the price of a symbol at a point in time, which is the price of the
+     * newest point not after that time.
+     *
+     * @param symbol    the symbol of the investment
+     * @param timestamp the time in milliseconds since the epoch
+     * @return the price at that time, or NaN if no earlier point exists
+     */
+    public double priceAt(String symbol, long timestamp) {
+        Series s = series.get(symbol);
+        return s == null ? Double.NaN : s.priceAt(timestamp);
+    }
+
+    /**
+     * Returns the symbols that have a price history.
+     *
+     * @return the set of symbols
+     */
+    public Set<String> getSymbols() {
+        return Collections.unmodifiableSet(series.keySet());
+    }
+
+    /**
+     * Returns the number of points stored across all symbols.
+     *
+     * @return the number of points
+     */
+    public long getPointCount() {
+        long total = 0;
+        for (Series s : series.values()) {
+            total += s.pointCount();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of encoded bytes across all symbols, including chunk
+     * headers.
+     *
+     * @return the encoded size in bytes
+     */
+    public long getByteCount() {
+        long total = 0;
+        for (Series s : series.values()) {
+            total += s.byteCount();
+        }
+        return total;
+    }
+
+    /**
+     * Seals every partially filled chunk so that it is written to disk.
+     */
+    public void flush() {
+        for (Series s : series.values()) {
+            s.seal();
+        }
+    }
+
+    /**
+     * Flushes the store and closes its files.
+     */
+    @Override
+    public void close() {
+        flush();
+        for (Series s : series.values()) {
+            s.close();
+        }
+    }
+
+    /**
+     * Returns the series of a symbol, creating it on first use.
+     *
+     * @param symbol the symbol of the investment
+     * @return the series of the symbol
+     */
+    private Series seriesFor(String symbol) {
+        return series.computeIfAbsent(symbol, s -> {
+            try {
+                return directory == null ? new Series(null) : new Series(directory.resolve(s + FILE_SUFFIX));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * The price history of a single symbol: sealed chunks plus the chunk that
+     * is currently being filled.
+     */
+    private static final class Series {
+        private final FileChannel channel;
+        private final List<ChunkRef> chunks = new ArrayList<>();
+        private final List<ByteBuffer> heapChunks = new ArrayList<>();
+        private final List<Long> windowStarts = new ArrayList<>();
+        private final List<MappedByteBuffer> windows = new ArrayList<>();
+        private PriceChunk active = new PriceChunk();
+        private long fileSize;
+        private long sealedPoints;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        private Series(Path file) throws IOException {
+            if (file == null) {
+                channel = null;
+                return;
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            readChunkHeaders();
+        }
+
+        /**
+         * Rebuilds the chunk list from the headers in the file, dropping a
+         * partially written chunk at the end.
+         */
+        private void readChunkHeaders() throws IOException {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES);
+            long position = 0;
+            while (position + CHUNK_HEADER_BYTES <= size) {
+                header.clear();
+                channel.read(header, position);
+                header.flip();
+                int count = header.getInt();
+                long first = header.getLong();
+                long last = header.getLong();
+                int length = header.getInt();
+                if (count <= 0 || position + CHUNK_HEADER_BYTES + length > size) {
+                    break;
+                }
+                addFileChunk(first, last, count, position, length);
+                sealedPoints += count;
+                lastTimestamp = last;
+                position += CHUNK_HEADER_BYTES + length;
+            }
+            if (position < size) {
+                channel.truncate(position);
+            }
+            fileSize = position;
+        }
+
+        private synchronized void append(long timestamp, double price) {
+            if (timestamp < lastTimestamp) {
+                throw new IllegalArgumentException("Price history must be appended in time order.");
+            }
+            active.append(timestamp, price);
+            lastTimestamp = timestamp;
+            if (active.getCount() == PriceChunk.MAX_POINTS) {
+                seal();
+            }
+        }
+
+        /**
+         * Moves the active chunk into the sealed chunks.
+         */
+        private synchronized void seal() {
+            if (active.getCount() == 0) {
+                return;
+            }
+            int length = active.getByteLength();
+            ByteBuffer encoded = ByteBuffer.allocate(CHUNK_HEADER_BYTES + length);
+            encoded.putInt(active.getCount())
+                    .putLong(active.getFirstTimestamp())
+                    .putLong(active.getLastTimestamp())
+                    .putInt(length);
+            active.writeTo(encoded);
+            encoded.flip();
+
+            if (channel == null) {
+                heapChunks.add(encoded);
+                chunks.add(new ChunkRef(active.getFirstTimestamp(), active.getLastTimestamp(), active.getCount(),
+                        heapChunks.size() - 1, CHUNK_HEADER_BYTES, length));
+            } else {
+                try {
+                    long position = fileSize;
+                    while (encoded.hasRemaining()) {
+                        position += channel.write(encoded, position);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                addFileChunk(active.getFirstTimestamp(), active.getLastTimestamp(), active.getCount(), fileSize,
+                        length);
+                fileSize += CHUNK_HEADER_BYTES + length;
+            }
+            sealedPoints += active.getCount();
+            active = new PriceChunk();
+        }
+
+        /**
+         * Adds a chunk stored in the file to the chunk list, starting a new
+         * window when the chunk would not fit in the last one.
+         *
+         * @param position the file position of the chunk header
+         */
+        private void addFileChunk(long first, long last, int count, long position, int length) {
+            long end = position + CHUNK_HEADER_BYTES + length;
+            if (windowStarts.isEmpty() || end - windowStarts.get(windowStarts.size() - 1) > WINDOW_BYTES) {
+                windowStarts.add(position);
+                windows.add(null);
+            }
+            int window = windowStarts.size() - 1;
+            int offset = (int) (position + CHUNK_HEADER_BYTES - windowStarts.get(window));
+            chunks.add(new ChunkRef(first, last, count, window, offset, length));
+        }
+
+        private synchronized void scan(long from, long to, PricePointVisitor visitor) {
+            for (int i = firstChunkEndingAtOrAfter(from); i < chunks.size(); i++) {
+                ChunkRef chunk = chunks.get(i);
+                if (chunk.first > to) {
+                    return;
+                }
+                if (!scanChunk(chunk, from, to, visitor)) {
+                    return;
+                }
+            }
+            if (active.getCount() > 0 && active.getFirstTimestamp() <= to) {
+                active.scan(from, to, visitor);
+            }
+        }
+
+        private synchronized double priceAt(long timestamp) {
+            double[] price = { Double.NaN };
+            PricePointVisitor latest = (t, p) -> {
+                price[0] = p;
+                return true;
+            };
+            if (active.getCount() > 0 && active.getFirstTimestamp() <= timestamp) {
+                active.scan(Long.MIN_VALUE, timestamp, latest);
+                return price[0];
+            }
+            int index = lastChunkStartingAtOrBefore(timestamp);
+            if (index >= 0) {
+                scanChunk(chunks.get(index), Long.MIN_VALUE, timestamp, latest);
+            }
+            return price[0];
+        }
+
+        private boolean scanChunk(ChunkRef chunk, long from, long to, PricePointVisitor visitor) {
+            ByteBuffer buffer = channel == null ? heapChunks.get(chunk.window) : window(chunk.window);
+            return PriceChunk.scan(buffer, chunk.offset, chunk.count, from, to, visitor);
+        }
+
+        /**
+         * Returns a read-only mapping of a window of the file, remapping the
+         * last window when chunks have been written to it since it was mapped.
+         */
+        private ByteBuffer window(int index) {
+            long start = windowStarts.get(index);
+            long end = index + 1 < windowStarts.size() ? windowStarts.get(index + 1) : fileSize;
+            MappedByteBuffer mapped = windows.get(index);
+            if (mapped == null || mapped.capacity() < end - start) {
+                try {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                windows.set(index, mapped);
+            }
+            return mapped;
+        }
+
+        private int firstChunkEndingAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = chunks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (chunks.get(mid).last < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int lastChunkStartingAtOrBefore(long timestamp) {
+            int low = 0;
+            int high = chunks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (chunks.get(mid).first <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - 1;
+        }
+
+        private synchronized long pointCount() {
+            return sealedPoints + active.getCount();
+        }
+
+        private synchronized long byteCount() {
+            long total = active.getByteLength();
+            for (ChunkRef chunk : chunks) {
+                total += CHUNK_HEADER_BYTES + chunk.length;
+            }
+            return total;
+        }
+
+        private synchronized void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The location and time range of a sealed chunk: the offset of its encoded
+     * points within a mapped window of the file, or within its own buffer for
+     * heap chunks, where the window is the index of that buffer.
+     */
+    private static final class ChunkRef {
+        private final long first;
+        private final long last;
+        private final int count;
+        private final int window;
+        private final int offset;
+        private final int length;
+
+        private ChunkRef(long first, long last, int count, int window, int offset, int length) {
+            this.first = first;
+            this.last = last;
+            this.count = count;
+            this.window = window;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
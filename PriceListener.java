@@ -0,0 +1,19 @@
+package ePortfolio;
+
+/**
+ * The PriceListener interface is notified of every price update as it is made.
+ * Unlike the coalesced batches of the change publisher, a listener is called
+ * on the thread that updates the price, once per update and before the update
+ * returns, so it may trade on the portfolio in response. A listener must not
+ * update prices itself.
+ */
+@FunctionalInterface
+public interface PriceListener {
+    /**
+     * Called after the price of an investment has been updated.
+     *
+     * @param symbol the symbol of the investment
+     * @param price  the new price
+     */
+    void priceUpdated(String symbol, double price);
+}
@@ -0,0 +1,16 @@
+package ePortfolio;
+
+/**
+ * Callback used to visit price history points without allocating per point.
+ */
+@FunctionalInterface
+public interface PricePointVisitor {
+    /**
+     * Visits a single price point.
+     *
+     * @param timestamp the time of the point in milliseconds since the epoch
+     * @param price     the price at that time
+     * @return true to continue the scan, false to stop it
+     */
+    boolean visit(long timestamp, double price);
+}
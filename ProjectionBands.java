@@ -0,0 +1,86 @@
+package ePortfolio;
+
+/**
+ * The ProjectionBands class holds the result of a Monte Carlo projection:
+ * for each time step, the mean portfolio value and the value at each requested
+ * percentile across all simulated paths. Step 0 is the current value.
+ */
+public class ProjectionBands {
+    private final double[] percentiles;
+    private final double[] times;
+    private final double[] means;
+    private final double[][] values;
+
+    /**
+     * Constructs ProjectionBands.
+     *
+     * @param percentiles the percentiles reported, from 0 to 100
+     * @param times       the time of each step in years
+     * @param means       the mean value at each step
+     * @param values      the value at each percentile (first index) and step
+     *                    (second index)
+     */
+    public ProjectionBands(double[] percentiles, double[] times, double[] means, double[][] values) {
+        this.percentiles = percentiles;
+        this.times = times;
+        this.means = means;
+        this.values = values;
+    }
+
+    public int getStepCount() {
+        return times.length;
+    }
+
+    public double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    /**
+     * Returns the time of a step.
+     *
+     * @param step the step, where 0 is now
+     * @return the time in years from now
+     */
+    public double getTime(int step) {
+        return times[step];
+    }
+
+    /**
+     * Returns the mean portfolio value across all paths at a step.
+     *
+     * @param step the step, where 0 is now
+     * @return the mean value
+     */
+    public double getMean(int step) {
+        return means[step];
+    }
+
+    /**
+     * Returns the portfolio value at one of the requested percentiles.
+     *
+     * @param percentileIndex the index of the percentile in
+     *                        {@link #getPercentiles()}
+     * @param step            the step, where 0 is now
+     * @return the value at that percentile
+     */
+    public double getValue(int percentileIndex, int step) {
+        return values[percentileIndex][step];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("%8s %14s", "years", "mean"));
+        for (double percentile : percentiles) {
+            text.append(String.format(" %13s%%", percentile));
+        }
+        text.append('\n');
+        for (int step = 0; step < times.length; step++) {
+            text.append(String.format("%8.3f %14.2f", times[step], means[step]));
+            for (double[] band : values) {
+                text.append(String.format(" %14.2f", band[step]));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package ePortfolio;
+
+import java.time.*;
+
+/**
+ * The RealizedGainLedger class records the realized gain of every sale.
+ * Gains are summed into one bucket per calendar month, and the buckets are
+ * kept in a Fenwick (binary indexed) tree. Recording a sale and querying the
+ * gain of any range of months are both O(log months), so period queries never
+ * replay the trade history.
+ */
+public class RealizedGainLedger {
+    private static final int INITIAL_MONTHS = 1024;
+
+    private final ZoneId zone;
+    private double[] buckets;
+    private double[] tree;
+    private long saleCount;
+
+    /**
+     * Constructs a ledger that buckets sales by month in the system time zone.
+     */
+    public RealizedGainLedger() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a ledger that buckets sales by month in the given time zone.
+     *
+     * @param zone the time zone used to assign sales to months
+     */
+    public RealizedGainLedger(ZoneId zone) {
+        this.zone = zone;
+        buckets = new double[INITIAL_MONTHS];
+        tree = new double[INITIAL_MONTHS + 1];
+    }
+
+    /**
+     * Records the realized gain of a sale.
+     *
+     * @param time the time of the sale
+     * @param gain the realized gain of the sale
+     */
+    public synchronized void record(Instant time, double gain) {
+        int month = monthIndex(YearMonth.from(time.atZone(zone)));
+        if (month < 0) {
+            throw new IllegalArgumentException("Sales before January 1970 are not supported.");
+        }
+        if (month >= buckets.length) {
+            grow(month + 1);
+        }
+        buckets[month] += gain;
+        for (int i = month + 1; i < tree.length; i += i & -i) {
+            tree[i] += gain;
+        }
+        saleCount++;
+    }
+
+    /**
+     * Returns the realized gain of all recorded sales.
+     *
+     * @return the total realized gain
+     */
+    public synchronized double getTotal() {
+        return prefixSum(buckets.length);
+    }
+
+    /**
+     * Returns the realized gain of the sales within a range of months.
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return the realized gain over the range
+     */
+    public synchronized double getBetween(YearMonth from, YearMonth to) {
+        int first = Math.max(monthIndex(from), 0);
+        int last = Math.min(monthIndex(to), buckets.length - 1);
+        if (last < first) {
+            return 0;
+        }
+        return prefixSum(last + 1) - prefixSum(first);
+    }
+
+    /**
+     * Returns the realized gain of the sales within one month.
+     *
+     * @param month the month
+     * @return the realized gain of the month
+     */
+    public double getForMonth(YearMonth month) {
+        return getBetween(month, month);
+    }
+
+    /**
+     * Returns the realized gain of the sales within one calendar year.
+     *
+     * @param year the year
+     * @return the realized gain of the year
+     */
+    public double getForYear(int year) {
+        return getBetween(YearMonth.of(year, 1), YearMonth.of(year, 12));
+    }
+
+    /**
+     * Returns the realized gain from the start of the current year up to and
+     * including the current month.
+     *
+     * @return the year-to-date realized gain
+     */
+    public double getYearToDate() {
+        YearMonth now = YearMonth.now(zone);
+        return getBetween(YearMonth.of(now.getYear(), 1), now);
+    }
+
+    /**
+     * Returns the realized gain of the current month.
+     *
+     * @return the month-to-date realized gain
+     */
+    public double getMonthToDate() {
+        return getForMonth(YearMonth.now(zone));
+    }
+
+    /**
+     * Returns the number of sales recorded.
+     *
+     * @return the number of sales
+     */
+    public synchronized long getSaleCount() {
+        return saleCount;
+    }
+
+    /**
+     * Sums the first buckets of the tree.
+     *
+     * @param count the number of buckets to sum, starting from the first
+     * @return the sum of the buckets
+     */
+    private double prefixSum(int count) {
+        double sum = 0;
+        for (int i = Math.min(count, buckets.length); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Grows the bucket array to hold at least a number of months and rebuilds
+     * the tree from the buckets in O(months).
+     *
+     * @param months the number of months required
+     */
+    private void grow(int months) {
+        int capacity = buckets.length;
+        while (capacity < months) {
+            capacity <<= 1;
+        }
+        double[] newBuckets = new double[capacity];
+        System.arraycopy(buckets, 0, newBuckets, 0, buckets.length);
+        double[] newTree = new double[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            newTree[i] += newBuckets[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                newTree[parent] += newTree[i];
+            }
+        }
+        buckets = newBuckets;
+        tree = newTree;
+    }
+
+    /**
+     * Converts a month into its bucket index, counting from January 1970.
+     *
+     * @param month the month
+     * @return the bucket index, negative for months before 1970
+     */
+    private static int monthIndex(YearMonth month) {
+        return (month.getYear() - 1970) * 12 + month.getMonthValue() - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package ePortfolio;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The RebalancePlan class holds the orders that move a portfolio toward its
+ * target weights, sells first, with their cash and fee totals.
+ */
+public class RebalancePlan {
+    private final List<TradeOrder> orders;
+    private final double sellProceeds;
+    private final double buyCost;
+    private final double fees;
+
+    /**
+     * Constructs a RebalancePlan.
+     *
+     * @param orders the orders, sells before buys
+     */
+    public RebalancePlan(List<TradeOrder> orders) {
+        double proceeds = 0;
+        double cost = 0;
+        double totalFees = 0;
+        for (TradeOrder order : orders) {
+            if (order.isBuy()) {
+                cost += order.getCashAmount();
+            } else {
+                proceeds += order.getCashAmount();
+            }
+            totalFees += order.getFee();
+        }
+        this.orders = Collections.unmodifiableList(orders);
+        this.sellProceeds = proceeds;
+        this.buyCost = cost;
+        this.fees = totalFees;
+    }
+
+    public List<TradeOrder> getOrders() {
+        return orders;
+    }
+
+    public double getSellProceeds() {
+        return sellProceeds;
+    }
+
+    public double getBuyCost() {
+        return buyCost;
+    }
+
+    public double getFees() {
+        return fees;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d orders, sell proceeds: %.2f, buy cost: %.2f, fees: %.2f", orders.size(),
+                sellProceeds, buyCost, fees);
+    }
+}
@@ -0,0 +1,261 @@
+package ePortfolio;
+
+import java.util.*;
+
+/**
+ * The Rebalancer class plans and applies the trades that move a portfolio
+ * toward target weights, given per symbol or per instrument type.
+ * A symbol target sets the share of the total market value a position should
+ * hold. A type target sets the share for all positions of that type that have
+ * no symbol target of their own, spread in proportion to their current values.
+ * Positions without any target are left alone.
+ * Planning copies the book into primitive arrays sorted by symbol and matches
+ * the sorted symbol targets against it in a single merge pass, so no position
+ * is looked up by symbol. A trade is only planned when its fee is less than
+ * the drift it corrects, and by default buys are scaled down so that they are
+ * paid for by the sales.
+ */
+public class Rebalancer {
+    private final Portfolio portfolio;
+    private final Map<String, Double> symbolTargets = new HashMap<>();
+    private final double[] typeTargets = new double[InstrumentType.TAG_COUNT];
+    private double tolerance;
+    private boolean selfFinancing = true;
+
+    /**
+     * Constructs a Rebalancer for a portfolio with no targets.
+     *
+     * @param portfolio the portfolio to rebalance
+     */
+    public Rebalancer(Portfolio portfolio) {
+        this.portfolio = portfolio;
+        Arrays.fill(typeTargets, Double.NaN);
+    }
+
+    /**
+     * Sets the target weight of a position.
+     *
+     * @param symbol the symbol of a position held in the portfolio
+     * @param weight the share of the total market value, from 0 to 1
+     */
+    public void setTarget(String symbol, double weight) {
+        symbolTargets.put(symbol.toUpperCase(), validateWeight(weight));
+    }
+
+    /**
+     * Sets the target weight of an instrument type.
+     *
+     * @param type   the instrument type
+     * @param weight the share of the total market value, from 0 to 1
+     */
+    public void setTarget(InstrumentType type, double weight) {
+        typeTargets[type.getTag()] = validateWeight(weight);
+    }
+
+    /**
+     * Removes every target.
+     */
+    public void clearTargets() {
+        symbolTargets.clear();
+        Arrays.fill(typeTargets, Double.NaN);
+    }
+
+    /**
+     * Sets how far a position may drift from its target, as a share of the
+     * total market value, before it is traded.
+     *
+     * @param tolerance the tolerance, from 0 to 1
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = validateWeight(tolerance);
+    }
+
+    /**
+     * Sets whether buys must be paid for by the sales of the same plan.
+     *
+     * @param selfFinancing true to scale buys down to the sale proceeds
+     */
+    public void setSelfFinancing(boolean selfFinancing) {
+        this.selfFinancing = selfFinancing;
+    }
+
+    /**
+     * Plans the orders that move the portfolio toward its targets at current
+     * prices. Must be called on the thread that updates the portfolio.
+     *
+     * @return the plan, sells first
+     * @throws IllegalArgumentException if a symbol target names a position that
+     *                                  is not held, or the targets add up to
+     *                                  more than 1
+     */
+    public RebalancePlan plan() {
+        // Copy the book into arrays ordered by symbol
+        Investment[] bySymbol = portfolio.getInvestments().toArray(new Investment[0]);
+        Arrays.parallelSort(bySymbol, Comparator.comparing(Investment::getSymbol));
+        int count = bySymbol.length;
+        String[] symbols = new String[count];
+        int[] quantities = new int[count];
+        double[] prices = new double[count];
+        byte[] tags = new byte[count];
+        FeeModel[] buyFees = new FeeModel[count];
+        FeeModel[] sellFees = new FeeModel[count];
+        double totalValue = 0;
+        for (int i = 0; i < count; i++) {
+            Investment investment = bySymbol[i];
+            symbols[i] = investment.getSymbol();
+            quantities[i] = investment.getQuantity();
+            prices[i] = investment.getPrice();
+            tags[i] = investment.getInstrumentType().getTag();
+            buyFees[i] = investment.getBuyFeeModel();
+            sellFees[i] = investment.getSellFeeModel();
+            totalValue += quantities[i] * prices[i];
+        }
+
+        // Merge the sorted symbol targets into the book
+        String[] targetSymbols = symbolTargets.keySet().toArray(new String[0]);
+        Arrays.sort(targetSymbols);
+        double[] targetValues = new double[count];
+        Arrays.fill(targetValues, Double.NaN);
+        double weightSum = 0;
+        int position = 0;
+        for (String targetSymbol : targetSymbols) {
+            while (position < count && symbols[position].compareTo(targetSymbol) < 0) {
+                position++;
+            }
+            if (position == count || !symbols[position].equals(targetSymbol)) {
+                throw new IllegalArgumentException("Investment not found: " + targetSymbol);
+            }
+            double weight = symbolTargets.get(targetSymbol);
+            targetValues[position] = weight * totalValue;
+            weightSum += weight;
+        }
+
+        // Spread each type target over the untargeted positions of the type
+        double[] untargetedValueByTag = new double[InstrumentType.TAG_COUNT];
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(targetValues[i])) {
+                untargetedValueByTag[tags[i]] += quantities[i] * prices[i];
+            }
+        }
+        for (int tag = 0; tag < typeTargets.length; tag++) {
+            if (!Double.isNaN(typeTargets[tag])) {
+                weightSum += typeTargets[tag];
+            }
+        }
+        if (weightSum > 1 + 1e-9) {
+            throw new IllegalArgumentException("Target weights add up to more than 1.");
+        }
+        for (int i = 0; i < count; i++) {
+            double typeWeight = typeTargets[tags[i]];
+            if (Double.isNaN(targetValues[i]) && !Double.isNaN(typeWeight) && untargetedValueByTag[tags[i]] > 0) {
+                targetValues[i] = typeWeight * totalValue * (quantities[i] * prices[i])
+                        / untargetedValueByTag[tags[i]];
+            }
+        }
+
+        // Plan one trade per position that drifted by more than its fee
+        int[] tradeQuantities = new int[count];
+        double[] tradeFees = new double[count];
+        double sellProceeds = 0;
+        double buyCost = 0;
+        double band = tolerance * totalValue;
+        for (int i = 0; i < count; i++) {
+            double drift = targetValues[i] - quantities[i] * prices[i];
+            if (Double.isNaN(drift) || Math.abs(drift) <= band) {
+                continue;
+            }
+            int quantity = (int) Math.min(Math.floor(Math.abs(drift) / prices[i]), Integer.MAX_VALUE);
+            if (drift < 0) {
+                quantity = Math.min(quantity, quantities[i]);
+            }
+            if (quantity == 0) {
+                continue;
+            }
+            double fee = (drift < 0 ? sellFees[i] : buyFees[i]).calculateFee(quantity, prices[i]);
+            if (fee >= Math.abs(drift)) {
+                continue;
+            }
+            tradeQuantities[i] = drift < 0 ? -quantity : quantity;
+            tradeFees[i] = fee;
+            if (drift < 0) {
+                sellProceeds += quantity * prices[i] - fee;
+            } else {
+                buyCost += quantity * prices[i] + fee;
+            }
+        }
+
+        if (selfFinancing) {
+            scaleBuys(tradeQuantities, tradeFees, prices, buyFees, sellProceeds, buyCost);
+        }
+
+        List<TradeOrder> sells = new ArrayList<>();
+        List<TradeOrder> buys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int quantity = tradeQuantities[i];
+            if (quantity < 0) {
+                sells.add(new TradeOrder(symbols[i], false, -quantity, prices[i], tradeFees[i]));
+            } else if (quantity > 0) {
+                buys.add(new TradeOrder(symbols[i], true, quantity, prices[i], tradeFees[i]));
+            }
+        }
+        sells.addAll(buys);
+        return new RebalancePlan(sells);
+    }
+
+    /**
+     * Plans the orders toward the targets and applies them as one batch.
+     *
+     * @return the plan that was applied
+     */
+    public RebalancePlan rebalance() {
+        RebalancePlan plan = plan();
+        portfolio.applyOrders(plan.getOrders());
+        return plan;
+    }
+
+    /**
+     * Scales every buy down by the same factor until the buys cost no more
+     * than the sales bring in. Flat fees do not scale, so the factor is refined
+     * over a few passes, and any remaining excess is removed one buy at a time.
+     *
+     * @param quantities   the signed trade quantity of each position
+     * @param fees         the fee of each trade
+     * @param prices       the price of each position
+     * @param buyFees      the buy fee model of each position
+     * @param sellProceeds the cash raised by the sales
+     * @param buyCost      the cash the buys need
+     */
+    private static void scaleBuys(int[] quantities, double[] fees, double[] prices, FeeModel[] buyFees,
+            double sellProceeds, double buyCost) {
+        double[] wanted = new double[quantities.length];
+        for (int i = 0; i < quantities.length; i++) {
+            wanted[i] = Math.max(quantities[i], 0);
+        }
+        double factor = 1;
+        for (int pass = 0; pass < 4 && buyCost > sellProceeds; pass++) {
+            factor *= buyCost > 0 ? sellProceeds / buyCost : 0;
+            buyCost = 0;
+            for (int i = 0; i < quantities.length; i++) {
+                if (wanted[i] > 0) {
+                    quantities[i] = (int) Math.floor(wanted[i] * factor);
+                    fees[i] = quantities[i] == 0 ? 0 : buyFees[i].calculateFee(quantities[i], prices[i]);
+                    buyCost += quantities[i] == 0 ? 0 : quantities[i] * prices[i] + fees[i];
+                }
+            }
+        }
+        for (int i = quantities.length - 1; i >= 0 && buyCost > sellProceeds; i--) {
+            if (wanted[i] > 0 && quantities[i] > 0) {
+                buyCost -= quantities[i] * prices[i] + fees[i];
+                quantities[i] = 0;
+                fees[i] = 0;
+            }
+        }
+    }
+
+    private static double validateWeight(double weight) {
+        if (!(weight >= 0 && weight <= 1)) {
+            throw new IllegalArgumentException("Weight must be between 0 and 1.");
+        }
+        return weight;
+    }
+}
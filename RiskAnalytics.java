@@ -0,0 +1,341 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.stream.IntStream;
+
+/**
+ * The RiskAnalytics class measures the risk of the current holdings of a
+ * portfolio: the weight of each position, concentration by symbol, exposure
+ * by instrument type, and historical value at risk.
+ * Figures are first computed in one parallel pass over the positions and are
+ * then kept current from the portfolio's change stream. Each change replaces
+ * the contribution of its own position, so a price update to a few positions
+ * costs a few updates rather than a full recomputation. Since the change
+ * stream is delivered in batches, figures trail the portfolio by at most one
+ * batch interval. Changes that were already in flight when the figures were
+ * last recomputed are skipped, since the recomputation already includes them.
+ */
+public class RiskAnalytics implements AutoCloseable {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final Portfolio portfolio;
+    private Map<String, Position> positions = new HashMap<>();
+    private double[] valueByTag = new double[InstrumentType.TAG_COUNT];
+    private double totalValue;
+    private double sumOfSquares;
+    private long recomputedSequence;
+    private volatile Flow.Subscription subscription;
+    private volatile boolean closed;
+
+    /**
+     * Constructs RiskAnalytics for a portfolio and computes the initial
+     * figures. Must be called on the thread that updates the portfolio.
+     *
+     * @param portfolio the portfolio to analyze
+     */
+    public RiskAnalytics(Portfolio portfolio) {
+        this.portfolio = portfolio;
+        portfolio.getChangePublisher().subscribe(new ChangeSubscriber());
+        recompute();
+    }
+
+    /**
+     * Recomputes every figure from the positions in a single parallel pass,
+     * discarding any rounding accumulated by incremental updates. Must be
+     * called on the thread that updates the portfolio.
+     */
+    public void recompute() {
+        long sequence = portfolio.getChangeSequence();
+        Totals totals = portfolio.getInvestments().parallelStream()
+                .collect(Totals::new, Totals::add, Totals::merge);
+        synchronized (this) {
+            positions = totals.positions;
+            valueByTag = totals.valueByTag;
+            totalValue = totals.totalValue;
+            sumOfSquares = totals.sumOfSquares;
+            recomputedSequence = sequence;
+        }
+    }
+
+    /**
+     * Returns the market value of all positions.
+     *
+     * @return the total market value
+     */
+    public synchronized double getTotalMarketValue() {
+        return totalValue;
+    }
+
+    /**
+     * Returns the share of the total market value held in one position.
+     *
+     * @param symbol the symbol of the position
+     * @return the weight from 0 to 1, or 0 if the position is not held
+     */
+    public synchronized double getWeight(String symbol) {
+        Position position = positions.get(symbol);
+        return position == null || totalValue == 0 ? 0 : position.value / totalValue;
+    }
+
+    /**
+     * Returns the weight of every position.
+     *
+     * @return a map from symbol to weight
+     */
+    public synchronized Map<String, Double> getWeights() {
+        Map<String, Double> weights = new HashMap<>();
+        for (Map.Entry<String, Position> entry : positions.entrySet()) {
+            weights.put(entry.getKey(), totalValue == 0 ? 0 : entry.getValue().value / totalValue);
+        }
+        return weights;
+    }
+
+    /**
+     * Returns the positions with the largest weights.
+     *
+     * @param count the number of positions to return
+     * @return a map from symbol to weight, largest first
+     */
+    public synchronized Map<String, Double> getLargestPositions(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Count must be greater than zero.");
+        }
+        PriorityQueue<Map.Entry<String, Position>> largest = new PriorityQueue<>(
+                Comparator.comparingDouble(entry -> entry.getValue().value));
+        for (Map.Entry<String, Position> entry : positions.entrySet()) {
+            if (largest.size() < count) {
+                largest.add(entry);
+            } else if (entry.getValue().value > largest.peek().getValue().value) {
+                largest.poll();
+                largest.add(entry);
+            }
+        }
+        List<Map.Entry<String, Position>> sorted = new ArrayList<>(largest);
+        sorted.sort(Comparator.comparingDouble(entry -> -entry.getValue().value));
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (Map.Entry<String, Position> entry : sorted) {
+            weights.put(entry.getKey(), totalValue == 0 ? 0 : entry.getValue().value / totalValue);
+        }
+        return weights;
+    }
+
+    /**
+     * Returns the Herfindahl-Hirschman index of the position weights, the sum of
+     * the squared weights. It is 1 for a single position and 1/n for n equal
+     * positions.
+     *
+     * @return the concentration index, or 0 if nothing is held
+     */
+    public synchronized double getHerfindahlIndex() {
+        return totalValue == 0 ? 0 : sumOfSquares / (totalValue * totalValue);
+    }
+
+    /**
+     * Returns the share of the total market value held in an instrument type.
+     *
+     * @param type the instrument type
+     * @return the exposure from 0 to 1
+     */
+    public synchronized double getExposure(InstrumentType type) {
+        return totalValue == 0 ? 0 : valueByTag[type.getTag()] / totalValue;
+    }
+
+    /**
+     * Returns the exposure to every registered instrument type.
+     *
+     * @return a map from instrument type to exposure
+     */
+    public synchronized Map<InstrumentType, Double> getExposureByType() {
+        Map<InstrumentType, Double> exposure = new LinkedHashMap<>();
+        for (InstrumentType type : InstrumentType.values()) {
+            exposure.put(type, getExposure(type));
+        }
+        return exposure;
+    }
+
+    /**
+     * Calculates the one-day historical value at risk of the current holdings.
+     * Each of the past days is replayed as a scenario: every position is moved by
+     * its own price return on that day, taken from its daily closing prices in
+     * the price history. Positions are replayed in parallel.
+     *
+     * @param confidence   the confidence level, such as 0.99
+     * @param lookbackDays the number of past days to replay
+     * @return the loss not exceeded on the given share of days, or 0 if the
+     *         history shows no loss at that level
+     */
+    public double calculateHistoricalVaR(double confidence, int lookbackDays) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1.");
+        }
+        if (lookbackDays <= 0) {
+            throw new IllegalArgumentException("Lookback must be at least one day.");
+        }
+        String[] symbols;
+        double[] values;
+        synchronized (this) {
+            symbols = positions.keySet().toArray(new String[0]);
+            values = new double[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                values[i] = positions.get(symbols[i]).value;
+            }
+        }
+
+        PriceHistoryStore history = portfolio.getPriceHistoryStore();
+        long from = System.currentTimeMillis() - lookbackDays * DAY_MILLIS;
+        double[] scenarios = IntStream.range(0, symbols.length).parallel().collect(
+                () -> new double[lookbackDays],
+                (profits, i) -> addScenarioProfits(history, symbols[i], values[i], from, profits),
+                (left, right) -> {
+                    for (int day = 0; day < left.length; day++) {
+                        left[day] += right[day];
+                    }
+                });
+        Arrays.sort(scenarios);
+        int index = (int) Math.floor((1 - confidence) * scenarios.length);
+        return Math.max(0, -scenarios[Math.min(index, scenarios.length - 1)]);
+    }
+
+    /**
+     * Stops following the change stream.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /**
+     * Adds the daily profit or loss of one position to every scenario. The
+     * position's history is read in one scan and reduced to daily closes,
+     * carrying the last close forward over days without a price.
+     *
+     * @param history the price history store
+     * @param symbol  the symbol of the position
+     * @param value   the current market value of the position
+     * @param from    the start of the first day
+     * @param profits the profit of each scenario, added to
+     */
+    private static void addScenarioProfits(PriceHistoryStore history, String symbol, double value, long from,
+            double[] profits) {
+        int days = profits.length;
+        double[] closes = new double[days + 1];
+        Arrays.fill(closes, Double.NaN);
+        closes[0] = history.priceAt(symbol, from);
+        history.scan(symbol, from + 1, from + days * DAY_MILLIS, (timestamp, price) -> {
+            closes[(int) ((timestamp - from - 1) / DAY_MILLIS) + 1] = price;
+            return true;
+        });
+        for (int day = 1; day <= days; day++) {
+            if (Double.isNaN(closes[day])) {
+                closes[day] = closes[day - 1];
+            }
+            if (closes[day - 1] > 0 && !Double.isNaN(closes[day])) {
+                profits[day - 1] += value * (closes[day] / closes[day - 1] - 1);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contribution of each changed position with its new state,
+     * skipping changes made before the last recomputation.
+     *
+     * @param changes the batch of changes
+     */
+    private synchronized void applyChanges(List<PortfolioChange> changes) {
+        for (PortfolioChange change : changes) {
+            if (change.getSequence() <= recomputedSequence) {
+                continue;
+            }
+            Position previous;
+            if (change.getKind() == PortfolioChange.Kind.POSITION_REMOVED) {
+                previous = positions.remove(change.getSymbol());
+            } else {
+                Position current = new Position(change.getType().getTag(), change.getQuantity() * change.getPrice());
+                previous = positions.put(change.getSymbol(), current);
+                valueByTag[current.tag] += current.value;
+                totalValue += current.value;
+                sumOfSquares += current.value * current.value;
+            }
+            if (previous != null) {
+                valueByTag[previous.tag] -= previous.value;
+                totalValue -= previous.value;
+                sumOfSquares -= previous.value * previous.value;
+            }
+        }
+    }
+
+    /**
+     * The instrument type and market value of one position.
+     */
+    private static final class Position {
+        private final byte tag;
+        private final double value;
+
+        private Position(byte tag, double value) {
+            this.tag = tag;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Partial totals gathered by one thread of the parallel pass.
+     */
+    private static final class Totals {
+        private final Map<String, Position> positions = new HashMap<>();
+        private final double[] valueByTag = new double[InstrumentType.TAG_COUNT];
+        private double totalValue;
+        private double sumOfSquares;
+
+        private void add(Investment investment) {
+            byte tag = investment.getInstrumentType().getTag();
+            double value = investment.getQuantity() * investment.getPrice();
+            positions.put(investment.getSymbol(), new Position(tag, value));
+            valueByTag[tag] += value;
+            totalValue += value;
+            sumOfSquares += value * value;
+        }
+
+        private void merge(Totals other) {
+            positions.putAll(other.positions);
+            for (int tag = 0; tag < valueByTag.length; tag++) {
+                valueByTag[tag] += other.valueByTag[tag];
+            }
+            totalValue += other.totalValue;
+            sumOfSquares += other.sumOfSquares;
+        }
+    }
+
+    /**
+     * Applies each batch from the change stream.
+     */
+    private final class ChangeSubscriber implements Flow.Subscriber<List<PortfolioChange>> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            RiskAnalytics.this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<PortfolioChange> changes) {
+            applyChanges(changes);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.out.println("Error receiving portfolio changes: " + throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
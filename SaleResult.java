@@ -0,0 +1,59 @@
+package ePortfolio;
+
+/**
+ * The SaleResult class describes the outcome of selling part of an investment:
+ * the proceeds received, the cost basis of the lots consumed and the realized
+ * gain.
+ */
+public class SaleResult {
+    private final String symbol;
+    private final int quantity;
+    private final double proceeds;
+    private final double costBasis;
+
+    /**
+     * Constructs a SaleResult.
+     *
+     * @param symbol    the symbol of the investment sold
+     * @param quantity  the quantity sold
+     * @param proceeds  the proceeds from the sale after fees
+     * @param costBasis the book value of the lots consumed by the sale
+     */
+    public SaleResult(String symbol, int quantity, double proceeds, double costBasis) {
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.proceeds = proceeds;
+        this.costBasis = costBasis;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getProceeds() {
+        return proceeds;
+    }
+
+    public double getCostBasis() {
+        return costBasis;
+    }
+
+    /**
+     * Calculates the realized gain of the sale.
+     *
+     * @return the proceeds minus the cost basis
+     */
+    public double getRealizedGain() {
+        return proceeds - costBasis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Sale [Symbol: %s, Quantity: %d, Proceeds: %.2f, Cost Basis: %.2f, Realized Gain: %.2f]",
+                symbol, quantity, proceeds, costBasis, getRealizedGain());
+    }
+}
@@ -0,0 +1,16 @@
+package ePortfolio;
+
+/**
+ * A what-if scenario: a set of trades and price moves applied to a fork of a
+ * portfolio.
+ */
+@FunctionalInterface
+public interface Scenario {
+    /**
+     * Applies the scenario to a fork.
+     *
+     * @param fork the fork to change
+     * @throws IllegalArgumentException if a trade in the scenario is invalid
+     */
+    void apply(PortfolioFork fork);
+}
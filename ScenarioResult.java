@@ -0,0 +1,47 @@
+package ePortfolio;
+
+/**
+ * The ScenarioResult class holds the outcome of evaluating one scenario: the
+ * fork it produced, or the reason it failed.
+ */
+public class ScenarioResult {
+    private final PortfolioFork fork;
+    private final String error;
+
+    /**
+     * Constructs a ScenarioResult.
+     *
+     * @param fork  the fork the scenario was applied to
+     * @param error the reason the scenario failed, or null if it succeeded
+     */
+    public ScenarioResult(PortfolioFork fork, String error) {
+        this.fork = fork;
+        this.error = error;
+    }
+
+    /**
+     * Returns the fork the scenario was applied to. If the scenario failed, the
+     * fork holds the trades made before the failure.
+     *
+     * @return the fork
+     */
+    public PortfolioFork getFork() {
+        return fork;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccessful()
+                ? String.format("Total Gain: %.2f, Market Value: %.2f, Realized Gain: %.2f", fork.getTotalGain(),
+                        fork.getMarketValue(), fork.getRealizedGain())
+                : "Failed: " + error;
+    }
+}
@@ -0,0 +1,114 @@
+package ePortfolio;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The ScenarioSimulator class evaluates what-if scenarios against a
+ * portfolio's book.
+ * The book is not copied. Every fork reads the portfolio's own positions and
+ * copies a position only when a scenario first changes it, so creating the
+ * simulator costs nothing per position, a fork costs memory in proportion to
+ * the positions it touches, and any number of forks can be evaluated in
+ * parallel. The portfolio must not change while the simulator or its forks
+ * are in use.
+ */
+public class ScenarioSimulator {
+    private final Portfolio portfolio;
+    private final FeeSchedule feeSchedule;
+    private final String venue;
+    private final double totalGain;
+    private final double marketValue;
+
+    /**
+     * Constructs a ScenarioSimulator over the book of a portfolio, which is
+     * read in place and must not change while the simulator is in use. The
+     * totals are read from the portfolio's running aggregates. Must be called
+     * on the thread that updates the portfolio.
+     *
+     * @param portfolio the portfolio to simulate
+     */
+    public ScenarioSimulator(Portfolio portfolio) {
+        InstrumentAggregates aggregates = portfolio.getInstrumentAggregates();
+        double value = 0;
+        for (InstrumentType type : InstrumentType.values()) {
+            value += aggregates.getMarketValue(type);
+        }
+        this.portfolio = portfolio;
+        this.feeSchedule = portfolio.getFeeSchedule();
+        this.venue = portfolio.getVenue();
+        this.totalGain = aggregates.getTotalGain();
+        this.marketValue = value;
+    }
+
+    /**
+     * Creates an empty fork of the book.
+     *
+     * @return a fork with no changes
+     */
+    public PortfolioFork fork() {
+        return new PortfolioFork(this);
+    }
+
+    /**
+     * Applies each scenario to its own fork, in parallel.
+     *
+     * @param scenarios the scenarios to evaluate
+     * @return the result of each scenario, in the same order
+     */
+    public List<ScenarioResult> evaluate(List<Scenario> scenarios) {
+        return scenarios.parallelStream().map(this::evaluate).collect(Collectors.toList());
+    }
+
+    /**
+     * Applies a scenario to a new fork.
+     *
+     * @param scenario the scenario to evaluate
+     * @return the result of the scenario
+     */
+    public ScenarioResult evaluate(Scenario scenario) {
+        PortfolioFork fork = fork();
+        try {
+            scenario.apply(fork);
+            return new ScenarioResult(fork, null);
+        } catch (IllegalArgumentException e) {
+            return new ScenarioResult(fork, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of positions in the book.
+     *
+     * @return the number of positions
+     */
+    public int getPositionCount() {
+        return portfolio.getInvestments().size();
+    }
+
+    /**
+     * Returns a position of the book. The position is the portfolio's own,
+     * shared by every fork, and must not be modified.
+     *
+     * @param symbol the symbol of the position
+     * @return the position, or null if the book does not hold it
+     */
+    Investment getPosition(String symbol) {
+        return portfolio.findPosition(symbol);
+    }
+
+    FeeSchedule getFeeSchedule() {
+        return feeSchedule;
+    }
+
+    String getVenue() {
+        return venue;
+    }
+
+    double getTotalGain() {
+        return totalGain;
+    }
+
+    double getMarketValue() {
+        return marketValue;
+    }
+}
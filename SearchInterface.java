@@ -2,15 +2,21 @@ package ePortfolio;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 /**
  * The SearchInterface class provides a graphical user interface to search
  * for investments in the portfolio based on various criteria.
+ * Once a search has been run, it is repeated whenever the portfolio changes so
+ * the results stay current.
  */
 public class SearchInterface extends JFrame {
     private final Portfolio portfolio;
     private final JTextField symbolField, nameField, lowPriceField, highPriceField;
     private final JTextArea messageArea;
+    private final SwingChangeSubscriber changeSubscriber;
+    private String lastSymbol, lastKeywords, lastPriceRange;
 
     /**
      * Constructs the SearchInterface for searching investments.
@@ -68,6 +74,16 @@ public class SearchInterface extends JFrame {
         searchButton.addActionListener(e -> handleSearch());
         resetButton.addActionListener(e -> resetFields());
 
+        // Refresh as the portfolio changes and stop listening once closed
+        changeSubscriber = new SwingChangeSubscriber(changes -> repeatSearch());
+        portfolio.getChangePublisher().subscribe(changeSubscriber);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeSubscriber.cancel();
+            }
+        });
+
         setVisible(true);
     }
 
@@ -84,17 +100,42 @@ public class SearchInterface extends JFrame {
 
         try {
             String priceRange = buildPriceRange(lowPrice, highPrice);
-            java.util.List<String> results = portfolio.searchInvestments(symbol, keywords, priceRange);
-            if (results.isEmpty()) {
-                messageArea.setText("No investments found matching the criteria.");
-            } else {
-                messageArea.setText(String.join("\n", results));
-            }
+            displayResults(portfolio.searchInvestments(symbol, keywords, priceRange));
+            lastSymbol = symbol;
+            lastKeywords = keywords;
+            lastPriceRange = priceRange;
+        } catch (Exception ex) {
+            messageArea.setText("Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Runs the last successful search again, if there was one.
+     */
+    private void repeatSearch() {
+        if (lastPriceRange == null) {
+            return;
+        }
+        try {
+            displayResults(portfolio.searchInvestments(lastSymbol, lastKeywords, lastPriceRange));
         } catch (Exception ex) {
             messageArea.setText("Error: " + ex.getMessage());
         }
     }
 
+    /**
+     * Displays search results in the message area.
+     *
+     * @param results the matching investments
+     */
+    private void displayResults(java.util.List<String> results) {
+        if (results.isEmpty()) {
+            messageArea.setText("No investments found matching the criteria.");
+        } else {
+            messageArea.setText(String.join("\n", results));
+        }
+    }
+
     /**
      * Resets all input fields to their default (empty) state.
      */
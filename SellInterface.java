@@ -12,6 +12,7 @@ import java.awt.*;
 public class SellInterface extends JFrame {
     private final Portfolio portfolio;
     private final JTextField symbolField, quantityField, priceField;
+    private final JComboBox<LotSelection> lotSelectionComboBox;
     private final JTextArea messageArea;
 
     /**
@@ -27,13 +28,15 @@ public class SellInterface extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 
         // Components
-        JPanel inputPanel = new JPanel(new GridLayout(3, 2, 10, 10));
+        JPanel inputPanel = new JPanel(new GridLayout(4, 2, 10, 10));
         JLabel symbolLabel = new JLabel("Symbol:");
         symbolField = new JTextField();
         JLabel quantityLabel = new JLabel("Quantity:");
         quantityField = new JTextField();
         JLabel priceLabel = new JLabel("Price:");
         priceField = new JTextField();
+        JLabel lotSelectionLabel = new JLabel("Lot Method:");
+        lotSelectionComboBox = new JComboBox<>(LotSelection.values());
 
         inputPanel.add(symbolLabel);
         inputPanel.add(symbolField);
@@ -41,6 +44,8 @@ public class SellInterface extends JFrame {
         inputPanel.add(quantityField);
         inputPanel.add(priceLabel);
         inputPanel.add(priceField);
+        inputPanel.add(lotSelectionLabel);
+        inputPanel.add(lotSelectionComboBox);
 
         JPanel buttonPanel = new JPanel(new GridLayout(1, 2, 10, 10));
         JButton sellButton = new JButton("Sell");
@@ -77,16 +82,18 @@ public class SellInterface extends JFrame {
             String symbol = symbolField.getText().trim();
             int quantity = Integer.parseInt(quantityField.getText().trim());
             double price = Double.parseDouble(priceField.getText().trim());
+            LotSelection selection = (LotSelection) lotSelectionComboBox.getSelectedItem();
 
-            double proceeds = portfolio.sellInvestment(symbol, quantity, price);
-            messageArea.setText("Successfully sold investment. Proceeds: $" + proceeds);
+            SaleResult result = portfolio.sellInvestment(symbol, quantity, price, selection);
+            messageArea.setText("Successfully sold investment. Proceeds: $" + result.getProceeds()
+                    + "\nRealized gain: $" + String.format("%.2f", result.getRealizedGain()));
         } catch (Exception ex) {
             messageArea.setText("Error: " + ex.getMessage());
         }
     }
 
     /**
-     * Resets all input fields in the form.
+     * Resets all input fields in the form, except the lot method ComboBox.
      */
     private void resetFields() {
         symbolField.setText("");
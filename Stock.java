@@ -1,11 +1,11 @@
 package ePortfolio;
 
 public class Stock extends Investment {
-    private static final double COMMISSION = 9.99;
+    static final FeeModel DEFAULT_COMMISSION = new FlatFeeModel(9.99);
 
     /**
      * Constructs a Stock object with the specified symbol, name, quantity, and
-     * price.
+     * price, charged the standard commission on every buy and sell.
      * 
      * @param symbol   the symbol of the stock
      * @param name     the name of the stock
@@ -13,65 +13,42 @@ public class Stock extends Investment {
      * @param price    the price per share
      */
     public Stock(String symbol, String name, int quantity, double price) {
-        super(symbol, name, quantity, price);
-        this.bookValue = calculateInitialBookValue(quantity, price);
+        this(symbol, name, quantity, price, DEFAULT_COMMISSION, DEFAULT_COMMISSION);
     }
 
     /**
-     * Copy constructor for creating a duplicate Stock object.
+     * Constructs a Stock object with the specified symbol, name, quantity, price
+     * and fee models.
      * 
-     * @param other the Stock object to copy
+     * @param symbol       the symbol of the stock
+     * @param name         the name of the stock
+     * @param quantity     the quantity of shares
+     * @param price        the price per share
+     * @param buyFeeModel  the fee model applied to buys
+     * @param sellFeeModel the fee model applied to sells
      */
-    public Stock(Stock other) {
-        super(other);
+    public Stock(String symbol, String name, int quantity, double price, FeeModel buyFeeModel,
+            FeeModel sellFeeModel) {
+        super(symbol, name, quantity, price, buyFeeModel, sellFeeModel);
     }
 
     /**
-     * Calculates the initial book value of the stock, including a commission fee.
-     * 
-     * @param quantity the quantity of shares
-     * @param price    the price per share
-     * @return the initial book value including the commission fee
-     */
-    @Override
-    protected double calculateInitialBookValue(int quantity, double price) {
-        return quantity * price + COMMISSION;
-    }
-
-    /**
-     * Buys additional shares of the stock.
-     * The book value is increased based on the quantity and price of the new
-     * purchase, plus a commission fee.
+     * Copy constructor for creating a duplicate Stock object.
      * 
-     * @param additionalQuantity the quantity to buy
-     * @param price              the price per share
+     * @param other the Stock object to copy
      */
-    @Override
-    public void buy(int additionalQuantity, double price) {
-        this.quantity += validateQuantity(additionalQuantity);
-        this.bookValue += additionalQuantity * validatePrice(price) + COMMISSION;
+    public Stock(Stock other) {
+        super(other);
     }
 
     /**
-     * Sells a specified quantity of shares of the stock.
-     * A commission fee is subtracted from the proceeds of the sale.
+     * Returns the instrument type of the stock.
      * 
-     * @param quantityToSell the quantity to sell
-     * @param price          the price per share
-     * @return the proceeds from the sale after deducting the commission fee
-     * @throws IllegalArgumentException if the quantity to sell is greater than the
-     *                                  available quantity
+     * @return {@link InstrumentType#STOCK}
      */
     @Override
-    public double sell(int quantityToSell, double price) {
-        if (quantityToSell > this.quantity) {
-            throw new IllegalArgumentException("Insufficient quantity to sell.");
-        }
-        double proceeds = quantityToSell * validatePrice(price) - COMMISSION;
-        double bookValuePerShare = this.bookValue / this.quantity;
-        this.bookValue -= bookValuePerShare * quantityToSell;
-        this.quantity -= quantityToSell;
-        return proceeds;
+    public InstrumentType getInstrumentType() {
+        return InstrumentType.STOCK;
     }
 
     /**
@@ -0,0 +1,224 @@
+package ePortfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The StringDictionary class gives each distinct string a dense id, counting
+ * from zero, and keeps the strings outside the Java heap. The UTF-8 bytes of
+ * each string are appended to a byte arena behind their length, which may be
+ * file-backed; the offset of each string and the hash table used to find ids
+ * are kept in directly allocated memory and rebuilt from the bytes when a
+ * saved dictionary is opened. Strings are never removed. A StringDictionary
+ * is not thread-safe.
+ */
+class StringDictionary implements Closeable {
+    private static final int ENTRY_SIZE = 16;
+    private static final int PADDING = -1;
+
+    private final MemoryArena bytes;
+    // Per id: the offset of the string's length, its hash code and its length
+    private final MemoryArena entries = MemoryArena.allocate(20);
+    private ByteBuffer table;
+    private int mask;
+    private int count;
+    private long byteLength;
+
+    /**
+     * Opens a dictionary over a byte arena holding a number of strings.
+     *
+     * @param bytes      the byte arena, empty for a new dictionary
+     * @param count      the number of strings in the arena
+     * @param byteLength the number of bytes used in the arena
+     */
+    StringDictionary(MemoryArena bytes, int count, long byteLength) {
+        this.bytes = bytes;
+        resize(16);
+        long offset = 0;
+        for (int id = 0; id < count; id++) {
+            offset = skipPadding(offset);
+            int length = bytes.getInt(offset);
+            String value = decode(offset, length);
+            addEntry(offset, value.hashCode(), length);
+            offset += 4 + length;
+        }
+        if (offset > byteLength) {
+            throw new IllegalArgumentException("Dictionary holds fewer bytes than its strings need.");
+        }
+        this.byteLength = byteLength;
+    }
+
+    /**
+     * Returns the number of strings.
+     *
+     * @return the number of strings
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes used in the byte arena.
+     *
+     * @return the number of bytes
+     */
+    long byteLength() {
+        return byteLength;
+    }
+
+    /**
+     * Finds the id of a string.
+     *
+     * @param value the string
+     * @return the id, or -1 if the string is not in the dictionary
+     */
+    int idOf(String value) {
+        int hash = value.hashCode();
+        for (int slot = slot(hash);; slot = (slot + 1) & mask) {
+            int id = table.getInt(slot * 4) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            long entry = (long) id * ENTRY_SIZE;
+            if (entries.getInt(entry + 8) == hash && matches(entries.getLong(entry), value)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of a string, adding the string if it is new.
+     *
+     * @param value the string
+     * @return the id
+     * @throws IllegalArgumentException if the string does not fit in a block
+     */
+    int intern(String value) {
+        int id = idOf(value);
+        if (id >= 0) {
+            return id;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > bytes.blockSize() - 4) {
+            throw new IllegalArgumentException("String of " + encoded.length + " bytes is too long to store.");
+        }
+        long offset = byteLength;
+        int room = bytes.blockSize() - bytes.indexInBlock(offset);
+        if (room < 4 + encoded.length) {
+            // Strings never straddle two blocks
+            if (room >= 4) {
+                bytes.putInt(offset, PADDING);
+            }
+            offset += room;
+        }
+        bytes.putInt(offset, encoded.length);
+        bytes.block(offset).put(bytes.indexInBlock(offset) + 4, encoded);
+        byteLength = offset + 4 + encoded.length;
+        return addEntry(offset, value.hashCode(), encoded.length);
+    }
+
+    /**
+     * Returns the string with an id.
+     *
+     * @param id the id
+     * @return the string
+     */
+    String get(int id) {
+        long offset = entries.getLong((long) id * ENTRY_SIZE);
+        return decode(offset, entries.getInt((long) id * ENTRY_SIZE + 12));
+    }
+
+    /**
+     * Writes the strings of a file-backed dictionary to its file.
+     */
+    void force() {
+        bytes.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            bytes.close();
+        } finally {
+            entries.close();
+        }
+    }
+
+    private int addEntry(long offset, int hash, int length) {
+        int id = count++;
+        long entry = (long) id * ENTRY_SIZE;
+        entries.putLong(entry, offset);
+        entries.putInt(entry + 8, hash);
+        entries.putInt(entry + 12, length);
+        if (count * 2 > mask + 1) {
+            resize((mask + 1) * 2);
+        } else {
+            insert(id, hash);
+        }
+        return id;
+    }
+
+    /**
+     * Replaces the hash table with one of a number of slots and inserts every
+     * id into it.
+     */
+    private void resize(int slots) {
+        if (slots > 1 << 29) {
+            throw new IllegalStateException("Dictionary is full.");
+        }
+        table = ByteBuffer.allocateDirect(slots * 4);
+        mask = slots - 1;
+        for (int id = 0; id < count; id++) {
+            insert(id, entries.getInt((long) id * ENTRY_SIZE + 8));
+        }
+    }
+
+    private void insert(int id, int hash) {
+        int slot = slot(hash);
+        while (table.getInt(slot * 4) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.putInt(slot * 4, id + 1);
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private long skipPadding(long offset) {
+        int room = bytes.blockSize() - bytes.indexInBlock(offset);
+        return room < 4 || bytes.getInt(offset) == PADDING ? offset + room : offset;
+    }
+
+    /**
+     * Compares a stored string with another, byte by character while both
+     * are ASCII, so that looking up a symbol allocates nothing.
+     */
+    private boolean matches(long offset, String value) {
+        ByteBuffer block = bytes.block(offset);
+        int start = bytes.indexInBlock(offset) + 4;
+        int length = block.getInt(start - 4);
+        if (length != value.length()) {
+            // Only non-ASCII strings have more bytes than characters
+            return length > value.length() && decode(offset, length).equals(value);
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = block.get(start + i);
+            if (b < 0) {
+                return decode(offset, length).equals(value);
+            }
+            if (b != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(long offset, int length) {
+        byte[] encoded = new byte[length];
+        bytes.block(offset).get(bytes.indexInBlock(offset) + 4, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
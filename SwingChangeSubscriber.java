@@ -0,0 +1,66 @@
+package ePortfolio;
+
+import javax.swing.SwingUtilities;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * The SwingChangeSubscriber class receives batches of portfolio changes and
+ * hands them to a handler on the Swing event dispatch thread, so frames can
+ * update their components directly.
+ */
+public class SwingChangeSubscriber implements Flow.Subscriber<List<PortfolioChange>> {
+    private final Consumer<List<PortfolioChange>> handler;
+    private volatile Flow.Subscription subscription;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a SwingChangeSubscriber.
+     *
+     * @param handler the handler called on the event dispatch thread for each
+     *                batch
+     */
+    public SwingChangeSubscriber(Consumer<List<PortfolioChange>> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (cancelled) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(List<PortfolioChange> changes) {
+        SwingUtilities.invokeLater(() -> {
+            if (!cancelled) {
+                handler.accept(changes);
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        System.out.println("Error receiving portfolio changes: " + throwable.getMessage());
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    /**
+     * Stops receiving changes, typically when the frame is closed.
+     */
+    public void cancel() {
+        cancelled = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ePortfolio;
+
+import java.io.IOException;
+
+/**
+ * The TextExporter class writes positions in the text format read by
+ * {@link Portfolio#loadFromFile(String)}: one quoted name = "value" line per
+ * field and a blank line after each position.
+ */
+public class TextExporter extends PortfolioExporter {
+    @Override
+    protected void writeRecord(ByteSink sink, Investment investment) throws IOException {
+        InstrumentType type = investment.getInstrumentType();
+        sink.append("type = \"").append(type.getName()).append("\"\n");
+        sink.append("tag = \"").appendLong(type.getTag()).append("\"\n");
+        sink.append("symbol = \"").append(investment.getSymbol()).append("\"\n");
+        sink.append("name = \"").append(investment.getName()).append("\"\n");
+        sink.append("quantity = \"").appendLong(investment.getQuantity()).append("\"\n");
+        sink.append("price = \"").appendDouble(investment.getPrice()).append("\"\n");
+        sink.append("bookValue = \"").appendDouble(investment.getBookValue()).append("\"\n\n");
+    }
+}
@@ -0,0 +1,112 @@
+package ePortfolio;
+
+import java.util.Arrays;
+
+/**
+ * The ThresholdList class keeps alert thresholds in ascending order, each with
+ * the id of its alert, in parallel primitive arrays. Alerts with the same
+ * threshold keep the order they were added in. The alerts a value reaches
+ * always form one run of the list, found by binary search and removed in a
+ * single copy.
+ */
+class ThresholdList {
+    private double[] thresholds = new double[8];
+    private long[] ids = new long[8];
+    private int size;
+
+    /**
+     * Adds a threshold.
+     *
+     * @param threshold the threshold
+     * @param id        the alert id
+     */
+    void add(double threshold, long id) {
+        if (size == thresholds.length) {
+            thresholds = Arrays.copyOf(thresholds, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int index = firstAbove(threshold);
+        System.arraycopy(thresholds, index, thresholds, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        thresholds[index] = threshold;
+        ids[index] = id;
+        size++;
+    }
+
+    /**
+     * Removes the threshold of an alert.
+     *
+     * @param threshold the threshold the alert was added with
+     * @param id        the alert id
+     * @return true if the alert was found
+     */
+    boolean remove(double threshold, long id) {
+        for (int i = firstAtOrAbove(threshold); i < size && thresholds[i] == threshold; i++) {
+            if (ids[i] == id) {
+                removeRange(i, i + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the index of the first threshold greater than a value.
+     *
+     * @param value the value
+     * @return the index, or the size if there is none
+     */
+    int firstAbove(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (thresholds[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first threshold at or above a value.
+     *
+     * @param value the value
+     * @return the index, or the size if there is none
+     */
+    int firstAtOrAbove(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (thresholds[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Removes a run of thresholds.
+     *
+     * @param from the first index, inclusive
+     * @param to   the last index, exclusive
+     */
+    void removeRange(int from, int to) {
+        System.arraycopy(thresholds, to, thresholds, from, size - to);
+        System.arraycopy(ids, to, ids, from, size - to);
+        size -= to - from;
+    }
+}
@@ -0,0 +1,98 @@
+package ePortfolio;
+
+import java.util.Arrays;
+
+/**
+ * The TieredFeeModel class charges fees from a table of tiers by traded
+ * amount. Each tier starts at a threshold and has a percentage rate and a
+ * fixed fee.
+ * In flat mode, the tier the whole amount falls into sets the fee. In marginal
+ * mode, each tier's rate applies only to the part of the amount within that
+ * tier, and each tier's fixed fee is charged once the amount reaches it.
+ * The table is compiled when the model is constructed into a power-of-two
+ * array of thresholds and, for every tier, a single linear function of the
+ * amount. A fee is then a branch-free binary search with a fixed number of
+ * steps followed by one multiply-add.
+ */
+public final class TieredFeeModel implements FeeModel {
+    private final double[] thresholds;
+    private final double[] rates;
+    private final double[] offsets;
+    private final int tierCount;
+
+    /**
+     * Constructs a TieredFeeModel from a table of tiers.
+     *
+     * @param thresholds the traded amount at which each tier starts, in
+     *                   ascending order and starting at 0
+     * @param percents   the rate of each tier as a percentage
+     * @param fixedFees  the fixed fee of each tier
+     * @param marginal   true to charge each tier's rate only on the amount
+     *                   within the tier
+     */
+    public TieredFeeModel(double[] thresholds, double[] percents, double[] fixedFees, boolean marginal) {
+        int count = thresholds.length;
+        if (count == 0 || percents.length != count || fixedFees.length != count) {
+            throw new IllegalArgumentException("Each tier needs a threshold, a rate and a fixed fee.");
+        }
+        if (thresholds[0] != 0) {
+            throw new IllegalArgumentException("The first tier must start at 0.");
+        }
+        for (int i = 0; i < count; i++) {
+            if ((i > 0 && !(thresholds[i] > thresholds[i - 1])) || !(percents[i] >= 0) || !(fixedFees[i] >= 0)) {
+                throw new IllegalArgumentException("Tier thresholds must ascend and rates and fees cannot be "
+                        + "negative.");
+            }
+        }
+
+        int size = Integer.highestOneBit(count);
+        if (size < count) {
+            size <<= 1;
+        }
+        this.tierCount = count;
+        this.thresholds = new double[size];
+        this.rates = new double[size];
+        this.offsets = new double[size];
+        Arrays.fill(this.thresholds, count, size, Double.POSITIVE_INFINITY);
+
+        double chargedBelowTier = 0;
+        for (int i = 0; i < count; i++) {
+            double rate = percents[i] / 100.0;
+            this.thresholds[i] = thresholds[i];
+            this.rates[i] = rate;
+            if (marginal) {
+                chargedBelowTier += fixedFees[i];
+                this.offsets[i] = chargedBelowTier - rate * thresholds[i];
+                if (i + 1 < count) {
+                    chargedBelowTier += rate * (thresholds[i + 1] - thresholds[i]);
+                }
+            } else {
+                this.offsets[i] = fixedFees[i];
+            }
+        }
+    }
+
+    @Override
+    public double calculateFee(int quantity, double price) {
+        double amount = quantity * price;
+        int tier = 0;
+        for (int step = thresholds.length >> 1; step > 0; step >>= 1) {
+            tier += thresholds[tier + step] <= amount ? step : 0;
+        }
+        return offsets[tier] + rates[tier] * amount;
+    }
+
+    /**
+     * Returns the number of tiers in the table.
+     *
+     * @return the number of tiers
+     */
+    public int getTierCount() {
+        return tierCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Tiered (" + tierCount + " tiers)";
+    }
+}
@@ -0,0 +1,312 @@
+package ePortfolio;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The TradeEngine class applies buys, sells and price updates to a portfolio
+ * on a single writer thread, in the style of a disruptor. Any thread submits
+ * a command by claiming the next sequence number and filling the slot of a
+ * pre-allocated ring buffer; the writer applies the commands strictly in
+ * sequence order, so every run of the same commands ends in the same
+ * portfolio, and nothing is allocated to pass a command along. Applying a
+ * command allocates whatever the portfolio's own operation does, such as its
+ * Flight Recorder event, a price history entry or a new position, so the
+ * writer is not free of allocation.
+ * <p>
+ * After each batch of commands the writer publishes the portfolio's totals per
+ * instrument type behind a sequence lock. Readers copy them without taking a
+ * lock and retry in the rare case that the writer published while they were
+ * copying. While the engine runs, the writer thread owns the portfolio and no
+ * other thread may use it. Commands that fail, such as a sale of a symbol
+ * not held, are skipped with a message and counted.
+ */
+public class TradeEngine implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 20_000;
+    private static final int BUY = 0;
+    private static final int SELL = 1;
+    private static final int UPDATE_PRICE = 2;
+    // Set in the claimed count once the engine is closed, after which the
+    // count cannot change
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Portfolio portfolio;
+    private final Command[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final Thread writer;
+    private volatile long applied = -1;
+
+    // The totals as last published, guarded by the sequence lock: odd while
+    // the writer is changing them
+    private final AggregateSnapshot published = new AggregateSnapshot();
+    private volatile long version;
+    private long rejectedCount;
+
+    /**
+     * Constructs a TradeEngine with room for 65,536 pending commands.
+     *
+     * @param portfolio the portfolio to apply commands to
+     */
+    public TradeEngine(Portfolio portfolio) {
+        this(portfolio, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a TradeEngine.
+     *
+     * @param portfolio the portfolio to apply commands to
+     * @param capacity  the number of pending commands, a power of two
+     */
+    public TradeEngine(Portfolio portfolio, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two.");
+        }
+        this.portfolio = portfolio;
+        this.ring = new Command[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Command();
+        }
+        this.mask = capacity - 1;
+        this.writer = new Thread(this::runWriter, "trade-engine");
+        this.writer.setDaemon(true);
+        publish();
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Submits a purchase, waiting for room in the ring buffer if it is full.
+     *
+     * @param type     the type of the investment
+     * @param symbol   the symbol of the investment
+     * @param name     the name of the investment
+     * @param quantity the quantity to buy
+     * @param price    the price of the investment
+     * @return the sequence number of the command
+     */
+    public long buy(String type, String symbol, String name, int quantity, double price) {
+        return submit(BUY, type, symbol, name, quantity, price);
+    }
+
+    /**
+     * Submits a sale, waiting for room in the ring buffer if it is full.
+     *
+     * @param symbol   the symbol of the investment
+     * @param quantity the quantity to sell
+     * @param price    the price of the investment
+     * @return the sequence number of the command
+     */
+    public long sell(String symbol, int quantity, double price) {
+        return submit(SELL, null, symbol, null, quantity, price);
+    }
+
+    /**
+     * Submits a price update, waiting for room in the ring buffer if it is
+     * full.
+     *
+     * @param symbol the symbol of the investment
+     * @param price  the new price
+     * @return the sequence number of the command
+     */
+    public long updatePrice(String symbol, double price) {
+        return submit(UPDATE_PRICE, null, symbol, null, 0, price);
+    }
+
+    /**
+     * Waits until a command and every command before it have been applied.
+     *
+     * @param sequence the sequence number of the command
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void awaitApplied(long sequence) throws InterruptedException {
+        for (int tries = 0; applied < sequence; tries++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            backOff(tries);
+        }
+    }
+
+    /**
+     * Copies the last published totals into a snapshot, without locking.
+     *
+     * @param snapshot the snapshot to fill
+     */
+    public void readSnapshot(AggregateSnapshot snapshot) {
+        for (int tries = 0;; tries++) {
+            long before = version;
+            if ((before & 1) == 0) {
+                snapshot.copyFrom(published);
+                // The copy must be read before the version is checked again
+                VarHandle.loadLoadFence();
+                if (version == before) {
+                    return;
+                }
+            }
+            backOff(tries);
+        }
+    }
+
+    /**
+     * Returns a copy of the last published totals.
+     *
+     * @return a new snapshot
+     */
+    public AggregateSnapshot getSnapshot() {
+        AggregateSnapshot snapshot = new AggregateSnapshot();
+        readSnapshot(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Applies every command submitted so far and stops the writer thread.
+     * Commands may not be submitted once closing has begun. The portfolio may
+     * be used directly again once this returns, so an interrupt does not stop
+     * the wait; the thread's interrupt status is set again afterwards.
+     */
+    @Override
+    public void close() {
+        claimed.getAndAccumulate(CLOSED, (state, closed) -> state | closed);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long submit(int kind, String type, String symbol, String name, int quantity, double price) {
+        // A sequence is only claimed while the engine is open, so the writer
+        // cannot stop before a command it has to apply is claimed
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if ((sequence & CLOSED) != 0) {
+                throw new IllegalStateException("Trade engine is closed.");
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        // The slot is free once the command a lap earlier has been applied
+        for (int tries = 0; sequence - ring.length > applied; tries++) {
+            backOff(tries);
+        }
+        Command command = ring[(int) sequence & mask];
+        command.kind = kind;
+        command.type = type;
+        command.symbol = symbol;
+        command.name = name;
+        command.quantity = quantity;
+        command.price = price;
+        command.sequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Applies commands in sequence order, publishing the totals after each
+     * batch of commands that were ready together, until the engine is closed
+     * and every claimed command has been applied.
+     */
+    private void runWriter() {
+        long next = 0;
+        int tries = 0;
+        while (isPending(next)) {
+            long batchStart = next;
+            Command command;
+            while ((command = ring[(int) next & mask]).sequence == next) {
+                apply(command);
+                next++;
+            }
+            if (next > batchStart) {
+                applied = next - 1;
+                publish();
+                tries = 0;
+            } else {
+                backOff(tries++);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the writer must go on, because the engine is open or a
+     * claimed command has not been applied yet.
+     *
+     * @param next the sequence number of the next command to apply
+     */
+    private boolean isPending(long next) {
+        long state = claimed.get();
+        return (state & CLOSED) == 0 || next < (state & ~CLOSED);
+    }
+
+    private void apply(Command command) {
+        try {
+            switch (command.kind) {
+                case BUY:
+                    portfolio.buyInvestment(command.type, command.symbol, command.name, command.quantity,
+                            command.price);
+                    break;
+                case SELL:
+                    portfolio.sellInvestment(command.symbol, command.quantity, command.price);
+                    break;
+                default:
+                    portfolio.updatePrice(command.symbol, command.price);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // Whatever a command throws, the writer must go on to the next
+            rejectedCount++;
+            System.out.println("Rejected command " + command.sequence + ": " + e.getMessage());
+        }
+        // Let the strings go rather than keep them until the slot is reused
+        command.type = command.symbol = command.name = null;
+    }
+
+    private void publish() {
+        version++;
+        // The odd version must be seen before any of the totals change
+        VarHandle.storeStoreFence();
+        portfolio.getInstrumentAggregates().copyTo(published.counts, published.marketValues,
+                published.bookValues);
+        published.sequence = applied;
+        published.rejectedCount = rejectedCount;
+        version++;
+    }
+
+    private static void backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * The Command class is one slot of the ring buffer. Its fields are
+     * written by the thread that claimed the slot before its sequence number,
+     * whose volatile write publishes them to the writer.
+     */
+    private static final class Command {
+        volatile long sequence = -1;
+        int kind;
+        String type;
+        String symbol;
+        String name;
+        int quantity;
+        double price;
+    }
+}
@@ -0,0 +1,237 @@
+package ePortfolio;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The TradeEngineBenchmark class compares the TradeEngine with the same
+ * commands applied under a lock. Producer threads each buy, reprice and sell
+ * their own symbols, while reader threads poll the totals per instrument
+ * type: from the engine's published snapshot, or under the lock from the
+ * portfolio itself. For each it prints the command throughput and the
+ * latency of submitting a command and of reading the totals.
+ */
+public class TradeEngineBenchmark {
+    private static final int DEFAULT_PRODUCERS = 4;
+    private static final int DEFAULT_COMMANDS = 300_000;
+    private static final int READERS = 2;
+    private static final int SYMBOLS_PER_PRODUCER = 100;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of producers and commands per producer
+     * @throws InterruptedException if the benchmark is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PRODUCERS;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COMMANDS;
+        System.out.printf("producers=%d commands/producer=%d readers=%d%n", producers, commands, READERS);
+        System.out.printf("%8s %12s %12s %12s %12s %12s%n", "mode", "commands/s", "submit p50", "submit p99",
+                "read p50", "read p99");
+
+        // Warm both up before measuring
+        run(new LockedBook(new Portfolio()), producers, commands / 10, false);
+        run(new EngineBook(new Portfolio()), producers, commands / 10, false);
+        run(new LockedBook(new Portfolio()), producers, commands, true);
+        run(new EngineBook(new Portfolio()), producers, commands, true);
+    }
+
+    private static void run(Book book, int producers, int commands, boolean print) throws InterruptedException {
+        LatencyHistogram submitLatency = new LatencyHistogram();
+        LatencyHistogram readLatency = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            String[] symbols = new String[SYMBOLS_PER_PRODUCER];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = "P" + p + "S" + i;
+            }
+            threads[p] = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < commands; i++) {
+                    String symbol = symbols[i % symbols.length];
+                    long begin = System.nanoTime();
+                    // Each symbol is bought, repriced and sold in turn
+                    switch (i / symbols.length % 3) {
+                        case 0:
+                            book.buy(symbol, 10, 20.0 + i % 7);
+                            break;
+                        case 1:
+                            book.updatePrice(symbol, 21.0 + i % 5);
+                            break;
+                        default:
+                            book.sell(symbol, 10, 22.0);
+                            break;
+                    }
+                    submitLatency.record(System.nanoTime() - begin);
+                }
+            }, "producer-" + p);
+            threads[p].start();
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            readers[r] = new Thread(() -> {
+                AggregateSnapshot snapshot = new AggregateSnapshot();
+                awaitQuietly(start);
+                while (!done.get()) {
+                    long begin = System.nanoTime();
+                    book.read(snapshot);
+                    readLatency.record(System.nanoTime() - begin);
+                    Thread.yield();
+                }
+            }, "reader-" + r);
+            readers[r].setDaemon(true);
+            readers[r].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        book.finish();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (print) {
+            System.out.printf("%8s %12.0f %10.1fus %10.1fus %10.1fus %10.1fus%n", book.label(),
+                    (double) producers * commands / seconds, submitLatency.getValueAtPercentile(50) / 1e3,
+                    submitLatency.getValueAtPercentile(99) / 1e3, readLatency.getValueAtPercentile(50) / 1e3,
+                    readLatency.getValueAtPercentile(99) / 1e3);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A book that commands are applied to and whose totals are read.
+     */
+    private interface Book {
+        String label();
+
+        void buy(String symbol, int quantity, double price);
+
+        void sell(String symbol, int quantity, double price);
+
+        void updatePrice(String symbol, double price);
+
+        void read(AggregateSnapshot snapshot);
+
+        void finish();
+    }
+
+    /**
+     * Applies commands on the calling thread under a lock.
+     */
+    private static class LockedBook implements Book {
+        private final Portfolio portfolio;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        LockedBook(Portfolio portfolio) {
+            this.portfolio = portfolio;
+        }
+
+        @Override
+        public String label() {
+            return "locked";
+        }
+
+        @Override
+        public void buy(String symbol, int quantity, double price) {
+            lock.lock();
+            try {
+                portfolio.buyInvestment("stock", symbol, "Company " + symbol, quantity, price);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void sell(String symbol, int quantity, double price) {
+            lock.lock();
+            try {
+                portfolio.sellInvestment(symbol, quantity, price);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void updatePrice(String symbol, double price) {
+            lock.lock();
+            try {
+                portfolio.updatePrice(symbol, price);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void read(AggregateSnapshot snapshot) {
+            lock.lock();
+            try {
+                portfolio.getInstrumentAggregates().copyTo(snapshot.counts, snapshot.marketValues,
+                        snapshot.bookValues);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * Submits commands to a TradeEngine.
+     */
+    private static class EngineBook implements Book {
+        private final TradeEngine engine;
+
+        EngineBook(Portfolio portfolio) {
+            engine = new TradeEngine(portfolio);
+            engine.start();
+        }
+
+        @Override
+        public String label() {
+            return "engine";
+        }
+
+        @Override
+        public void buy(String symbol, int quantity, double price) {
+            engine.buy("stock", symbol, "Company " + symbol, quantity, price);
+        }
+
+        @Override
+        public void sell(String symbol, int quantity, double price) {
+            engine.sell(symbol, quantity, price);
+        }
+
+        @Override
+        public void updatePrice(String symbol, double price) {
+            engine.updatePrice(symbol, price);
+        }
+
+        @Override
+        public void read(AggregateSnapshot snapshot) {
+            engine.readSnapshot(snapshot);
+        }
+
+        @Override
+        public void finish() {
+            engine.close();
+        }
+    }
+}
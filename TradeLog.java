@@ -0,0 +1,216 @@
+package ePortfolio;
+
+import java.util.*;
+
+/**
+ * The TradeLog class records every change to a portfolio's positions so the
+ * book can be reconstructed as it was at any earlier time.
+ * Each change is logged as the state of the position right after it. The log
+ * also keeps periodic checkpoints of the full position set. A reconstruction
+ * starts from the newest checkpoint at or before the requested time and
+ * replays only the changes logged after it.
+ * A checkpoint is taken after a number of changes at least equal to the
+ * number of open positions, so the cost of copying the position set is
+ * amortized to O(1) per change.
+ * <p>
+ * Logging can be stopped and started again. While it is stopped nothing is
+ * known of the book, so the book cannot be reconstructed at a time in that
+ * period. Starting it again records the whole book as it is then, including
+ * the removal of any position sold out in the meantime.
+ */
+public class TradeLog {
+    private static final int MIN_CHECKPOINT_INTERVAL = 1024;
+
+    private final List<PositionSnapshot> events = new ArrayList<>();
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private final Map<String, PositionSnapshot> current = new HashMap<>();
+    // The periods logging was stopped, each from a start to an end time,
+    // exclusive; the last ends at Long.MAX_VALUE while logging is stopped
+    private final List<long[]> gaps = new ArrayList<>();
+    private int eventsSinceCheckpoint;
+
+    /**
+     * Constructs an empty TradeLog that is logging.
+     */
+    public TradeLog() {
+        this(true);
+    }
+
+    /**
+     * Constructs an empty TradeLog.
+     *
+     * @param logging whether changes are logged from the start; if not, the
+     *                log must be started with the book before it is used
+     */
+    public TradeLog(boolean logging) {
+        checkpoints.add(new Checkpoint(Long.MIN_VALUE, 0, new HashMap<>()));
+        if (!logging) {
+            gaps.add(new long[] { Long.MIN_VALUE, Long.MAX_VALUE });
+        }
+    }
+
+    /**
+     * Records the state of a position right after a change.
+     *
+     * @param snapshot the state of the position
+     * @throws IllegalArgumentException if the change is older than the newest
+     *                                  logged change
+     */
+    public synchronized void record(PositionSnapshot snapshot) {
+        if (isStopped()) {
+            throw new IllegalStateException("Trade log is stopped.");
+        }
+        if (!events.isEmpty() && snapshot.getTimestamp() < events.get(events.size() - 1).getTimestamp()) {
+            throw new IllegalArgumentException("Trade log entries must be recorded in time order.");
+        }
+        events.add(snapshot);
+        apply(current, snapshot);
+        eventsSinceCheckpoint++;
+        if (eventsSinceCheckpoint >= Math.max(MIN_CHECKPOINT_INTERVAL, current.size())) {
+            checkpoints.add(new Checkpoint(snapshot.getTimestamp(), events.size(), new HashMap<>(current)));
+            eventsSinceCheckpoint = 0;
+        }
+    }
+
+    /**
+     * Stops logging. Changes may not be recorded until logging is started
+     * again.
+     *
+     * @param timestamp the time logging stops, in milliseconds since the epoch
+     */
+    public synchronized void stop(long timestamp) {
+        if (!isStopped()) {
+            gaps.add(new long[] { timestamp, Long.MAX_VALUE });
+        }
+    }
+
+    /**
+     * Starts logging again with the whole book as it is now. Each position is
+     * recorded, along with the removal of every position the log still holds
+     * open that is no longer in the book, and a checkpoint is taken.
+     *
+     * @param timestamp the time logging starts, in milliseconds since the
+     *                  epoch
+     * @param book      the state of every position held
+     */
+    public synchronized void start(long timestamp, Collection<PositionSnapshot> book) {
+        if (!isStopped()) {
+            return;
+        }
+        gaps.get(gaps.size() - 1)[1] = timestamp;
+        Set<String> held = new HashSet<>();
+        for (PositionSnapshot position : book) {
+            held.add(position.getSymbol());
+        }
+        List<PositionSnapshot> removed = new ArrayList<>();
+        for (PositionSnapshot position : current.values()) {
+            if (!held.contains(position.getSymbol())) {
+                removed.add(new PositionSnapshot(timestamp, position.getType(), position.getSymbol(),
+                        position.getName(), 0, position.getPrice(), 0));
+            }
+        }
+        for (PositionSnapshot position : removed) {
+            events.add(position);
+            apply(current, position);
+        }
+        for (PositionSnapshot position : book) {
+            events.add(position);
+            apply(current, position);
+        }
+        checkpoints.add(new Checkpoint(timestamp, events.size(), new HashMap<>(current)));
+        eventsSinceCheckpoint = 0;
+    }
+
+    /**
+     * Returns whether logging is stopped.
+     *
+     * @return true if changes may not be recorded
+     */
+    public synchronized boolean isStopped() {
+        return !gaps.isEmpty() && gaps.get(gaps.size() - 1)[1] == Long.MAX_VALUE;
+    }
+
+    /**
+     * Reconstructs the open positions as they were at a point in time.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     * @return a map from symbol to the state of each open position
+     * @throws IllegalArgumentException if logging was stopped at that time
+     */
+    public synchronized Map<String, PositionSnapshot> getPositionsAt(long timestamp) {
+        for (long[] gap : gaps) {
+            if (timestamp >= gap[0] && timestamp < gap[1]) {
+                throw new IllegalArgumentException("The trade log was stopped at " + timestamp + ".");
+            }
+        }
+        Checkpoint checkpoint = checkpoints.get(lastCheckpointAtOrBefore(timestamp));
+        Map<String, PositionSnapshot> positions = new HashMap<>(checkpoint.positions);
+        for (int i = checkpoint.eventIndex; i < events.size(); i++) {
+            PositionSnapshot event = events.get(i);
+            if (event.getTimestamp() > timestamp) {
+                break;
+            }
+            apply(positions, event);
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the number of changes logged.
+     *
+     * @return the number of changes
+     */
+    public synchronized int size() {
+        return events.size();
+    }
+
+    /**
+     * Applies a change to a position set.
+     *
+     * @param positions the position set to update
+     * @param event     the state of the position after the change
+     */
+    private static void apply(Map<String, PositionSnapshot> positions, PositionSnapshot event) {
+        if (event.getQuantity() == 0) {
+            positions.remove(event.getSymbol());
+        } else {
+            positions.put(event.getSymbol(), event);
+        }
+    }
+
+    /**
+     * Finds the newest checkpoint taken at or before a point in time. Every
+     * change logged at the checkpoint's timestamp is already included in it.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     * @return the index of the checkpoint
+     */
+    private int lastCheckpointAtOrBefore(long timestamp) {
+        int low = 0;
+        int high = checkpoints.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (checkpoints.get(mid).timestamp <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.max(low - 1, 0);
+    }
+
+    /**
+     * A copy of the position set after a number of logged changes.
+     */
+    private static final class Checkpoint {
+        private final long timestamp;
+        private final int eventIndex;
+        private final Map<String, PositionSnapshot> positions;
+
+        private Checkpoint(long timestamp, int eventIndex, Map<String, PositionSnapshot> positions) {
+            this.timestamp = timestamp;
+            this.eventIndex = eventIndex;
+            this.positions = positions;
+        }
+    }
+}
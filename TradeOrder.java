@@ -0,0 +1,155 @@
+package ePortfolio;
+
+/**
+ * The TradeOrder class is a buy or sell of an investment at a given price, or
+ * an update of its price. A buy that names the type and name of the investment
+ * opens the position if it is not held; every other order is for an
+ * investment already held in a portfolio.
+ */
+public class TradeOrder {
+    private final String symbol;
+    private final boolean buy;
+    private final boolean priceUpdate;
+    private final int quantity;
+    private final double price;
+    private final double fee;
+    private final String type;
+    private final String name;
+    private final LotSelection selection;
+
+    /**
+     * Constructs a TradeOrder.
+     *
+     * @param symbol   the symbol of the investment
+     * @param buy      true to buy, false to sell
+     * @param quantity the quantity to trade
+     * @param price    the price per unit
+     * @param fee      the fee expected for the trade
+     */
+    public TradeOrder(String symbol, boolean buy, int quantity, double price, double fee) {
+        this(symbol, buy, false, quantity, price, fee, null, null, LotSelection.FIFO);
+    }
+
+    /**
+     * Constructs an order to buy an investment, opening the position if it is
+     * not held.
+     *
+     * @param type     the name of a registered instrument type, such as stock
+     * @param symbol   the symbol of the investment
+     * @param name     the name of the investment
+     * @param quantity the quantity to buy
+     * @param price    the price per unit
+     * @param fee      the fee expected for the trade
+     */
+    public TradeOrder(String type, String symbol, String name, int quantity, double price, double fee) {
+        this(symbol, true, false, quantity, price, fee, type, name, LotSelection.FIFO);
+    }
+
+    /**
+     * Constructs an order to sell an investment, consuming lots in the order
+     * given by a lot selection method.
+     *
+     * @param symbol    the symbol of the investment
+     * @param quantity  the quantity to sell
+     * @param price     the price per unit
+     * @param fee       the fee expected for the trade
+     * @param selection the method used to choose the lots
+     */
+    public TradeOrder(String symbol, int quantity, double price, double fee, LotSelection selection) {
+        this(symbol, false, false, quantity, price, fee, null, null, selection);
+    }
+
+    /**
+     * Constructs an order to update the price of an investment. It trades no
+     * quantity and pays no fee.
+     *
+     * @param symbol the symbol of the investment
+     * @param price  the new price
+     */
+    public TradeOrder(String symbol, double price) {
+        this(symbol, false, true, 0, price, 0, null, null, LotSelection.FIFO);
+    }
+
+    private TradeOrder(String symbol, boolean buy, boolean priceUpdate, int quantity, double price, double fee,
+            String type, String name, LotSelection selection) {
+        if (selection == null) {
+            throw new IllegalArgumentException("Lot selection cannot be null.");
+        }
+        this.symbol = symbol;
+        this.buy = buy;
+        this.priceUpdate = priceUpdate;
+        this.quantity = quantity;
+        this.price = price;
+        this.fee = fee;
+        this.type = type;
+        this.name = name;
+        this.selection = selection;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public boolean isBuy() {
+        return buy;
+    }
+
+    public boolean isPriceUpdate() {
+        return priceUpdate;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getFee() {
+        return fee;
+    }
+
+    /**
+     * Returns the instrument type a buy opens the position with.
+     *
+     * @return the type name, or null if the investment must already be held
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the name a buy opens the position with.
+     *
+     * @return the name, or null if the investment must already be held
+     */
+    public String getName() {
+        return name;
+    }
+
+    public LotSelection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Calculates the cash the order moves: the cost of a buy including its fee,
+     * or the proceeds of a sale after its fee. A price update moves none.
+     *
+     * @return the cash paid for a buy or received for a sale
+     */
+    public double getCashAmount() {
+        if (priceUpdate) {
+            return 0;
+        }
+        return buy ? quantity * price + fee : quantity * price - fee;
+    }
+
+    @Override
+    public String toString() {
+        if (priceUpdate) {
+            return String.format("PRICE %s @ %.2f", symbol, price);
+        }
+        return String.format("%s %d %s @ %.2f (fee %.2f)", buy ? "BUY" : "SELL", quantity, symbol, price, fee);
+    }
+}
@@ -2,17 +2,22 @@ package ePortfolio;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
 
 /**
  * The UpdateInterface class provides a graphical user interface for updating
  * the prices of investments in the portfolio.
  * Users can navigate through investments, view their details, and update their
- * prices.
+ * prices. The displayed investment is refreshed when it changes elsewhere.
  */
 public class UpdateInterface extends JFrame {
     private final Portfolio portfolio;
     private final JTextField symbolField, nameField, priceField;
     private final JTextArea messageArea;
+    private final JButton prevButton, nextButton;
+    private final SwingChangeSubscriber changeSubscriber;
     private int currentIndex = 0;
 
     /**
@@ -49,9 +54,9 @@ public class UpdateInterface extends JFrame {
         inputPanel.add(priceField);
 
         JPanel buttonPanel = new JPanel(new GridLayout(1, 3, 10, 10));
-        JButton prevButton = new JButton("Prev");
+        prevButton = new JButton("Prev");
         JButton saveButton = new JButton("Save");
-        JButton nextButton = new JButton("Next");
+        nextButton = new JButton("Next");
         buttonPanel.add(prevButton);
         buttonPanel.add(saveButton);
         buttonPanel.add(nextButton);
@@ -81,6 +86,16 @@ public class UpdateInterface extends JFrame {
             loadInvestment(0);
         }
 
+        // Refresh as the portfolio changes and stop listening once closed
+        changeSubscriber = new SwingChangeSubscriber(this::handleChanges);
+        portfolio.getChangePublisher().subscribe(changeSubscriber);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                changeSubscriber.cancel();
+            }
+        });
+
         setVisible(true);
     }
 
@@ -108,6 +123,41 @@ public class UpdateInterface extends JFrame {
         priceField.setText(String.valueOf(investment.getPrice()));
     }
 
+    /**
+     * Reloads the displayed investment when it was changed or when positions
+     * were added or removed, keeping the current index within the list. Other
+     * changes are ignored so that a price being typed is not overwritten.
+     *
+     * @param changes the batch of changes to the portfolio
+     */
+    private void handleChanges(List<PortfolioChange> changes) {
+        String displayedSymbol = symbolField.getText();
+        boolean reload = false;
+        for (PortfolioChange change : changes) {
+            if (change.getSymbol().equals(displayedSymbol)
+                    || change.getKind() == PortfolioChange.Kind.POSITION_ADDED
+                    || change.getKind() == PortfolioChange.Kind.POSITION_REMOVED) {
+                reload = true;
+                break;
+            }
+        }
+        if (!reload) {
+            return;
+        }
+        int size = portfolio.getInvestments().size();
+        prevButton.setEnabled(size > 0);
+        nextButton.setEnabled(size > 0);
+        if (size == 0) {
+            symbolField.setText("");
+            nameField.setText("");
+            priceField.setText("");
+            messageArea.setText("No investments to update.");
+            return;
+        }
+        currentIndex = Math.min(currentIndex, size - 1);
+        loadInvestment(currentIndex);
+    }
+
     /**
      * Updates the price of the currently displayed investment.
      * Displays a success or error message in the message area.
@@ -116,7 +166,7 @@ public class UpdateInterface extends JFrame {
         try {
             double newPrice = Double.parseDouble(priceField.getText().trim());
             Investment investment = portfolio.getInvestments().get(currentIndex);
-            investment.updatePrice(newPrice);
+            portfolio.updatePrice(investment.getSymbol(), newPrice);
             messageArea.setText("Updated investment:\n" + investment);
         } catch (Exception ex) {
             messageArea.setText("Error: " + ex.getMessage());